@@ -16,6 +16,7 @@
 package org.eclipse.aether.internal.impl;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -28,38 +29,86 @@ import org.eclipse.aether.repository.LocalArtifactRequest;
 import org.eclipse.aether.repository.LocalArtifactResult;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.util.ChecksumUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PaxLocalRepositoryManager extends SimpleLocalRepositoryManager {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PaxLocalRepositoryManager.class);
+
     public static final String PROPERTY_UPDATE_RELEASES = "paxUrlAether.updateReleases";
+    public static final String PROPERTY_SHARED_STORE = "paxUrlAether.sharedStore";
 
     private final UpdatePolicyAnalyzer updatePolicyAnalyzer;
     private final RemoteRepositoryManager remoteRepositoryManager;
 
     private final String trackingFilename;
-    private final TrackingFileManager trackingFileManager;
+    private final TrackingFileCache trackingFileCache;
+    private final SharedArtifactStore sharedStore;
 
     public PaxLocalRepositoryManager(File basedir,
                                      UpdatePolicyAnalyzer updatePolicyAnalyzer,
                                      RemoteRepositoryManager remoteRepositoryManager) {
+        this(basedir, updatePolicyAnalyzer, remoteRepositoryManager, new TrackingFileCache(false));
+    }
+
+    /**
+     * Creates local repository manager that uses (possibly shared and write-behind) cache of tracking files.
+     * With write-behind cache, {@link #flush()} has to be called to persist tracking information.
+     * @param basedir
+     * @param updatePolicyAnalyzer
+     * @param remoteRepositoryManager
+     * @param trackingFileCache
+     */
+    public PaxLocalRepositoryManager(File basedir,
+                                     UpdatePolicyAnalyzer updatePolicyAnalyzer,
+                                     RemoteRepositoryManager remoteRepositoryManager,
+                                     TrackingFileCache trackingFileCache) {
+        this(basedir, updatePolicyAnalyzer, remoteRepositoryManager, trackingFileCache, null);
+    }
+
+    /**
+     * Creates local repository manager that additionally uses {@link SharedArtifactStore} to find
+     * non-SNAPSHOT artifacts not available in local repository and stores downloaded artifacts there (only
+     * those matching their remote SHA-1 checksum).
+     * @param basedir
+     * @param updatePolicyAnalyzer
+     * @param remoteRepositoryManager
+     * @param trackingFileCache
+     * @param sharedStore may be <code>null</code>
+     */
+    public PaxLocalRepositoryManager(File basedir,
+                                     UpdatePolicyAnalyzer updatePolicyAnalyzer,
+                                     RemoteRepositoryManager remoteRepositoryManager,
+                                     TrackingFileCache trackingFileCache,
+                                     SharedArtifactStore sharedStore) {
         super(basedir);
         this.updatePolicyAnalyzer = updatePolicyAnalyzer;
         this.remoteRepositoryManager = remoteRepositoryManager;
 
         trackingFilename = "_pax-url-aether-remote.repositories";
-        trackingFileManager = new TrackingFileManager();
+        this.trackingFileCache = trackingFileCache;
+        this.sharedStore = sharedStore;
     }
 
     @Override
     public LocalArtifactResult find(RepositorySystemSession session, LocalArtifactRequest request) {
         LocalArtifactResult result = super.find(session, request);
 
+        if (!result.isAvailable() && sharedStore != null && !request.getArtifact().isSnapshot()) {
+            String path = getPathForArtifact(request.getArtifact(), false);
+            if (sharedStore.retrieve(path, new File(getRepository().getBasedir(), path))) {
+                result = super.find(session, request);
+            }
+        }
+
         if (result.isAvailable()
                 && !request.getArtifact().isSnapshot()
                 && (Boolean) session.getConfigProperties().get(PROPERTY_UPDATE_RELEASES)) {
             // check if we should force download
             File trackingFile = getTrackingFile(result.getFile());
-            Properties props = trackingFileManager.read(trackingFile);
+            Properties props = trackingFileCache.read(trackingFile);
             if (props != null) {
                 String localKey = result.getFile().getName() + ">";
                 if (props.get(localKey) == null) {
@@ -99,8 +148,29 @@ public class PaxLocalRepositoryManager extends SimpleLocalRepositoryManager {
 
             Map<String, String> updates = new HashMap<String, String>();
             updates.put(artifactFile.getName() + ">" + repoId, "");
-            trackingFileManager.update(trackingFile, updates);
+            trackingFileCache.update(trackingFile, updates);
         }
+        if (sharedStore != null && request.getRepository() != null && !request.getArtifact().isSnapshot()) {
+            String path = getPathForArtifact(request.getArtifact(), false);
+            File artifactFile = new File(getRepository().getBasedir(), path);
+            // the connector keeps the remote checksum next to the artifact even if it didn't match (with "warn"
+            // policy) and doesn't fetch it at all with "ignore" policy, so only verified content is shared
+            File checksumFile = new File(artifactFile.getPath() + ".sha1");
+            if (artifactFile.isFile() && checksumFile.isFile()) {
+                try {
+                    sharedStore.store(path, artifactFile, ChecksumUtils.read(checksumFile));
+                } catch (IOException e) {
+                    LOG.warn("Can't read checksum of " + path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes pending updates of tracking files
+     */
+    public void flush() {
+        trackingFileCache.flush();
     }
 
     private File getTrackingFile(File artifactFile) {
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.eclipse.aether.internal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.eclipse.aether.util.ChecksumUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Content-addressable store of artifacts shared by many local repositories (e.g., by many containers running
+ * on single host). Each distinct content is stored once as <code>blobs/&lt;xx&gt;/&lt;sha1&gt;</code> and
+ * <code>index/&lt;path in repository&gt;.sha1</code> maps artifact paths to the blobs.</p>
+ * <p>Local repositories are populated with hard links to the blobs (or with copies, when hard links are not
+ * supported). Files are always replaced by atomic rename, never overwritten in place, so content of a blob
+ * can't be changed through one of its links.</p>
+ */
+public class SharedArtifactStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedArtifactStore.class);
+
+    private final File blobs;
+    private final File index;
+
+    public SharedArtifactStore(File basedir) {
+        this.blobs = new File(basedir, "blobs");
+        this.index = new File(basedir, "index");
+    }
+
+    /**
+     * Populates <code>target</code> with content stored for given repository path.
+     * @param path relative path of an artifact in repository
+     * @param target
+     * @return <code>true</code> if the store contains the artifact and the target file was created
+     */
+    public boolean retrieve(String path, File target) {
+        try {
+            File indexFile = new File(index, path + ".sha1");
+            if (!indexFile.isFile()) {
+                return false;
+            }
+            String sha1 = new String(Files.readAllBytes(indexFile.toPath()), "UTF-8").trim();
+            File blob = blob(sha1);
+            if (!blob.isFile()) {
+                return false;
+            }
+            link(blob, target);
+            LOG.debug("Linked {} from shared store", path);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Can't retrieve " + path + " from shared store: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Adds a file from local repository to the store (unless the same content is already stored) and replaces
+     * the file with a link to stored content. Content that doesn't match expected checksum is never stored,
+     * because it would be served to all local repositories sharing the store.
+     * @param path relative path of an artifact in repository
+     * @param file
+     * @param expectedSha1 trusted SHA-1 checksum of the artifact
+     * @return <code>true</code> if the file was stored
+     */
+    public boolean store(String path, File file, String expectedSha1) {
+        try {
+            String sha1 = sha1(file);
+            if (expectedSha1 == null || !sha1.equalsIgnoreCase(expectedSha1.trim())) {
+                LOG.warn("Not adding " + path + " to shared store: SHA-1 " + sha1 + " doesn't match expected "
+                        + expectedSha1);
+                return false;
+            }
+            File blob = blob(sha1);
+            if (!blob.isFile()) {
+                link(file, blob);
+            } else if (!Files.isSameFile(blob.toPath(), file.toPath())) {
+                link(blob, file);
+            }
+            File indexFile = new File(index, path + ".sha1");
+            File tmp = temporary(indexFile);
+            try {
+                Files.write(tmp.toPath(), sha1.getBytes("UTF-8"));
+                move(tmp, indexFile);
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Can't add " + path + " to shared store: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private File blob(String sha1) {
+        return new File(new File(blobs, sha1.substring(0, 2)), sha1);
+    }
+
+    /**
+     * Atomically makes <code>target</code> a hard link to (or a copy of) <code>source</code>
+     * @param source
+     * @param target
+     * @throws IOException
+     */
+    private static void link(File source, File target) throws IOException {
+        File tmp = temporary(target);
+        try {
+            try {
+                Files.createLink(tmp.toPath(), source.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(source.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            move(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static File temporary(File target) {
+        target.getAbsoluteFile().getParentFile().mkdirs();
+        return new File(target.getAbsoluteFile().getParentFile(),
+                target.getName() + "." + UUID.randomUUID().toString() + ".tmp");
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String sha1(File file) throws IOException {
+        Object sha1 = ChecksumUtils.calc(file, Collections.singleton("SHA-1")).get("SHA-1");
+        if (sha1 instanceof String) {
+            return (String) sha1;
+        }
+        throw new IOException("Can't calculate SHA-1 digest of " + file,
+                sha1 instanceof Throwable ? (Throwable) sha1 : null);
+    }
+
+}
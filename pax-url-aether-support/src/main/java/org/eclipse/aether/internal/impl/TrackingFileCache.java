@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.eclipse.aether.internal.impl;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Caching layer over {@link TrackingFileManager}. Parsed tracking files are kept in memory as long as
+ * modification time and length of the file on disk don't change.</p>
+ * <p>With <em>write-behind</em> enabled, {@link #update(File, Map)} only collects the updates, which are
+ * written (one locked update per tracking file) by {@link #flush()} - usually at the end of resolution.
+ * Pending updates are visible to {@link #read(File)} before they're flushed.</p>
+ */
+public class TrackingFileCache {
+
+    private final TrackingFileManager trackingFileManager = new TrackingFileManager();
+    private final boolean writeBehind;
+
+    private final ConcurrentMap<File, Entry> entries = new ConcurrentHashMap<File, Entry>();
+    private final ConcurrentMap<File, Pending> pending = new ConcurrentHashMap<File, Pending>();
+
+    public TrackingFileCache(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Returns (possibly cached) content of tracking file merged with updates not yet flushed. Returned
+     * properties should not be modified.
+     * @param file
+     * @return
+     */
+    public Properties read(File file) {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Entry entry = entries.get(file);
+        Properties props;
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+            props = entry.properties;
+        } else {
+            props = trackingFileManager.read(file);
+            if (props != null) {
+                entries.put(file, new Entry(lastModified, length, props));
+            } else {
+                entries.remove(file);
+            }
+        }
+
+        Pending updates = pending.get(file);
+        if (updates != null) {
+            synchronized (updates) {
+                if (!updates.flushed) {
+                    Properties merged = new Properties();
+                    if (props != null) {
+                        merged.putAll(props);
+                    }
+                    merged.putAll(updates.values);
+                    return merged;
+                }
+            }
+        }
+        return props;
+    }
+
+    /**
+     * Updates tracking file - immediately or at next {@link #flush()}.
+     * @param file
+     * @param updates
+     */
+    public void update(File file, Map<String, String> updates) {
+        if (!writeBehind) {
+            store(file, updates);
+            return;
+        }
+        while (true) {
+            Pending p = pending.get(file);
+            if (p == null) {
+                pending.putIfAbsent(file, new Pending());
+                continue;
+            }
+            synchronized (p) {
+                if (!p.flushed) {
+                    p.values.putAll(updates);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all pending updates to tracking files.
+     */
+    public void flush() {
+        for (File file : pending.keySet()) {
+            Pending p = pending.remove(file);
+            if (p == null) {
+                continue;
+            }
+            Map<String, String> updates;
+            synchronized (p) {
+                p.flushed = true;
+                updates = p.values;
+            }
+            if (!updates.isEmpty()) {
+                store(file, updates);
+            }
+        }
+    }
+
+    private void store(File file, Map<String, String> updates) {
+        Properties props = trackingFileManager.update(file, updates);
+        if (props != null) {
+            entries.put(file, new Entry(file.lastModified(), file.length(), props));
+        } else {
+            entries.remove(file);
+        }
+    }
+
+    private static class Entry {
+        private final long lastModified;
+        private final long length;
+        private final Properties properties;
+
+        Entry(long lastModified, long length, Properties properties) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.properties = properties;
+        }
+    }
+
+    private static class Pending {
+        private final Map<String, String> values = new HashMap<String, String>();
+        private boolean flushed;
+    }
+
+}
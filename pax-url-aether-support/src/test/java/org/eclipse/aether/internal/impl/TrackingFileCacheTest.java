@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.eclipse.aether.internal.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalArtifactRegistration;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TrackingFileCacheTest {
+
+    private File dir;
+    private File trackingFile;
+
+    @Before
+    public void init() {
+        dir = new File("target/" + UUID.randomUUID().toString());
+        trackingFile = new File(dir, "_remote.repositories");
+    }
+
+    @Test
+    public void pendingUpdatesMergedIntoSingleWrite() throws IOException {
+        TrackingFileCache cache = new TrackingFileCache(true);
+        cache.update(trackingFile, Collections.singletonMap("lib-1.jar>central", ""));
+        cache.update(trackingFile, Collections.singletonMap("lib-1.pom>central", ""));
+        Map<String, String> override = new HashMap<String, String>();
+        override.put("lib-1.jar>central", "updated");
+        override.put("lib-1.jar>other", "");
+        cache.update(trackingFile, override);
+        assertFalse(trackingFile.exists());
+
+        cache.flush();
+
+        Properties props = load(trackingFile);
+        assertThat(props.size(), equalTo(3));
+        assertThat(props.getProperty("lib-1.jar>central"), equalTo("updated"));
+        assertThat(props.getProperty("lib-1.pom>central"), equalTo(""));
+        assertThat(props.getProperty("lib-1.jar>other"), equalTo(""));
+
+        // nothing left to write
+        assertTrue(trackingFile.delete());
+        cache.flush();
+        assertFalse(trackingFile.exists());
+    }
+
+    @Test
+    public void readSeesUpdatesNotYetFlushed() throws IOException {
+        new TrackingFileCache(false).update(trackingFile, Collections.singletonMap("lib-1.jar>central", ""));
+        long length = trackingFile.length();
+
+        TrackingFileCache cache = new TrackingFileCache(true);
+        cache.update(trackingFile, Collections.singletonMap("lib-1.pom>central", ""));
+
+        Properties props = cache.read(trackingFile);
+        assertThat(props.getProperty("lib-1.jar>central"), equalTo(""));
+        assertThat(props.getProperty("lib-1.pom>central"), equalTo(""));
+        assertThat(trackingFile.length(), equalTo(length));
+        assertThat(load(trackingFile).getProperty("lib-1.pom>central"), equalTo(null));
+
+        cache.flush();
+        assertThat(load(trackingFile).getProperty("lib-1.pom>central"), equalTo(""));
+        assertThat(cache.read(trackingFile), equalTo(load(trackingFile)));
+    }
+
+    @Test
+    public void localRepositoryManagerFlushedOnSessionRelease() throws IOException {
+        PaxLocalRepositoryManager manager = new PaxLocalRepositoryManager(dir, null, null,
+                new TrackingFileCache(true));
+        DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+        session.setConfigProperty(PaxLocalRepositoryManager.PROPERTY_UPDATE_RELEASES, true);
+        RemoteRepository central = new RemoteRepository.Builder("central", "default", "http://localhost/").build();
+
+        manager.add(session, new LocalArtifactRegistration(new DefaultArtifact("org.example:lib:1"), central, null));
+        manager.add(session, new LocalArtifactRegistration(new DefaultArtifact("org.example:lib:pom:1"), central, null));
+        File tracking = new File(dir, "org/example/lib/1/_pax-url-aether-remote.repositories");
+        assertFalse(tracking.exists());
+
+        // what AetherBasedResolver does when a session is released after resolution
+        manager.flush();
+
+        Properties props = load(tracking);
+        assertThat(props.getProperty("lib-1.jar>central"), equalTo(""));
+        assertThat(props.getProperty("lib-1.pom>central"), equalTo(""));
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream is = new FileInputStream(file)) {
+            props.load(is);
+        }
+        return props;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Allows cancelling resolution started with {@link MavenResolver2#resolve(String, Exception, CancellationToken)}
+ * from another thread. Cancelled resolution ends with {@link java.io.InterruptedIOException}.</p>
+ * <p>Transfers in progress are aborted at once and their connections are closed instead of being
+ * drained, so it's cheap to cancel downloads of large artifacts which are no longer needed.</p>
+ * <p>Single token may be shared by several resolutions (e.g., all artifacts of single feature).</p>
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+    private final List<Closeable> resources = new CopyOnWriteArrayList<Closeable>();
+
+    /**
+     * Cancels all resolutions using this token, including future ones.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Closeable resource : resources) {
+            close(resource);
+        }
+        resources.clear();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a resource (e.g., a connection) to be closed when this token is cancelled.
+     * If the token is already cancelled, the resource is closed at once.
+     * @param resource
+     */
+    public void register(Closeable resource) {
+        resources.add(resource);
+        if (cancelled && resources.remove(resource)) {
+            close(resource);
+        }
+    }
+
+    /**
+     * Forgets a resource which doesn't have to be closed anymore
+     * @param resource
+     */
+    public void unregister(Closeable resource) {
+        resources.remove(resource);
+    }
+
+    private static void close(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Extension of {@link MavenResolver} with cancellable and prioritized resolution, in-memory content,
+ * dependency resolution, prefetching, up-to-date checks and transfer progress listeners. It's a separate
+ * interface, so existing implementations of {@link MavenResolver} remain valid. Resolvers created by
+ * {@link MavenResolvers} and registered as OSGi services implement it.
+ */
+public interface MavenResolver2 extends MavenResolver {
+
+    /**
+     * Resolve and download a maven based url - possibly as another attempt. Resolution (including
+     * transfers in progress) may be cancelled from another thread using <code>token</code>, in which case
+     * {@link java.io.InterruptedIOException} is thrown. <code>null</code> token means the resolution
+     * can't be cancelled.
+     */
+    File resolve( String url, Exception previousException, CancellationToken token ) throws IOException;
+
+    /**
+     * Resolve and download a maven based url - possibly as another attempt - with given priority. When
+     * <code>priority</code> is <code>null</code>, priority configured for artifact's coordinates is used.
+     * @see Priority
+     */
+    File resolve( String url, Exception previousException, CancellationToken token,
+                  Priority priority ) throws IOException;
+
+    /**
+     * Resolve a maven based url and return content of the artifact, if it's not larger than
+     * {@link ServiceConstants#PROPERTY_CONTENT_MAX_SIZE}. Content of small artifacts is cached in memory, so
+     * released artifacts (e.g., features XML, configuration files, POMs) resolved again are not read from disk.
+     * @param url maven based url
+     * @return read-only buffer with content of the artifact or <code>null</code> if the artifact is too large
+     * (it's then available from {@link #resolve(String)})
+     */
+    ByteBuffer resolveContent( String url ) throws IOException;
+
+    /**
+     * Resolve and download a maven based url together with its transitive dependencies. Dependency graph
+     * is collected first (with each POM read once) and then all artifacts are downloaded concurrently.
+     * Like in {@link #resolve(String)}, artifacts from default repositories are used in place.
+     * The resolution is scheduled like a single one with priority of the root artifact, but it holds as many
+     * resolution permits as it uses concurrent downloads.
+     * @param url maven based url of the root artifact
+     * @param scopes scopes of included dependencies (e.g., <code>compile</code>, <code>runtime</code>),
+     * <code>null</code> or empty for all scopes. Like for a dependency declared in a POM, <code>test</code>,
+     * <code>provided</code> and optional dependencies of the root artifact are never included.
+     * @param exclusions excluded dependencies as <code>groupId:artifactId</code> (<code>*</code> matches anything)
+     * @return resolved files in dependency graph order (root first), keyed by
+     * <code>groupId:artifactId:extension[:classifier]:version</code>
+     */
+    Map<String, File> resolveDependencies( String url, Collection<String> scopes,
+                                           Collection<String> exclusions ) throws IOException;
+
+    /**
+     * Resolves maven based urls in background (with limited parallelism, low priority and throttled), so
+     * they're later available in local repository. Prefetching stops when the resolver is closed.
+     * @param urls maven based urls
+     * @return future completed when all urls are processed, with failures keyed by url
+     */
+    Future<Map<String, Exception>> prefetch( Collection<String> urls );
+
+    /**
+     * Checks whether a maven based url still resolves to previously resolved content, without downloading
+     * the artifact. Local tracking data, <code>maven-metadata.xml</code> and <code>.sha1</code> files
+     * of remote repositories are used (subject to update policies), so the check is much cheaper
+     * than {@link #resolve(String)}.
+     * @param url maven based url
+     * @param checksum SHA-1 digest of previously resolved content or <code>null</code> if not known
+     * @param timestamp time (in milliseconds) when content was previously resolved or <code>0</code> if not known
+     * @return <code>true</code> if the artifact is known to be unchanged, <code>false</code> if it changed or
+     * if it can't be determined without downloading it
+     */
+    boolean isUpToDate( String url, String checksum, long timestamp ) throws IOException;
+
+    /**
+     * Checks whether an artifact is unchanged since it was previously resolved, without downloading it.
+     * @see #isUpToDate(String, String, long)
+     */
+    boolean isUpToDate( String groupId, String artifactId, String classifier,
+                        String extension, String version,
+                        String checksum, long timestamp ) throws IOException;
+
+    /**
+     * Registers a listener notified about progress of downloads performed by this resolver
+     */
+    void addTransferListener( TransferProgressListener listener );
+
+    /**
+     * Unregisters previously added listener
+     */
+    void removeTransferListener( TransferProgressListener listener );
+
+    /**
+     * Priority classes of resolutions. When remote resolutions have to wait for a connection, more important
+     * ones are started first, regardless of how many less important ones are waiting.
+     */
+    enum Priority {
+        /**
+         * Artifacts needed to start the container
+         */
+        CRITICAL,
+        /**
+         * Default priority
+         */
+        NORMAL,
+        /**
+         * Optional artifacts (sources, documentation, prefetched artifacts)
+         */
+        BACKGROUND
+    }
+
+}
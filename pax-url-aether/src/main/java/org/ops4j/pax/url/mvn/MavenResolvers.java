@@ -18,6 +18,7 @@ package org.ops4j.pax.url.mvn;
 import java.util.Dictionary;
 
 import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.DaemonClientResolver;
 import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
 import org.ops4j.util.property.DictionaryPropertyResolver;
 import org.ops4j.util.property.PropertiesPropertyResolver;
@@ -32,6 +33,11 @@ public final class MavenResolvers {
         PropertiesPropertyResolver syspropsResolver = new PropertiesPropertyResolver(System.getProperties());
         DictionaryPropertyResolver propertyResolver = new DictionaryPropertyResolver(properties, syspropsResolver);
         MavenConfigurationImpl config = new MavenConfigurationImpl(propertyResolver, pid);
+        Integer daemonPort = config.getProperty(ServiceConstants.PROPERTY_DAEMON_PORT, null, Integer.class);
+        if (daemonPort != null && !config.getProperty(ServiceConstants.PROPERTY_DAEMON, false, Boolean.class)) {
+            // let host-local daemon resolve (if it's running)
+            return new DaemonClientResolver(daemonPort, config, mirror);
+        }
         return new AetherBasedResolver(config, mirror);
     }
 
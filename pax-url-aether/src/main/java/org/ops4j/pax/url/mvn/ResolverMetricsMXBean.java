@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.util.Map;
+
+/**
+ * <p>Statistics of {@link MavenResolver}, registered as OSGi service and as platform MBean
+ * (with {@link #OBJECT_NAME} name).</p>
+ * <p>Counters and latencies are identified by names like <code>phase.remote.count</code>,
+ * <code>repository.central.bytes</code> or <code>repository.central.failures.HIGH</code> (failed transfers
+ * grouped by {@link MavenResolver.RetryChance}).</p>
+ * <p>Resolvers with the same network configuration share connection pool, so connection statistics
+ * include connections used by all of them.</p>
+ */
+public interface ResolverMetricsMXBean {
+
+    String OBJECT_NAME = "org.ops4j.pax.url:type=ResolverMetrics";
+
+    /**
+     * Returns all counters - number of requests, transferred bytes and failures per repository and number of
+     * invocations of resolution phases
+     * @return
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Returns latencies (in milliseconds) of resolution phases (<code>resolve</code>, <code>defaultRepositories</code>,
+     * <code>versionRange</code>, <code>remote</code>, <code>metadata</code>) as <code>phase.&lt;name&gt;.p50</code>,
+     * <code>.p90</code>, <code>.p99</code> and <code>.max</code> values. Percentiles are upper bounds of histogram
+     * buckets.
+     * @return
+     */
+    Map<String, Long> getLatencies();
+
+    /**
+     * Number of idle sessions in the pool
+     * @return
+     */
+    int getPooledSessions();
+
+    /**
+     * Number of HTTP connections currently in use
+     * @return
+     */
+    int getLeasedConnections();
+
+    /**
+     * Number of idle, persistent HTTP connections
+     * @return
+     */
+    int getAvailableConnections();
+
+    /**
+     * Number of requests waiting for HTTP connection
+     * @return
+     */
+    int getPendingConnections();
+
+    /**
+     * Resets all counters and latencies
+     */
+    void reset();
+
+}
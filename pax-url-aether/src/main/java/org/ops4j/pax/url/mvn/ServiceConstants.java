@@ -92,6 +92,43 @@ public interface ServiceConstants
      * LocalRepository configuration property name.
      */
     String PROPERTY_LOCAL_REPOSITORY = "localRepository";
+
+    /**
+     * <p>Configure whether access to local repository should be coordinated using lock files (in
+     * <code>.locks</code> directory of local repository). This is useful when many processes share single
+     * local repository. Artifacts being downloaded by one process are not downloaded again by other processes
+     * and are installed into local repository atomically.</p>
+     * <p>Default value is <code>false</code>.</p>
+     */
+    String PROPERTY_LOCAL_REPOSITORY_LOCKING = "localRepository.locking";
+
+    /**
+     * <p>Location of content-addressable store of artifacts shared by many local repositories (e.g., by many
+     * containers on single host). Non-SNAPSHOT artifacts missing in local repository are taken from the store
+     * (as hard links or copies) before downloading them, and downloaded artifacts are added to the store.</p>
+     * <p>Not set by default.</p>
+     */
+    String PROPERTY_SHARED_STORE = "sharedStore";
+
+    /**
+     * <p>Maximum size (in bytes) of local repository. When set, stale timestamped SNAPSHOTs are periodically removed
+     * from local repository and, if the repository is larger than this size, least recently used artifacts not
+     * resolved since the start and not matching {@link #PROPERTY_LOCAL_REPOSITORY_PINNED} are removed.
+     * Value <code>0</code> means that only stale SNAPSHOTs are removed.</p>
+     * <p>Not set by default.</p>
+     */
+    String PROPERTY_LOCAL_REPOSITORY_MAX_SIZE = "localRepository.maxSize";
+
+    /**
+     * Comma-separated list of <code>groupId[:artifactId[:version]]</code> patterns of artifacts that should never
+     * be removed from local repository by maintenance configured with {@link #PROPERTY_LOCAL_REPOSITORY_MAX_SIZE}.
+     */
+    String PROPERTY_LOCAL_REPOSITORY_PINNED = "localRepository.pinned";
+
+    /**
+     * Interval (in milliseconds) of local repository maintenance. Defaults to <code>3600000</code> (1 hour).
+     */
+    String PROPERTY_LOCAL_REPOSITORY_MAINTENANCE_INTERVAL = "localRepository.maintenanceInterval";
     
     /**
      * DefaultRepositories configuration property name
@@ -143,6 +180,13 @@ public interface ServiceConstants
      */
     String OPTION_MULTI = "multi";
     
+    /**
+     * Option to mark repository as trusted. Checksums of artifacts from trusted repository are not
+     * downloaded. Instead, SHA-1 digest is calculated locally and verified against the digest recorded when
+     * given artifact was downloaded for the first time (trust on first use).
+     */
+    String OPTION_TRUSTED = "trusted";
+
     /**
      * Options separator in repository url.
      */
@@ -223,6 +267,14 @@ public interface ServiceConstants
      */
     String PROPERTY_CONNECTION_RETRY_COUNT = "connection.retryCount";
 
+    /**
+     * Configure whether <code>.sha1</code> checksum should be downloaded over HTTP(S) concurrently with
+     * the artifact itself, instead of after the artifact is downloaded. Only checksums of artifacts other than
+     * POMs from repositories with checksum policy other than <code>ignore</code> are prefetched, using at most
+     * a quarter of connections per route. Defaults to <code>false</code>.
+     */
+    String PROPERTY_CHECKSUM_PREFETCH = "checksum.prefetch";
+
     /**
      * <p>Property for configuration of non-canonical Maven behavior. If set to <code>true</code>,
      * {@link MavenResolver} will use Aether policies to determine whether already available non-SNAPSHOT
@@ -231,4 +283,195 @@ public interface ServiceConstants
      */
     String PROPERTY_UPDATE_RELEASES = "updateReleases";
 
+    /**
+     * <p>Property for configuration of stale-while-revalidate resolution. If set to <code>true</code>,
+     * SNAPSHOT, <code>LATEST</code> (and with {@link #PROPERTY_UPDATE_RELEASES}, also release) artifacts already
+     * available in local repository are returned immediately, without checking remote metadata. Remote
+     * repositories are checked (according to update policies) in background and newer version is
+     * returned by subsequent resolution.</p>
+     * <p>Default value is <code>false</code>.</p>
+     */
+    String PROPERTY_STALE_WHILE_REVALIDATE = "staleWhileRevalidate";
+
+    /**
+     * <p>Property for configuration of load balancing between several mirrors with equal <code>mirrorOf</code>.
+     * Such mirrors act as single mirror (with identifier of the first one), but each resolution uses one of
+     * them, chosen by the strategy:<ul>
+     *     <li><code>none</code> - only the first mirror is used (default)</li>
+     *     <li><code>roundRobin</code> - mirrors are used in turn</li>
+     *     <li><code>latency</code> - mirrors are chosen randomly, with weights inversely proportional to their
+     *     average response time</li>
+     * </ul></p>
+     * <p>Mirror which failed {@link #PROPERTY_MIRROR_FAILURE_THRESHOLD} times in a row is skipped for
+     * {@link #PROPERTY_MIRROR_QUARANTINE} milliseconds.</p>
+     */
+    String PROPERTY_MIRROR_BALANCING = "mirrorBalancing";
+
+    /**
+     * Number of consecutive failed transfers after which a balanced mirror is considered unhealthy.
+     * Defaults to <code>3</code>.
+     */
+    String PROPERTY_MIRROR_FAILURE_THRESHOLD = "mirrorBalancing.failureThreshold";
+
+    /**
+     * Time (in milliseconds) for which unhealthy mirror is not used. Defaults to <code>60000</code>.
+     */
+    String PROPERTY_MIRROR_QUARANTINE = "mirrorBalancing.quarantine";
+
+    /**
+     * <p>Property for configuration of peers - comma-separated base URLs of endpoints serving local repositories
+     * of other nodes (see {@link #PROPERTY_PEER_PORT}). When resolving from remote repositories, peers are
+     * checked for release artifacts first. Checksums of artifacts downloaded from peers are always verified,
+     * regardless of {@link #PROPERTY_GLOBAL_CHECKSUM_POLICY}. Unreachable peers are skipped for a minute.</p>
+     * <p>By default there are no peers.</p>
+     */
+    String PROPERTY_PEERS = "peers";
+
+    /**
+     * <p>Port on which local repository is served (read-only) to peers. Only artifacts accompanied by matching
+     * checksums fetched from upstream repositories are available (together with these checksums), locally
+     * installed artifacts, tracking files and metadata are not. Local repository isn't served if not set or if
+     * {@link #PROPERTY_PEER_HOST} isn't set.</p>
+     */
+    String PROPERTY_PEER_PORT = "peer.port";
+
+    /**
+     * <p>Address to which endpoint serving local repository to peers is bound. Has to be set explicitly - the
+     * endpoint doesn't authenticate peers, so it should be bound to an address reachable only by trusted
+     * nodes.</p>
+     */
+    String PROPERTY_PEER_HOST = "peer.host";
+
+    /**
+     * <p>Loopback port of host-local resolution daemon. Resolvers created by {@link MavenResolvers} delegate
+     * resolution to the daemon (falling back to own resolution if it's not running), so short-lived processes
+     * benefit from warm caches and connections of the daemon. Resolver with {@link #PROPERTY_DAEMON} set to
+     * <code>true</code> acts as the daemon.</p>
+     * <p>The daemon accepts only requests authenticated with a secret it writes (readable only by its owner) to
+     * its local repository, so it's used only by processes of the same user configured with the same local
+     * repository. Such processes are resolved with configuration of the daemon - their own repositories,
+     * mirrors and other resolution options apply only when the daemon isn't used.</p>
+     */
+    String PROPERTY_DAEMON_PORT = "daemon.port";
+
+    /**
+     * <p>Property which makes resolver serve resolution requests of other processes on
+     * {@link #PROPERTY_DAEMON_PORT}.</p>
+     * <p>Default value is <code>false</code>.</p>
+     */
+    String PROPERTY_DAEMON = "daemon";
+
+    /**
+     * <p>Number of times resolution of an artifact is repeated by the resolver itself after failure which
+     * {@link MavenResolver#isRetryableException(Exception)} classifies as {@link MavenResolver.RetryChance#HIGH}.
+     * Each attempt gets failure of previous one as a hint.</p>
+     * <p>Default value is <code>0</code> - like for {@link #PROPERTY_RETRY_LOW} and {@link #PROPERTY_RETRY_UNKNOWN},
+     * so the resolver doesn't retry and it's up to the caller.</p>
+     */
+    String PROPERTY_RETRY_HIGH = "retry.high";
+
+    /**
+     * <p>Number of retries after failure classified as {@link MavenResolver.RetryChance#LOW}.</p>
+     */
+    String PROPERTY_RETRY_LOW = "retry.low";
+
+    /**
+     * <p>Number of retries after failure classified as {@link MavenResolver.RetryChance#UNKNOWN}.</p>
+     */
+    String PROPERTY_RETRY_UNKNOWN = "retry.unknown";
+
+    /**
+     * <p>Delay (in milliseconds) before first retry. Each next delay is doubled (up to
+     * {@link #PROPERTY_RETRY_MAX_BACKOFF}) and randomly shortened by up to a half.</p>
+     * <p>Default value is <code>1000</code>.</p>
+     */
+    String PROPERTY_RETRY_BACKOFF = "retry.backoff";
+
+    /**
+     * <p>Maximal delay (in milliseconds) between retries.</p>
+     * <p>Default value is <code>30000</code>.</p>
+     */
+    String PROPERTY_RETRY_MAX_BACKOFF = "retry.maxBackoff";
+
+    /**
+     * <p>Number of retries per minute allowed for all resolutions of the resolver. When the budget is
+     * exhausted (e.g., repository is down), failures are reported at once.</p>
+     * <p>Default value is <code>20</code>.</p>
+     */
+    String PROPERTY_RETRY_BUDGET = "retry.budget";
+
+    /**
+     * <p>Maximal number of artifacts resolved concurrently by {@link MavenResolver2#prefetch(java.util.Collection)}.</p>
+     * <p>Default value is <code>2</code>.</p>
+     */
+    String PROPERTY_PREFETCH_THREADS = "prefetch.threads";
+
+    /**
+     * <p>Maximal number of prefetched artifacts which resolution is started per second (<code>0</code> - no limit).</p>
+     * <p>Default value is <code>10</code>.</p>
+     */
+    String PROPERTY_PREFETCH_RATE = "prefetch.rate";
+
+    /**
+     * <p>Path to a file with <code>mvn:</code> URLs (one per line, <code>#</code> starts a comment) which are
+     * prefetched in background whenever resolver is (re)configured, e.g., to have artifacts of next upgrade
+     * in local repository before maintenance window.</p>
+     */
+    String PROPERTY_WARM_UP = "warmUp";
+
+    /**
+     * <p>Maximal number of remote resolutions performed concurrently. Other resolutions wait and are started
+     * in order of their {@link MavenResolver2.Priority priority} (<code>0</code> - no limit).</p>
+     * <p>Default value is the maximal number of connections per route (without connections reserved for
+     * {@link #PROPERTY_CHECKSUM_PREFETCH prefetching checksums}).</p>
+     */
+    String PROPERTY_SCHEDULER_PERMITS = "scheduler.permits";
+
+    /**
+     * <p>Maximal number of {@link MavenResolver2.Priority#BACKGROUND background} remote resolutions performed
+     * concurrently.</p>
+     * <p>Default value is half of {@link #PROPERTY_SCHEDULER_PERMITS}.</p>
+     */
+    String PROPERTY_SCHEDULER_BACKGROUND_PERMITS = "scheduler.backgroundPermits";
+
+    /**
+     * Comma-separated list of <code>groupId[:artifactId[:version[:classifier]]]</code> patterns (<code>*</code>
+     * matches any value) of artifacts resolved with {@link MavenResolver2.Priority#CRITICAL critical} priority
+     * unless the caller requests another one.
+     */
+    String PROPERTY_PRIORITY_CRITICAL = "priority.critical";
+
+    /**
+     * <p>Comma-separated list of <code>groupId[:artifactId[:version[:classifier]]]</code> patterns (<code>*</code>
+     * matches any value) of artifacts resolved with {@link MavenResolver2.Priority#BACKGROUND background} priority
+     * unless the caller requests another one.</p>
+     * <p>Default value is <code>*:*:*:sources,*:*:*:javadoc</code>.</p>
+     */
+    String PROPERTY_PRIORITY_BACKGROUND = "priority.background";
+
+    /**
+     * <p>Maximal size (in bytes) of artifacts which content is returned by
+     * {@link MavenResolver2#resolveContent(String)} (and kept in memory).</p>
+     * <p>Default value is <code>65536</code>.</p>
+     */
+    String PROPERTY_CONTENT_MAX_SIZE = "content.maxSize";
+
+    /**
+     * <p>Maximal total size (in bytes) of content of small artifacts cached in memory (<code>0</code> - no
+     * caching).</p>
+     * <p>Default value is <code>16777216</code> (16MB).</p>
+     */
+    String PROPERTY_CONTENT_CACHE_SIZE = "content.cacheSize";
+
+    /**
+     * Header field of <code>mvn:</code> URL connection with hex encoded SHA-1 digest of resolved artifact.
+     */
+    String HEADER_CHECKSUM_SHA1 = "X-Checksum-Sha1";
+
+    /**
+     * Header field of <code>mvn:</code> URL connection with identifier of repository from which the artifact was
+     * resolved (or URI of default repository).
+     */
+    String HEADER_REPOSITORY = "X-Maven-Repository";
+
 }
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+/**
+ * <p>Receives progress of downloads performed by {@link MavenResolver2}. Listeners are called in threads
+ * performing the transfers, so they should return quickly.</p>
+ * <p>Throwing {@link java.util.concurrent.CancellationException} from any method (except
+ * {@link #transferSucceeded} and {@link #transferFailed}) cancels the transfer, e.g., when it's
+ * found to be too slow.</p>
+ */
+public interface TransferProgressListener {
+
+    /**
+     * Transfer has started and first bytes are about to be received
+     * @param repositoryId identifier of remote repository
+     * @param url full URL of transferred resource
+     * @param contentLength expected length or <code>-1</code> if not known
+     */
+    void transferStarted(String repositoryId, String url, long contentLength);
+
+    /**
+     * Another chunk of data was received
+     * @param repositoryId identifier of remote repository
+     * @param url full URL of transferred resource
+     * @param transferred number of bytes received so far
+     * @param contentLength expected length or <code>-1</code> if not known
+     */
+    void transferProgressed(String repositoryId, String url, long transferred, long contentLength);
+
+    /**
+     * Transfer has finished successfully
+     * @param repositoryId identifier of remote repository
+     * @param url full URL of transferred resource
+     * @param transferred number of received bytes
+     */
+    void transferSucceeded(String repositoryId, String url, long transferred);
+
+    /**
+     * Transfer has failed, was cancelled or the resource doesn't exist in given repository
+     * @param repositoryId identifier of remote repository
+     * @param url full URL of transferred resource
+     * @param exception cause of the failure
+     */
+    void transferFailed(String repositoryId, String url, Exception exception);
+
+}
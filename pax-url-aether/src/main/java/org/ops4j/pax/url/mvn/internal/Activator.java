@@ -15,15 +15,21 @@
  */
 package org.ops4j.pax.url.mvn.internal;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.mvn.MavenResolver2;
+import org.ops4j.pax.url.mvn.ResolverMetricsMXBean;
 import org.ops4j.pax.url.mvn.ServiceConstants;
 import org.ops4j.pax.url.mvn.internal.config.MavenConfiguration;
 import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
@@ -80,6 +86,16 @@ public class Activator extends AbstractURLStreamHandlerService
      */
     private final AtomicReference<ServiceRegistration<MavenResolver>> m_resolverReg =
             new AtomicReference<ServiceRegistration<MavenResolver>>();
+    /**
+     * Extended resolver service registration. Used for cleanup.
+     */
+    private final AtomicReference<ServiceRegistration<MavenResolver2>> m_resolver2Reg =
+            new AtomicReference<ServiceRegistration<MavenResolver2>>();
+    /**
+     * Resolver metrics service registration. Used for cleanup.
+     */
+    private final AtomicReference<ServiceRegistration<ResolverMetricsMXBean>> m_metricsReg =
+            new AtomicReference<ServiceRegistration<ResolverMetricsMXBean>>();
 
     /**
      * Registers Handler as a wrap: protocol stream handler service and as a configuration managed service if
@@ -128,6 +144,17 @@ public class Activator extends AbstractURLStreamHandlerService
         {
             registration.unregister();
         }
+        ServiceRegistration<MavenResolver2> registration2 = m_resolver2Reg.getAndSet( null );
+        if ( registration2 != null )
+        {
+            registration2.unregister();
+        }
+        ServiceRegistration<ResolverMetricsMXBean> metricsRegistration = m_metricsReg.getAndSet( null );
+        if ( metricsRegistration != null )
+        {
+            metricsRegistration.unregister();
+        }
+        unregisterMBean();
         MavenResolver resolver = m_resolver.getAndSet( null );
         if ( resolver != null )
         {
@@ -198,7 +225,7 @@ public class Activator extends AbstractURLStreamHandlerService
         if (!((MavenConfigurationImpl) mavenConfig).isValid()) {
              return;
         }
-        MavenResolver resolver = new AetherBasedResolver(mavenConfig);
+        MavenResolver2 resolver = new AetherBasedResolver(mavenConfig);
         MavenResolver oldResolver = m_resolver.getAndSet( resolver );
         Dictionary<String, Object> properties = new Hashtable<String, Object>();
         properties.put("configuration", config == null ? "bundlecontext" : "configadmin");
@@ -210,6 +237,15 @@ public class Activator extends AbstractURLStreamHandlerService
         if (registration != null) {
             registration.unregister();
         }
+        ServiceRegistration<MavenResolver2> registration2 = safeRegisterService(
+                MavenResolver2.class,
+                resolver,
+                properties);
+        registration2 = m_resolver2Reg.getAndSet(registration2);
+        if (registration2 != null) {
+            registration2.unregister();
+        }
+        registerMetrics(((AetherBasedResolver) resolver).getMetrics());
         if ( oldResolver != null ) {
             try {
                 oldResolver.close();
@@ -220,6 +256,58 @@ public class Activator extends AbstractURLStreamHandlerService
             // first registration of URLStreamHandlerService
             registerHandler();
         }
+        warmUp(mavenConfig, resolver);
+    }
+
+    /**
+     * Prefetches artifacts listed in file configured with {@link ServiceConstants#PROPERTY_WARM_UP}
+     * @param mavenConfig
+     * @param resolver
+     */
+    private void warmUp(MavenConfiguration mavenConfig, MavenResolver2 resolver) {
+        String warmUp = mavenConfig.getProperty(ServiceConstants.PROPERTY_WARM_UP, null, String.class);
+        if (warmUp == null || warmUp.trim().isEmpty()) {
+            return;
+        }
+        try {
+            resolver.prefetch(ArtifactPrefetcher.readUrls(new File(warmUp.trim())));
+        } catch (IOException e) {
+            LOG.warn("Unable to read warm-up list " + warmUp + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes metrics of current resolver as OSGi service and platform MBean
+     * @param metrics
+     */
+    private void registerMetrics(ResolverMetricsMXBean metrics) {
+        ServiceRegistration<ResolverMetricsMXBean> registration = safeRegisterService(
+                ResolverMetricsMXBean.class,
+                metrics,
+                new Hashtable<String, Object>());
+        registration = m_metricsReg.getAndSet(registration);
+        if (registration != null) {
+            registration.unregister();
+        }
+        try {
+            unregisterMBean();
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName(ResolverMetricsMXBean.OBJECT_NAME));
+        } catch (Exception e) {
+            LOG.warn("Unable to register resolver metrics MBean: " + e.getMessage());
+        }
+    }
+
+    private void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ResolverMetricsMXBean.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            LOG.debug("Unable to unregister resolver metrics MBean: " + e.getMessage());
+        }
     }
 
     @Override
@@ -21,27 +21,43 @@ import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.NoRouteToHostException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.maven.artifact.repository.metadata.SnapshotVersion;
 import org.apache.maven.artifact.repository.metadata.Versioning;
 import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
@@ -51,24 +67,29 @@ import org.apache.maven.settings.Mirror;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
 import org.apache.maven.settings.crypto.DefaultSettingsDecryptionRequest;
-import org.apache.maven.settings.crypto.SettingsDecrypter;
 import org.apache.maven.settings.crypto.SettingsDecryptionRequest;
 import org.apache.maven.settings.crypto.SettingsDecryptionResult;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.eclipse.aether.AbstractRepositoryListener;
 import org.eclipse.aether.ConfigurationProperties;
 import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.DefaultRepositoryCache;
+import org.eclipse.aether.RepositoryEvent;
 import org.eclipse.aether.RepositoryException;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
-import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
-import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.Exclusion;
 import org.eclipse.aether.installation.InstallRequest;
 import org.eclipse.aether.internal.impl.PaxLocalRepositoryManager;
-import org.eclipse.aether.internal.impl.slf4j.Slf4jLoggerFactory;
 import org.eclipse.aether.metadata.DefaultMetadata;
 import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.ArtifactRepository;
 import org.eclipse.aether.repository.Authentication;
 import org.eclipse.aether.repository.LocalMetadataRequest;
 import org.eclipse.aether.repository.LocalRepository;
@@ -86,15 +107,16 @@ import org.eclipse.aether.resolution.MetadataResult;
 import org.eclipse.aether.resolution.VersionRangeRequest;
 import org.eclipse.aether.resolution.VersionRangeResolutionException;
 import org.eclipse.aether.resolution.VersionRangeResult;
-import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
-import org.eclipse.aether.spi.connector.transport.TransporterFactory;
-import org.eclipse.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.eclipse.aether.resolution.VersionRequest;
+import org.eclipse.aether.resolution.VersionResult;
 import org.eclipse.aether.transfer.ArtifactNotFoundException;
 import org.eclipse.aether.transfer.ArtifactTransferException;
 import org.eclipse.aether.transfer.MetadataNotFoundException;
 import org.eclipse.aether.transfer.MetadataTransferException;
-import org.eclipse.aether.transport.wagon.WagonProvider;
-import org.eclipse.aether.transport.wagon.WagonTransporterFactory;
+import org.eclipse.aether.util.artifact.ArtifactIdUtils;
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.eclipse.aether.util.graph.visitor.PreorderNodeListGenerator;
+import org.eclipse.aether.util.listener.ChainedTransferListener;
 import org.eclipse.aether.util.repository.AuthenticationBuilder;
 import org.eclipse.aether.util.repository.DefaultMirrorSelector;
 import org.eclipse.aether.util.repository.DefaultProxySelector;
@@ -103,14 +125,17 @@ import org.eclipse.aether.version.InvalidVersionSpecificationException;
 import org.eclipse.aether.version.Version;
 import org.eclipse.aether.version.VersionConstraint;
 import org.ops4j.lang.NullArgumentException;
-import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.commons.jfr.UrlTrace;
+import org.ops4j.pax.url.mvn.CancellationToken;
+import org.ops4j.pax.url.mvn.MavenResolver2;
 import org.ops4j.pax.url.mvn.MirrorInfo;
+import org.ops4j.pax.url.mvn.ResolverMetricsMXBean;
 import org.ops4j.pax.url.mvn.ServiceConstants;
+import org.ops4j.pax.url.mvn.TransferProgressListener;
 import org.ops4j.pax.url.mvn.internal.config.MavenConfiguration;
 import org.ops4j.pax.url.mvn.internal.config.MavenRepositoryURL;
+import org.ops4j.pax.url.mvn.internal.wagon.ChecksumPrefetcher;
 import org.slf4j.LoggerFactory;
-import org.sonatype.plexus.components.cipher.DefaultPlexusCipher;
-import org.sonatype.plexus.components.cipher.PlexusCipherException;
 
 import static org.eclipse.aether.repository.RepositoryPolicy.CHECKSUM_POLICY_FAIL;
 import static org.eclipse.aether.repository.RepositoryPolicy.CHECKSUM_POLICY_IGNORE;
@@ -124,10 +149,14 @@ import static org.ops4j.pax.url.mvn.internal.Parser.VERSION_LATEST;
 /**
  * Aether based, drop in replacement for mvn protocol
  */
-public class AetherBasedResolver implements MavenResolver {
+public class AetherBasedResolver implements MavenResolver2 {
 
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(AetherBasedResolver.class);
     private static final String LATEST_VERSION_RANGE = "[0.0,)";
+    /**
+     * @see "org.eclipse.aether.connector.basic.BasicRepositoryConnector#CONFIG_PROP_THREADS"
+     */
+    private static final String CONNECTOR_THREADS = "aether.connector.basic.threads";
     private static final String REPO_TYPE = "default";
     private static final String SCHEMA_HTTP = "http";
     private static final String SCHEMA_HTTPS = "https";
@@ -136,18 +165,107 @@ public class AetherBasedResolver implements MavenResolver {
     private static final String PROXY_USER = "proxyUser";
     private static final String PROXY_PASSWORD = "proxyPassword";
     private static final String NON_PROXY_HOSTS = "nonProxyHosts";
+    private static final int ORIGINS_SIZE = 1024;
+    private static final int REMOTE_REPOSITORIES_SIZE = 256;
+    /**
+     * Time (ms) after modification of <code>@multi</code> directory when its expansion is not cached yet
+     */
+    private static final long MULTI_DIRECTORY_TIMESTAMP_RESOLUTION = 2000L;
+    /**
+     * Timestamped SNAPSHOT version: <code>version-yyyyMMdd.HHmmss-buildNumber</code>
+     */
+    private static final Pattern SNAPSHOT_VERSION = Pattern.compile("^(.*)-(\\d{8}\\.\\d{6})-(\\d+)$");
 
     final private RepositorySystem m_repoSystem;
     final private MavenConfiguration m_config;
     final private MirrorSelector m_mirrorSelector;
+    /**
+     * Chooses one of equivalent mirrors, <code>null</code> if mirrors aren't balanced
+     */
+    final private MirrorBalancer m_mirrorBalancer;
     final private ProxySelector m_proxySelector;
-    final private CloseableHttpClient m_client;
+    /**
+     * Base URLs of peers serving their local repositories
+     */
+    final private List<String> m_peers = new ArrayList<String>();
+    /**
+     * Tracks failures of peers, <code>null</code> if there are no peers
+     */
+    final private MirrorBalancer m_peerHealth;
+    final private AtomicInteger m_nextPeer = new AtomicInteger();
+    final private RetryPolicy m_retryPolicy;
+    final private ArtifactPrefetcher m_prefetcher;
+    final private ResolutionScheduler m_scheduler;
+    final private ArtifactContentCache m_contentCache;
+    /**
+     * Serves local repository to peers, <code>null</code> if not configured
+     */
+    private PeerRepositoryServer m_peerServer;
+    /**
+     * Serves resolution requests of other processes, <code>null</code> if not configured
+     */
+    private ResolverDaemon m_daemon;
+    /**
+     * HTTP client and repository system, possibly shared with other resolvers
+     */
+    final private ResolverCore m_core;
+    final private AtomicBoolean m_closed = new AtomicBoolean();
+    final private ResolverMetrics m_metrics;
+    final private TransferProgressDispatcher m_transferDispatcher = new TransferProgressDispatcher();
+    /**
+     * Token of resolution performed by current thread, passed to sessions' data
+     */
+    final private ThreadLocal<CancellationToken> m_cancellation = new ThreadLocal<CancellationToken>();
+    /**
+     * Priority of resolution performed by current thread, if requested by caller
+     */
+    final private ThreadLocal<Priority> m_priority = new ThreadLocal<Priority>();
     private Settings m_settings;
-    private ConfigurableSettingsDecrypter decrypter;
+
+    private final TrustedChecksumStore m_trustedChecksums = new TrustedChecksumStore();
+    private final Set<String> m_trustedRepositories
+            = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /**
+     * Ids of artifacts just downloaded from trusted repositories, whose digests are verified when their
+     * resolution completes. Artifacts found in local repository are not verified again.
+     */
+    private final Set<String> m_trustedDownloads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     private LocalRepository localRepository;
+    /**
+     * Expanded <code>@multi</code> repositories, refreshed when modification time of their directory changes
+     */
+    private final ConcurrentMap<File, MultiDirectory> m_multiDirectories = new ConcurrentHashMap<File, MultiDirectory>();
+    /**
+     * Remote repositories created for configured (or passed in <code>mvn:</code> URLs) repository URLs, keyed
+     * by {@link #repositoryKey(MavenRepositoryURL)}, in access order
+     */
+    private final Map<String, RemoteRepository> m_remoteRepositories = new LinkedHashMap<String, RemoteRepository>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RemoteRepository> eldest) {
+            return size() > REMOTE_REPOSITORIES_SIZE;
+        }
+    };
     private final ConcurrentMap<LocalRepository, Deque<RepositorySystemSession>> sessions
             = new ConcurrentHashMap<LocalRepository, Deque<RepositorySystemSession>>();
+    private final ConcurrentMap<LocalRepository, Deque<RepositorySystemSession>> staleSessions
+            = new ConcurrentHashMap<LocalRepository, Deque<RepositorySystemSession>>();
+
+    private LocalRepositoryMaintenance m_maintenance;
+
+    private final boolean m_staleWhileRevalidate;
+    private ExecutorService m_revalidator;
+    private final Set<String> m_revalidating = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Repositories of recently resolved files, in access order
+     */
+    private final Map<File, String> m_origins = new LinkedHashMap<File, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, String> eldest) {
+            return size() > ORIGINS_SIZE;
+        }
+    };
 
     /**
      * Create a AetherBasedResolver
@@ -165,23 +283,132 @@ public class AetherBasedResolver implements MavenResolver {
      */
     public AetherBasedResolver(final MavenConfiguration configuration, final MirrorInfo mirror) {
         NullArgumentException.validateNotNull(configuration, "Maven configuration");
-        m_client = HttpClients.createClient(configuration.getPropertyResolver(), configuration.getPid());
+        m_core = ResolverCore.acquire(configuration);
+        m_metrics = new ResolverMetrics(this, sessions, m_core.getConnectionManager());
         m_config = configuration;
         m_settings = configuration.getSettings();
-        m_repoSystem = newRepositorySystem();
+        m_repoSystem = m_core.getRepositorySystem();
         decryptSettings();
         m_proxySelector = selectProxies();
+        String balancing = configuration.getProperty(ServiceConstants.PROPERTY_MIRROR_BALANCING,
+                MirrorBalancer.NONE, String.class);
+        m_mirrorBalancer = MirrorBalancer.NONE.equals(balancing) ? null : new MirrorBalancer(balancing,
+                configuration.getProperty(ServiceConstants.PROPERTY_MIRROR_FAILURE_THRESHOLD, 3, Integer.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_MIRROR_QUARANTINE, 60000L, Long.class));
         m_mirrorSelector = selectMirrors(mirror);
+        int connections = HttpClients.getMaxConnectionsPerRoute(configuration.getPropertyResolver());
+        if (configuration.getProperty(ServiceConstants.PROPERTY_CHECKSUM_PREFETCH, false, Boolean.class)) {
+            // connections used to prefetch checksums are not available to resolutions
+            connections = Math.max(1, connections - ChecksumPrefetcher.getThreads(connections));
+        }
+        int permits = configuration.getProperty(ServiceConstants.PROPERTY_SCHEDULER_PERMITS, connections, Integer.class);
+        m_scheduler = new ResolutionScheduler(permits,
+                configuration.getProperty(ServiceConstants.PROPERTY_SCHEDULER_BACKGROUND_PERMITS, permits / 2, Integer.class),
+                Arrays.asList(configuration.getProperty(ServiceConstants.PROPERTY_PRIORITY_CRITICAL,
+                        "", String.class).split(",")),
+                Arrays.asList(configuration.getProperty(ServiceConstants.PROPERTY_PRIORITY_BACKGROUND,
+                        "*:*:*:sources,*:*:*:javadoc", String.class).split(",")));
+        m_prefetcher = new ArtifactPrefetcher(this,
+                configuration.getProperty(ServiceConstants.PROPERTY_PREFETCH_THREADS, 2, Integer.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_PREFETCH_RATE, 10, Integer.class));
+        m_contentCache = new ArtifactContentCache(
+                configuration.getProperty(ServiceConstants.PROPERTY_CONTENT_MAX_SIZE, 65536L, Long.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_CONTENT_CACHE_SIZE, 16777216L, Long.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_UPDATE_RELEASES, false, Boolean.class));
+        m_retryPolicy = new RetryPolicy(
+                configuration.getProperty(ServiceConstants.PROPERTY_RETRY_HIGH, 0, Integer.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_RETRY_LOW, 0, Integer.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_RETRY_UNKNOWN, 0, Integer.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_RETRY_BACKOFF, 1000L, Long.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_RETRY_MAX_BACKOFF, 30000L, Long.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_RETRY_BUDGET, 20, Integer.class));
+        for (String peer : configuration.getProperty(ServiceConstants.PROPERTY_PEERS, "", String.class).split(",")) {
+            if (!peer.trim().isEmpty()) {
+                m_peers.add(peer.trim());
+            }
+        }
+        m_peerHealth = m_peers.isEmpty() ? null : new MirrorBalancer(MirrorBalancer.ROUND_ROBIN, 1, 60000L);
+        for (String peer : m_peers) {
+            m_peerHealth.register(peer);
+        }
+        Integer peerPort = configuration.getProperty(ServiceConstants.PROPERTY_PEER_PORT, null, Integer.class);
+        String peerHost = configuration.getProperty(ServiceConstants.PROPERTY_PEER_HOST, null, String.class);
+        if (peerPort != null && peerHost == null) {
+            LOG.warn("Not serving local repository to peers - {} has to be set explicitly",
+                    ServiceConstants.PROPERTY_PEER_HOST);
+        } else if (peerPort != null) {
+            try {
+                m_peerServer = PeerRepositoryServer.acquire(peerHost, peerPort, getLocalRepository().getBasedir());
+            } catch (IOException e) {
+                LOG.warn("Can't serve local repository to peers: {}", e.getMessage());
+            }
+        }
+        Long maxSize = configuration.getProperty(ServiceConstants.PROPERTY_LOCAL_REPOSITORY_MAX_SIZE, null, Long.class);
+        if (maxSize != null) {
+            String pinned = configuration.getProperty(ServiceConstants.PROPERTY_LOCAL_REPOSITORY_PINNED, "", String.class);
+            m_maintenance = new LocalRepositoryMaintenance(getLocalRepository().getBasedir(), maxSize,
+                    Arrays.asList(pinned.split(",")));
+            m_maintenance.setListener(new LocalRepositoryMaintenance.Listener() {
+                @Override
+                public void removed(File directory) {
+                    m_contentCache.evict(directory);
+                }
+            });
+            m_maintenance.start(configuration.getProperty(ServiceConstants.PROPERTY_LOCAL_REPOSITORY_MAINTENANCE_INTERVAL,
+                    3600000L, Long.class));
+        }
+        m_staleWhileRevalidate = configuration.getProperty(ServiceConstants.PROPERTY_STALE_WHILE_REVALIDATE,
+                false, Boolean.class);
+        if (m_staleWhileRevalidate) {
+            m_revalidator = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "pax-url-aether-revalidator");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        Integer daemonPort = configuration.getProperty(ServiceConstants.PROPERTY_DAEMON_PORT, null, Integer.class);
+        if (daemonPort != null && configuration.getProperty(ServiceConstants.PROPERTY_DAEMON, false, Boolean.class)) {
+            try {
+                m_daemon = ResolverDaemon.acquire(daemonPort, getLocalRepository().getBasedir(), this);
+            } catch (IOException e) {
+                LOG.warn("Can't serve resolution requests of other processes: {}", e.getMessage());
+            }
+        }
     }
 
     @Override
     public void close() throws IOException {
-        m_client.close();
+        if (!m_closed.compareAndSet(false, true)) {
+            return;
+        }
+        m_prefetcher.close();
+        if (m_revalidator != null) {
+            m_revalidator.shutdownNow();
+            try {
+                // don't let background revalidation outlive the resolver (and its http client)
+                m_revalidator.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (m_maintenance != null) {
+            m_maintenance.close();
+        }
+        if (m_peerServer != null) {
+            m_peerServer.close();
+        }
+        if (m_daemon != null) {
+            m_daemon.close();
+        }
+        m_core.release();
     }
 
     private void decryptSettings() {
         SettingsDecryptionRequest request = new DefaultSettingsDecryptionRequest(m_settings);
-        SettingsDecryptionResult result = decrypter.decrypt(request);
+        SettingsDecryptionResult result = m_core.getDecrypter().decrypt(request);
         m_settings.setProxies(result.getProxies());
         m_settings.setServers(result.getServers());
     }
@@ -196,6 +423,10 @@ public class AetherBasedResolver implements MavenResolver {
         List<RemoteRepository> resultingRepos = new ArrayList<RemoteRepository>();
 
         for (RemoteRepository r : remoteRepos) {
+            if (PeerChecksumPolicyProvider.isPeer(r)) {
+                // peers (e.g., from previous attempt) are added again below
+                continue;
+            }
             naming.put(r.getId(), r);
 
             RemoteRepository rProxy = new RemoteRepository.Builder(r).setProxy(
@@ -240,10 +471,39 @@ public class AetherBasedResolver implements MavenResolver {
             resultingRepos.add(0, mirror);
         }
 
+        if (!m_peers.isEmpty() && !resultingRepos.isEmpty()) {
+            resultingRepos.addAll(0, selectPeers());
+        }
+
         remoteRepos.clear();
         remoteRepos.addAll(resultingRepos);
     }
 
+    /**
+     * Returns repositories representing healthy peers. Each resolution starts with another peer, so the load
+     * is spread among them.
+     * @return
+     */
+    private List<RemoteRepository> selectPeers() {
+        List<RemoteRepository> peers = new ArrayList<RemoteRepository>(m_peers.size());
+        int start = m_nextPeer.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < m_peers.size(); i++) {
+            int index = (start + i) % m_peers.size();
+            String url = m_peers.get(index);
+            if (!m_peerHealth.isHealthy(url)) {
+                continue;
+            }
+            // peers serve only release artifacts - metadata of local repository isn't usable remotely
+            RemoteRepository peer = new RemoteRepository.Builder(PeerChecksumPolicyProvider.PEER_ID_PREFIX + (index + 1),
+                    REPO_TYPE, url)
+                    .setReleasePolicy(new RepositoryPolicy(true, UPDATE_POLICY_ALWAYS, CHECKSUM_POLICY_FAIL))
+                    .setSnapshotPolicy(new RepositoryPolicy(false, UPDATE_POLICY_NEVER, CHECKSUM_POLICY_FAIL))
+                    .build();
+            peers.add(new RemoteRepository.Builder(peer).setProxy(m_proxySelector.getProxy(peer)).build());
+        }
+        return peers;
+    }
+
     private String minUpdateInterval(String interval1, String interval2) {
         LOG.debug("interval1: {}, interval2: {}", interval1, interval2);
         if (interval1 == null) {
@@ -394,15 +654,31 @@ public class AetherBasedResolver implements MavenResolver {
 
             final DefaultMirrorSelector delegate = new DefaultMirrorSelector();
             final Map<String, Authentication> authMap = new HashMap<String, Authentication>();
+            // with balancing, mirrors with equal mirrorOf are kept as group of the first one (ids and urls)
+            final Map<String, String> primaries = new HashMap<String, String>();
+            final Map<String, List<String>> groupIds = new HashMap<String, List<String>>();
+            final Map<String, List<String>> groupUrls = new HashMap<String, List<String>>();
 
             @Override
             public RemoteRepository getMirror(RemoteRepository repository) {
                 RemoteRepository repo = delegate.getMirror(repository);
                 if (repo != null) {
-                    Authentication mirrorAuth = authMap.get(repo.getId());
+                    String mirrorId = repo.getId();
+                    RemoteRepository.Builder builder = null;
+                    List<String> urls = groupUrls.get(mirrorId);
+                    if (urls != null && urls.size() > 1) {
+                        // chosen mirror keeps the id of the group, so local metadata and tracking are shared
+                        int chosen = m_mirrorBalancer.choose(urls);
+                        mirrorId = groupIds.get(repo.getId()).get(chosen);
+                        builder = new RemoteRepository.Builder(repo).setUrl(urls.get(chosen));
+                    }
+                    Authentication mirrorAuth = authMap.get(mirrorId);
                     if (mirrorAuth != null) {
-                        RemoteRepository.Builder builder = new RemoteRepository.Builder(repo);
-                        repo = builder.setAuthentication(mirrorAuth).build();
+                        builder = builder == null ? new RemoteRepository.Builder(repo) : builder;
+                        builder.setAuthentication(mirrorAuth);
+                    }
+                    if (builder != null) {
+                        repo = builder.build();
                     }
                 }
                 return repo;
@@ -414,6 +690,22 @@ public class AetherBasedResolver implements MavenResolver {
                 if (authentication != null) {
                     authMap.put(id, authentication);
                 }
+                if (m_mirrorBalancer != null) {
+                    String primary = primaries.get(mirrorOfIds);
+                    if (primary == null) {
+                        primaries.put(mirrorOfIds, id);
+                        groupIds.put(id, new ArrayList<String>());
+                        groupUrls.put(id, new ArrayList<String>());
+                        primary = id;
+                    }
+                    groupIds.get(primary).add(id);
+                    groupUrls.get(primary).add(url);
+                    m_mirrorBalancer.register(url);
+                    if (!primary.equals(id)) {
+                        LOG.debug("Balancing {} between mirrors {}", mirrorOfIds, groupIds.get(primary));
+                        return delegate;
+                    }
+                }
                 return delegate.add(id, url, type, repositoryManager, mirrorOfIds, mirrorOfTypes);
             }
         }
@@ -467,21 +759,25 @@ public class AetherBasedResolver implements MavenResolver {
     }
 
     private void addSubDirs(List<RemoteRepository> list, File parentDir) {
-        if (!parentDir.isDirectory()) {
-            LOG.debug("Repository marked with @multi does not resolve to a directory: "
-                    + parentDir);
-            return;
-        }
+        list.addAll(multiDirectory(parentDir).getRemoteRepositories());
+    }
 
-        for (File repo : getSortedChildDirectories(parentDir)) {
-            try {
-                String repoURI = repo.toURI().toString() + "@id=" + repo.getName();
-                LOG.debug("Adding repo from inside multi dir: " + repoURI);
-                addRepo(list, new MavenRepositoryURL(repoURI));
-            } catch (MalformedURLException e) {
-                LOG.error("Error resolving repo url of a multi repo " + repo.toURI());
-            }
-        }
+    /**
+     * Returns expanded <code>@multi</code> repository, scanning its directory again only if it was changed
+     * @param parentDir
+     * @return
+     */
+    private MultiDirectory multiDirectory(File parentDir) {
+        long lastModified = parentDir.lastModified();
+        MultiDirectory cached = m_multiDirectories.get(parentDir);
+        if (cached != null && cached.lastModified == lastModified
+                // with coarse timestamps, directory may still change within the same tick
+                && System.currentTimeMillis() - lastModified > MULTI_DIRECTORY_TIMESTAMP_RESOLUTION) {
+            return cached;
+        }
+        MultiDirectory directory = new MultiDirectory(parentDir, lastModified);
+        m_multiDirectories.put(parentDir, directory);
+        return directory;
     }
 
     /**
@@ -513,13 +809,55 @@ public class AetherBasedResolver implements MavenResolver {
     }
 
     private void addRepo(List<RemoteRepository> list, MavenRepositoryURL repo) {
+        list.add(getRemoteRepository(repo));
+    }
+
+    /**
+     * Returns (possibly cached) remote repository for given repository URL
+     * @param repo
+     * @return
+     */
+    RemoteRepository getRemoteRepository(MavenRepositoryURL repo) {
+        String key = repositoryKey(repo);
+        RemoteRepository remote;
+        synchronized (m_remoteRepositories) {
+            remote = m_remoteRepositories.get(key);
+        }
+        if (remote == null) {
+            remote = createRepo(repo);
+            synchronized (m_remoteRepositories) {
+                m_remoteRepositories.put(key, remote);
+            }
+        }
+        return remote;
+    }
+
+    /**
+     * Returns a key identifying all attributes of repository URL used by {@link #createRepo(MavenRepositoryURL)}
+     * (<code>MavenRepositoryURL</code>s parsed from the same spec are different objects)
+     * @param repo
+     * @return
+     */
+    private static String repositoryKey(MavenRepositoryURL repo) {
+        return repo.getId() + "|" + repo.getURL().toExternalForm()
+                + "|" + repo.isReleasesEnabled() + "|" + repo.getReleasesUpdatePolicy() + "|" + repo.getReleasesChecksumPolicy()
+                + "|" + repo.isSnapshotsEnabled() + "|" + repo.getSnapshotsUpdatePolicy() + "|" + repo.getSnapshotsChecksumPolicy()
+                + "|" + repo.isTrusted();
+    }
+
+    private RemoteRepository createRepo(MavenRepositoryURL repo) {
         String releasesUpdatePolicy = repo.getReleasesUpdatePolicy();
         if (releasesUpdatePolicy == null || releasesUpdatePolicy.isEmpty()) {
             releasesUpdatePolicy = UPDATE_POLICY_DAILY;
         }
+        // checksums of artifacts from trusted repositories are verified locally
+        String defaultChecksumPolicy = repo.isTrusted() ? CHECKSUM_POLICY_IGNORE : CHECKSUM_POLICY_WARN;
+        if (repo.isTrusted()) {
+            m_trustedRepositories.add(repo.getId());
+        }
         String releasesChecksumPolicy = repo.getReleasesChecksumPolicy();
         if (releasesChecksumPolicy == null || releasesChecksumPolicy.isEmpty()) {
-            releasesChecksumPolicy = CHECKSUM_POLICY_WARN;
+            releasesChecksumPolicy = defaultChecksumPolicy;
         }
         String snapshotsUpdatePolicy = repo.getSnapshotsUpdatePolicy();
         if (snapshotsUpdatePolicy == null || snapshotsUpdatePolicy.isEmpty()) {
@@ -527,7 +865,7 @@ public class AetherBasedResolver implements MavenResolver {
         }
         String snapshotsChecksumPolicy = repo.getSnapshotsChecksumPolicy();
         if (snapshotsChecksumPolicy == null || snapshotsChecksumPolicy.isEmpty()) {
-            snapshotsChecksumPolicy = CHECKSUM_POLICY_WARN;
+            snapshotsChecksumPolicy = defaultChecksumPolicy;
         }
         RemoteRepository.Builder builder = new RemoteRepository.Builder(repo.getId(), REPO_TYPE, repo.getURL().toExternalForm());
         RepositoryPolicy releasePolicy = new RepositoryPolicy(repo.isReleasesEnabled(), releasesUpdatePolicy, releasesChecksumPolicy);
@@ -538,24 +876,11 @@ public class AetherBasedResolver implements MavenResolver {
         if (authentication != null) {
             builder.setAuthentication(authentication);
         }
-        list.add(builder.build());
+        return builder.build();
     }
 
     private void addLocalSubDirs(List<LocalRepository> list, File parentDir) {
-        if (!parentDir.isDirectory()) {
-            LOG.debug("Repository marked with @multi does not resolve to a directory: "
-                    + parentDir);
-            return;
-        }
-        for (File repo : getSortedChildDirectories(parentDir)) {
-            try {
-                String repoURI = repo.toURI().toString() + "@id=" + repo.getName();
-                LOG.debug("Adding repo from inside multi dir: " + repoURI);
-                addLocalRepo(list, new MavenRepositoryURL(repoURI));
-            } catch (MalformedURLException e) {
-                LOG.error("Error resolving repo url of a multi repo " + repo.toURI());
-            }
-        }
+        list.addAll(multiDirectory(parentDir).getLocalRepositories());
     }
 
     private void addLocalRepo(List<LocalRepository> list, MavenRepositoryURL repo) {
@@ -565,6 +890,63 @@ public class AetherBasedResolver implements MavenResolver {
         }
     }
 
+    /**
+     * Repositories found in subdirectories of a directory marked with <code>@multi</code>
+     */
+    private class MultiDirectory {
+
+        private final long lastModified;
+        private final List<MavenRepositoryURL> urls = new ArrayList<MavenRepositoryURL>();
+        private List<RemoteRepository> remoteRepositories;
+        private List<LocalRepository> localRepositories;
+
+        MultiDirectory(File parentDir, long lastModified) {
+            this.lastModified = lastModified;
+            if (!parentDir.isDirectory()) {
+                LOG.debug("Repository marked with @multi does not resolve to a directory: "
+                        + parentDir);
+                return;
+            }
+            for (File repo : getSortedChildDirectories(parentDir)) {
+                try {
+                    String repoURI = repo.toURI().toString() + "@id=" + repo.getName();
+                    LOG.debug("Adding repo from inside multi dir: " + repoURI);
+                    urls.add(new MavenRepositoryURL(repoURI));
+                } catch (MalformedURLException e) {
+                    LOG.error("Error resolving repo url of a multi repo " + repo.toURI());
+                }
+            }
+        }
+
+        synchronized List<RemoteRepository> getRemoteRepositories() {
+            if (remoteRepositories == null) {
+                remoteRepositories = new ArrayList<RemoteRepository>();
+                for (MavenRepositoryURL url : urls) {
+                    addRepo(remoteRepositories, url);
+                }
+            }
+            return remoteRepositories;
+        }
+
+        synchronized List<LocalRepository> getLocalRepositories() {
+            if (localRepositories == null) {
+                localRepositories = new ArrayList<LocalRepository>();
+                for (MavenRepositoryURL url : urls) {
+                    addLocalRepo(localRepositories, url);
+                }
+            }
+            return localRepositories;
+        }
+    }
+
+    /**
+     * Returns statistics of this resolver
+     * @return
+     */
+    public ResolverMetricsMXBean getMetrics() {
+        return m_metrics;
+    }
+
     public RepositorySystem getRepositorySystem() {
         return m_repoSystem;
     }
@@ -580,13 +962,82 @@ public class AetherBasedResolver implements MavenResolver {
         return resolve(url, null);
     }
 
+    @Override
+    public File resolve(String url, Exception previousException, CancellationToken token) throws IOException {
+        return resolve(url, previousException, token, null);
+    }
+
+    @Override
+    public File resolve(String url, Exception previousException, CancellationToken token, Priority priority)
+            throws IOException {
+        if (token != null && token.isCancelled()) {
+            throw new InterruptedIOException("Resolution of " + url + " was cancelled");
+        }
+        CancellationToken previous = m_cancellation.get();
+        Priority previousPriority = m_priority.get();
+        m_cancellation.set(token);
+        m_priority.set(priority);
+        try {
+            return resolve(url, previousException);
+        } catch (IOException e) {
+            if (token != null && token.isCancelled()) {
+                InterruptedIOException cancelled = new InterruptedIOException("Resolution of " + url + " was cancelled");
+                cancelled.initCause(e);
+                throw cancelled;
+            }
+            throw e;
+        } finally {
+            if (previous == null) {
+                m_cancellation.remove();
+            } else {
+                m_cancellation.set(previous);
+            }
+            if (previousPriority == null) {
+                m_priority.remove();
+            } else {
+                m_priority.set(previousPriority);
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer resolveContent(String url) throws IOException {
+        ArtifactContentCache.Content content = resolveCached(url);
+        return content == null ? null : content.getBuffer();
+    }
+
+    /**
+     * Resolves maven based url, taking content of small artifacts from (or adding it to) in-memory cache
+     * @param url
+     * @return
+     * @throws IOException
+     */
+    public ArtifactContentCache.Content resolveCached(String url) throws IOException {
+        ArtifactContentCache.Content content = m_contentCache.resolve(this, url);
+        if (content != null && m_maintenance != null) {
+            // cached content may be returned without resolution, which records the access otherwise
+            m_maintenance.accessed(content.getFile());
+        }
+        return content;
+    }
+
+    @Override
+    public void addTransferListener(TransferProgressListener listener) {
+        m_transferDispatcher.addListener(listener);
+    }
+
+    @Override
+    public void removeTransferListener(TransferProgressListener listener) {
+        m_transferDispatcher.removeListener(listener);
+    }
+
     @Override
     public File resolve(String url, Exception previousException) throws IOException {
         if (!url.startsWith(ServiceConstants.PROTOCOL + ":")) {
             throw new IllegalArgumentException("url should be a mvn based url");
         }
         url = url.substring((ServiceConstants.PROTOCOL + ":").length());
-        Parser parser = new Parser(url);
+        Parser parser = Parser.parse(url);
         return resolve(
                 parser.getGroup(),
                 parser.getArtifact(),
@@ -631,11 +1082,52 @@ public class AetherBasedResolver implements MavenResolver {
     }
 
     /**
-     * Resolve maven artifact as file in repository.
+     * Resolve maven artifact as file in repository, retrying according to {@link RetryPolicy}.
      */
     public File resolve(Artifact artifact,
                         MavenRepositoryURL repositoryURL,
                         Exception previousException) throws IOException {
+        for (int retry = 1; ; retry++) {
+            try {
+                return resolveOnce(artifact, repositoryURL, previousException);
+            } catch (IOException e) {
+                CancellationToken token = m_cancellation.get();
+                long delay = m_retryPolicy.isEnabled() ? m_retryPolicy.nextDelay(isRetryableException(e), retry) : -1L;
+                if (delay < 0 || e instanceof InterruptedIOException || token != null && token.isCancelled()) {
+                    throw e;
+                }
+                LOG.debug("Retrying resolution of {} in {}ms after: " + e.getMessage(), artifact, delay);
+                m_metrics.increment("resolve.retries", 1L);
+                backoff(delay, token);
+                previousException = e;
+            }
+        }
+    }
+
+    /**
+     * Waits before next attempt to resolve an artifact
+     * @param delay
+     * @param token token of current resolution (may be <code>null</code>)
+     * @throws InterruptedIOException if the resolution is cancelled or the thread is interrupted
+     */
+    private void backoff(long delay, CancellationToken token) throws InterruptedIOException {
+        long end = System.currentTimeMillis() + delay;
+        try {
+            for (long now = System.currentTimeMillis(); now < end; now = System.currentTimeMillis()) {
+                if (token != null && token.isCancelled()) {
+                    throw new InterruptedIOException("Resolution was cancelled");
+                }
+                Thread.sleep(Math.min(100L, end - now));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for next resolution attempt");
+        }
+    }
+
+    private File resolveOnce(Artifact artifact,
+                             MavenRepositoryURL repositoryURL,
+                             Exception previousException) throws IOException {
 
         List<LocalRepository> defaultRepos = selectDefaultRepositories();
         List<RemoteRepository> remoteRepos = Collections.EMPTY_LIST;
@@ -681,7 +1173,20 @@ public class AetherBasedResolver implements MavenResolver {
             }
             assignProxyAndMirrors(remoteRepos);
         }//else not url specified or only local onces so keep going
-        File resolved = resolve( defaultRepos, remoteRepos, artifact );
+        ResolverMetrics.Phase phase = m_metrics.begin(ResolverMetrics.PHASE_RESOLVE, artifact);
+        File resolved;
+        try {
+            resolved = resolve( defaultRepos, remoteRepos, artifact );
+            m_metrics.increment("resolve.success", 1L);
+        } catch (IOException e) {
+            m_metrics.increment("resolve.failures." + isRetryableException(e).name(), 1L);
+            throw e;
+        } finally {
+            phase.end();
+        }
+        if (m_maintenance != null) {
+            m_maintenance.accessed(resolved);
+        }
 
         LOG.debug("Resolved ({}) as {}", artifact.toString(), resolved.getAbsolutePath());
         return resolved;
@@ -706,6 +1211,7 @@ public class AetherBasedResolver implements MavenResolver {
         }
 
         // Try with default repositories
+        ResolverMetrics.Phase phase = m_metrics.begin(ResolverMetrics.PHASE_DEFAULT_REPOSITORIES, artifact);
         try {
             GenericVersionScheme genericVersionScheme = new GenericVersionScheme();
             VersionConstraint vc = genericVersionScheme.parseVersionConstraint(artifact.getVersion());
@@ -773,9 +1279,8 @@ public class AetherBasedResolver implements MavenResolver {
                     if (vc.getVersion() != null) {
                         // normal resolution without ranges
                         try {
-                            return m_repoSystem
-                                    .resolveArtifact(session, new ArtifactRequest(artifact, null, null))
-                                    .getArtifact().getFile();
+                            return recordOrigin(m_repoSystem
+                                    .resolveArtifact(session, new ArtifactRequest(artifact, null, null)));
                         } catch (ArtifactResolutionException e) {
                             // Ignore
                         }
@@ -786,13 +1291,27 @@ public class AetherBasedResolver implements MavenResolver {
             }
         } catch (InvalidVersionSpecificationException e) {
             // Should not happen
+        } finally {
+            phase.end();
         }
+        if (!isRevalidated(artifact) && !isRange(artifact)) {
+            // artifacts already in local repository don't wait for permits of remote resolutions
+            File local = resolveLocal(remoteRepos, artifact);
+            if (local != null) {
+                return local;
+            }
+        } else if (m_staleWhileRevalidate && !remoteRepos.isEmpty()) {
+            File stale = resolveLocal(remoteRepos, artifact);
+            if (stale != null) {
+                LOG.debug("Resolved {} from local repository, revalidating in background", artifact);
+                revalidate(remoteRepos, artifact);
+                return stale;
+            }
+        }
+        ResolutionScheduler.Permit permit = acquirePermit(artifact);
         RepositorySystemSession session = newSession(null);
         try {
-            artifact = resolveLatestVersionRange(session, remoteRepos, artifact);
-            return m_repoSystem
-                    .resolveArtifact(session, new ArtifactRequest(artifact, remoteRepos, null))
-                    .getArtifact().getFile();
+            return resolveRemote(session, remoteRepos, artifact);
         } catch (ArtifactResolutionException e) {
             // we know there's one ArtifactResult, because there was one ArtifactRequest
             ArtifactResolutionException original = new ArtifactResolutionException(e.getResults(),
@@ -807,7 +1326,389 @@ public class AetherBasedResolver implements MavenResolver {
             throw configureIOException(original, e, e.getResult().getExceptions());
         } finally {
             releaseSession(session);
+            permit.release();
+        }
+    }
+
+    /**
+     * Waits until remote resolution of given artifact may start according to its priority
+     * @param artifact
+     * @return
+     * @throws InterruptedIOException
+     */
+    private ResolutionScheduler.Permit acquirePermit(Artifact artifact) throws InterruptedIOException {
+        return acquirePermit(artifact, 1);
+    }
+
+    /**
+     * Waits until remote resolution of given artifact, which uses up to <code>transfers</code> concurrent
+     * transfers, may start according to its priority
+     * @param artifact
+     * @param transfers
+     * @return
+     * @throws InterruptedIOException
+     */
+    private ResolutionScheduler.Permit acquirePermit(Artifact artifact, int transfers) throws InterruptedIOException {
+        Priority priority = m_scheduler.priority(artifact, m_priority.get());
+        ResolverMetrics.Phase phase = m_metrics.begin(ResolverMetrics.PHASE_SCHEDULE, artifact);
+        ResolutionScheduler.Permit permit;
+        try {
+            permit = m_scheduler.acquire(priority, m_cancellation.get(), transfers);
+        } finally {
+            phase.end();
+        }
+        if (permit.hasWaited()) {
+            m_metrics.increment("schedule.waits." + priority.name(), 1L);
+        }
+        return permit;
+    }
+
+    private File resolveRemote(RepositorySystemSession session, List<RemoteRepository> remoteRepos, Artifact artifact)
+            throws VersionRangeResolutionException, ArtifactResolutionException, IOException {
+        artifact = resolveLatestVersionRange(session, remoteRepos, artifact);
+        ResolverMetrics.Phase phase = m_metrics.begin(session.isOffline()
+                ? ResolverMetrics.PHASE_LOCAL : ResolverMetrics.PHASE_REMOTE, artifact);
+        ArtifactResult result;
+        try {
+            result = m_repoSystem.resolveArtifact(session, new ArtifactRequest(artifact, remoteRepos, null));
+        } finally {
+            phase.end();
+        }
+        verifyTrusted(result);
+        return recordOrigin(result);
+    }
+
+    /**
+     * Verifies digest of an artifact if it was just downloaded from trusted repository
+     * @param result
+     * @throws IOException
+     */
+    private void verifyTrusted(ArtifactResult result) throws IOException {
+        if (m_trustedDownloads.remove(ArtifactIdUtils.toId(result.getArtifact()))) {
+            m_trustedChecksums.verify(result.getArtifact().getFile(), result.getArtifact().getVersion());
+        }
+    }
+
+    /**
+     * Remembers the repository from which an artifact was resolved
+     * @param result
+     * @return resolved file
+     */
+    private File recordOrigin(ArtifactResult result) {
+        File file = result.getArtifact().getFile();
+        ArtifactRepository repository = result.getRepository();
+        if (file != null && repository != null) {
+            String origin = repository instanceof LocalRepository
+                    ? ((LocalRepository) repository).getBasedir().toURI().toString() : repository.getId();
+            synchronized (m_origins) {
+                m_origins.put(file, origin);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the repository from which a file was recently resolved
+     * @param file file returned by one of <code>resolve()</code> methods
+     * @return identifier of remote repository, URI of default or local repository or <code>null</code> if not known
+     */
+    public String getRepository(File file) {
+        synchronized (m_origins) {
+            return m_origins.get(file);
+        }
+    }
+
+    @Override
+    public boolean isUpToDate(String url, String checksum, long timestamp) throws IOException {
+        if (!url.startsWith(ServiceConstants.PROTOCOL + ":")) {
+            throw new IllegalArgumentException("url should be a mvn based url");
+        }
+        Parser parser = Parser.parse(url.substring((ServiceConstants.PROTOCOL + ":").length()));
+        Artifact artifact = new DefaultArtifact(parser.getGroup(), parser.getArtifact(), parser.getClassifier(),
+                parser.getType(), parser.getVersion());
+        return isUpToDate(artifact, parser.getRepositoryURL(), checksum, timestamp);
+    }
+
+    @Override
+    public boolean isUpToDate(String groupId, String artifactId, String classifier, String extension, String version,
+                              String checksum, long timestamp) throws IOException {
+        Artifact artifact = new DefaultArtifact(groupId, artifactId, classifier, extension, version);
+        return isUpToDate(artifact, null, checksum, timestamp);
+    }
+
+    /**
+     * Checks whether an artifact is unchanged since it was previously resolved, without downloading it.
+     * Versions of SNAPSHOTs and ranges are determined from <code>maven-metadata.xml</code> as during normal
+     * resolution. Then previously downloaded file is checked or, if there's none, remote <code>.sha1</code>
+     * file is fetched. Timestamped SNAPSHOTs may be checked against <code>timestamp</code> using only
+     * the metadata.
+     * @param artifact
+     * @param repositoryURL
+     * @param checksum SHA-1 digest of previously resolved content or <code>null</code>
+     * @param timestamp time when content was previously resolved or <code>0</code>
+     * @return <code>true</code> if the artifact is known to be unchanged
+     * @throws IOException
+     */
+    public boolean isUpToDate(Artifact artifact, MavenRepositoryURL repositoryURL,
+                              String checksum, long timestamp) throws IOException {
+        if (checksum == null && timestamp <= 0L) {
+            return false;
+        }
+        if (artifact.getExtension().isEmpty()) {
+            artifact = new DefaultArtifact(
+                    artifact.getGroupId(),
+                    artifact.getArtifactId(),
+                    artifact.getClassifier(),
+                    "jar",
+                    artifact.getVersion()
+            );
+        }
+        if (artifact.getVersion().equals(VERSION_LATEST)) {
+            artifact = artifact.setVersion(LATEST_VERSION_RANGE);
+        }
+        ResolverMetrics.Phase phase = m_metrics.begin(ResolverMetrics.PHASE_UP_TO_DATE, artifact);
+        try {
+            boolean range;
+            try {
+                range = new GenericVersionScheme().parseVersionConstraint(artifact.getVersion()).getRange() != null;
+            } catch (InvalidVersionSpecificationException e) {
+                throw new IOException("Invalid version of " + artifact, e);
+            }
+            if (!range) {
+                // default repositories take precedence during resolution, so they do here
+                for (LocalRepository repo : selectDefaultRepositories()) {
+                    File file = findLocal(repo, null, artifact);
+                    if (file != null) {
+                        return isUpToDate(file, checksum, timestamp);
+                    }
+                }
+            }
+
+            List<RemoteRepository> remoteRepos = Collections.emptyList();
+            if (repositoryURL == null || !repositoryURL.useOnlyLocalRepositories()) {
+                remoteRepos = selectRepositories();
+                if (repositoryURL != null) {
+                    addRepo(remoteRepos, repositoryURL);
+                }
+                assignProxyAndMirrors(remoteRepos);
+            }
+            RepositorySystemSession session = newSession(null);
+            try {
+                if (range) {
+                    artifact = resolveLatestVersionRange(session, remoteRepos, artifact);
+                }
+                if (artifact.isSnapshot()) {
+                    VersionResult version = m_repoSystem.resolveVersion(session,
+                            new VersionRequest(artifact, remoteRepos, null));
+                    artifact = artifact.setVersion(version.getVersion());
+                    long deployed = snapshotTimestamp(artifact.getVersion());
+                    if (checksum == null && deployed > 0L) {
+                        return deployed <= timestamp;
+                    }
+                }
+                // with updateReleases, a release downloaded earlier proves nothing
+                boolean releaseUpdates = !artifact.isSnapshot() && isRevalidated(artifact);
+                if (!releaseUpdates) {
+                    File file = findLocal(null, remoteRepos, artifact);
+                    if (file != null) {
+                        return isUpToDate(file, checksum, timestamp);
+                    }
+                }
+                if (checksum == null) {
+                    return !artifact.isSnapshot() && !releaseUpdates;
+                }
+                ResolutionScheduler.Permit permit = acquirePermit(artifact);
+                try {
+                    return checksum.equalsIgnoreCase(remoteSha1(session, remoteRepos, artifact));
+                } finally {
+                    permit.release();
+                }
+            } catch (ArtifactResolutionException e) {
+                LOG.debug("Can't check {} without downloading it: {}", artifact, e.getMessage());
+                return false;
+            } catch (RepositoryException e) {
+                throw new IOException("Unable to check " + artifact, e);
+            } finally {
+                releaseSession(session);
+            }
+        } finally {
+            phase.end();
+        }
+    }
+
+    private static boolean isUpToDate(File file, String checksum, long timestamp) throws IOException {
+        if (checksum != null) {
+            return checksum.equalsIgnoreCase(Checksums.localSha1(file));
+        }
+        return file.lastModified() <= timestamp;
+    }
+
+    /**
+     * Finds an artifact in local or default repository without connecting to remote repositories.
+     * @param repo default repository or <code>null</code> for local repository
+     * @param remoteRepos repositories from which the artifact might have been downloaded
+     * @param artifact
+     * @return locally available file or <code>null</code>
+     */
+    private File findLocal(LocalRepository repo, List<RemoteRepository> remoteRepos, Artifact artifact) {
+        RepositorySystemSession session = newSession(repo, true);
+        try {
+            return m_repoSystem.resolveArtifact(session, new ArtifactRequest(artifact, remoteRepos, null))
+                    .getArtifact().getFile();
+        } catch (ArtifactResolutionException e) {
+            return null;
+        } finally {
+            releaseSession(session);
+        }
+    }
+
+    /**
+     * Fetches <code>.sha1</code> file of an artifact. Checksum files have no checksums, so they're
+     * fetched with <code>ignore</code> checksum policy.
+     * @param session
+     * @param remoteRepos
+     * @param artifact
+     * @return hex encoded digest
+     */
+    private String remoteSha1(RepositorySystemSession session, List<RemoteRepository> remoteRepos, Artifact artifact)
+            throws ArtifactResolutionException, IOException {
+        Artifact sha1 = new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(),
+                artifact.getClassifier(), artifact.getExtension() + ".sha1", artifact.getVersion());
+        DefaultRepositorySystemSession checksumSession = new DefaultRepositorySystemSession(session);
+        checksumSession.setChecksumPolicy(CHECKSUM_POLICY_IGNORE);
+        ArtifactResult result = m_repoSystem.resolveArtifact(checksumSession, new ArtifactRequest(sha1, remoteRepos, null));
+        return Checksums.read(result.getArtifact().getFile());
+    }
+
+    /**
+     * Returns deployment time of timestamped SNAPSHOT version
+     * @param version
+     * @return time in milliseconds or <code>0</code> if the version isn't a timestamped SNAPSHOT
+     */
+    private static long snapshotTimestamp(String version) {
+        Matcher matcher = SNAPSHOT_VERSION.matcher(version);
+        if (!matcher.matches()) {
+            return 0L;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd.HHmmss");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(matcher.group(2)).getTime();
+        } catch (ParseException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Checks whether resolution of given artifact may involve checking remote repositories even if
+     * the artifact is already available locally - i.e., whether it's subject to update policies.
+     * @param artifact
+     * @return
+     */
+    private boolean isRevalidated(Artifact artifact) {
+        if (artifact.isSnapshot() || LATEST_VERSION_RANGE.equals(artifact.getVersion())) {
+            return true;
+        }
+        return m_config.getProperty(ServiceConstants.PROPERTY_UPDATE_RELEASES, false, Boolean.class);
+    }
+
+    private static boolean isRange(Artifact artifact) {
+        try {
+            return new GenericVersionScheme().parseVersionConstraint(artifact.getVersion()).getRange() != null;
+        } catch (InvalidVersionSpecificationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolves an artifact using only what's already available in local repository (metadata and files
+     * downloaded earlier), without connecting to remote repositories.
+     * @param remoteRepos
+     * @param artifact
+     * @return locally available artifact or <code>null</code> if artifact has to be resolved remotely
+     */
+    private File resolveLocal(List<RemoteRepository> remoteRepos, Artifact artifact) {
+        RepositorySystemSession session = newSession(null, true);
+        try {
+            return resolveRemote(session, remoteRepos, artifact);
+        } catch (RepositoryException | IOException e) {
+            LOG.debug("No usable local version of {}, resolving remotely", artifact);
+            return null;
+        } finally {
+            releaseSession(session);
+        }
+    }
+
+    /**
+     * Schedules background resolution of an artifact (only if the same artifact isn't already being
+     * revalidated) to refresh metadata and download newer version into local repository.
+     * @param remoteRepos
+     * @param artifact
+     */
+    private void revalidate(final List<RemoteRepository> remoteRepos, final Artifact artifact) {
+        final String key = artifact.toString();
+        if (!m_revalidating.add(key)) {
+            return;
+        }
+        try {
+            m_revalidator.execute(new Runnable() {
+                @Override
+                public void run() {
+                    m_priority.set(Priority.BACKGROUND);
+                    RepositorySystemSession session = null;
+                    ResolutionScheduler.Permit permit = null;
+                    try {
+                        permit = acquirePermit(artifact);
+                        session = newSession(null);
+                        File file = resolveRemote(session, remoteRepos, artifact);
+                        LOG.debug("Revalidated {} as {}", artifact, file);
+                    } catch (RepositoryException | IOException e) {
+                        LOG.debug("Background revalidation of " + artifact + " failed: " + e.getMessage());
+                    } finally {
+                        if (session != null) {
+                            releaseSession(session);
+                        }
+                        if (permit != null) {
+                            permit.release();
+                        }
+                        m_priority.remove();
+                        m_revalidating.remove(key);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            m_revalidating.remove(key);
+        }
+    }
+
+    /**
+     * Returns number of artifacts being revalidated in background
+     * @return
+     */
+    int getRevalidating() {
+        return m_revalidating.size();
+    }
+
+    /**
+     * Checks whether the repository (or all repositories mirrored by it) is marked as
+     * {@link ServiceConstants#OPTION_TRUSTED trusted}.
+     * @param repository
+     * @return
+     */
+    private boolean isTrusted(ArtifactRepository repository) {
+        if (!(repository instanceof RemoteRepository) || m_trustedRepositories.isEmpty()) {
+            return false;
+        }
+        RemoteRepository remote = (RemoteRepository) repository;
+        if (remote.getMirroredRepositories().isEmpty()) {
+            return m_trustedRepositories.contains(remote.getId());
+        }
+        for (RemoteRepository mirrored : remote.getMirroredRepositories()) {
+            if (!m_trustedRepositories.contains(mirrored.getId())) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
@@ -836,6 +1737,102 @@ public class AetherBasedResolver implements MavenResolver {
         return exception;
     }
 
+    @Override
+    public Map<String, File> resolveDependencies(String url, Collection<String> scopes,
+                                                 Collection<String> exclusions) throws IOException {
+        if (!url.startsWith(ServiceConstants.PROTOCOL + ":")) {
+            throw new IllegalArgumentException("url should be a mvn based url");
+        }
+        Parser parser = Parser.parse(url.substring((ServiceConstants.PROTOCOL + ":").length()));
+        Artifact artifact = new DefaultArtifact(parser.getGroup(), parser.getArtifact(), parser.getClassifier(),
+                parser.getType(), parser.getVersion());
+        if (artifact.getVersion().equals(VERSION_LATEST)) {
+            artifact = artifact.setVersion(LATEST_VERSION_RANGE);
+        }
+        List<Exclusion> excluded = new ArrayList<Exclusion>();
+        if (exclusions != null) {
+            for (String exclusion : exclusions) {
+                String[] ga = exclusion.split(":");
+                excluded.add(new Exclusion(ga[0], ga.length > 1 ? ga[1] : "*", "*", "*"));
+            }
+        }
+        MavenRepositoryURL repositoryURL = parser.getRepositoryURL();
+        // as in resolve(), URL restricted to local repositories doesn't consult remote repositories at all -
+        // neither for the artifact nor for its dependencies
+        List<RemoteRepository> remoteRepos = Collections.emptyList();
+        if (repositoryURL == null || !repositoryURL.useOnlyLocalRepositories()) {
+            remoteRepos = selectRepositories();
+            if (repositoryURL != null) {
+                addRepo(remoteRepos, repositoryURL);
+            }
+            assignProxyAndMirrors(remoteRepos);
+        }
+
+        // dependencies are downloaded concurrently, so the closure takes as many permits as it uses connections,
+        // but at most half of them, leaving the rest to other resolutions
+        ResolutionScheduler.Permit permit = acquirePermit(artifact,
+                Math.max(1, HttpClients.getMaxConnectionsPerRoute(m_config.getPropertyResolver()) / 2));
+        RepositorySystemSession pooled = newSession();
+        // descriptors are cached only for this graph, so changed SNAPSHOTs are seen by next resolution
+        DefaultRepositorySystemSession session = new DefaultRepositorySystemSession(pooled);
+        session.setCache(new DefaultRepositoryCache());
+        // like in resolve(), default repositories take precedence and their artifacts are used in place
+        session.setWorkspaceReader(new DefaultRepositoriesReader(selectDefaultRepositories()));
+        session.setConfigProperty(CONNECTOR_THREADS, permit.getCount());
+        ResolverMetrics.Phase phase = m_metrics.begin(ResolverMetrics.PHASE_DEPENDENCIES, artifact);
+        try {
+            artifact = resolveLatestVersionRange(session, remoteRepos, artifact);
+            CollectRequest collectRequest = new CollectRequest(new Dependency(artifact, JavaScopes.COMPILE, false, excluded),
+                    remoteRepos);
+            DependencyNode root = m_repoSystem.collectDependencies(session, collectRequest).getRoot();
+            PreorderNodeListGenerator nodes = new PreorderNodeListGenerator();
+            root.accept(nodes);
+            List<ArtifactRequest> requests = new ArrayList<ArtifactRequest>();
+            for (DependencyNode node : nodes.getNodes()) {
+                if (node.getDependency() == null || node != root && scopes != null && !scopes.isEmpty()
+                        && !scopes.contains(node.getDependency().getScope())) {
+                    continue;
+                }
+                requests.add(new ArtifactRequest(node));
+            }
+            // all artifacts are passed to repository connectors at once, so they're downloaded concurrently
+            Map<String, File> files = new LinkedHashMap<String, File>();
+            for (ArtifactResult result : m_repoSystem.resolveArtifacts(session, requests)) {
+                verifyTrusted(result);
+                File file = recordOrigin(result);
+                if (m_maintenance != null) {
+                    m_maintenance.accessed(file);
+                }
+                files.put(result.getArtifact().toString(), file);
+            }
+            m_metrics.increment("dependencies.resolved", files.size());
+            return files;
+        } catch (VersionRangeResolutionException e) {
+            throw configureIOException(new VersionRangeResolutionException(e.getResult(),
+                    "Error resolving dependencies of " + artifact, null), e, e.getResult().getExceptions());
+        } catch (DependencyCollectionException e) {
+            throw configureIOException(new DependencyCollectionException(e.getResult(),
+                    "Error collecting dependencies of " + artifact), e, e.getResult().getExceptions());
+        } catch (ArtifactResolutionException e) {
+            List<Exception> exceptions = new ArrayList<Exception>();
+            for (ArtifactResult result : e.getResults()) {
+                exceptions.addAll(result.getExceptions());
+            }
+            throw configureIOException(new ArtifactResolutionException(e.getResults(),
+                    "Error resolving dependencies of " + artifact, null), e, exceptions);
+        } finally {
+            phase.end();
+            releaseSession(pooled);
+            permit.release();
+        }
+    }
+
+    @Override
+    public Future<Map<String, Exception>> prefetch(Collection<String> urls) {
+        m_metrics.increment("prefetch.requested", urls.size());
+        return m_prefetcher.prefetch(urls);
+    }
+
     @Override
     public File resolveMetadata(String groupId, String artifactId, String type, String version) throws IOException {
         return resolveMetadata(groupId, artifactId, type, version, null);
@@ -846,6 +1843,8 @@ public class AetherBasedResolver implements MavenResolver {
                                 Exception previousException) throws IOException {
         RepositorySystem system = getRepositorySystem();
         RepositorySystemSession session = newSession();
+        ResolverMetrics.Phase phase = m_metrics.begin(ResolverMetrics.PHASE_METADATA,
+                UrlTrace.isEnabled() ? groupId + ":" + artifactId + ":" + version : null);
         try {
             Metadata metadata = new DefaultMetadata(groupId, artifactId, version,
                     type, Metadata.Nature.RELEASE_OR_SNAPSHOT);
@@ -898,6 +1897,7 @@ public class AetherBasedResolver implements MavenResolver {
         } catch (Exception e) {
             throw new IOException("Unable to resolve metadata", e);
         } finally {
+            phase.end();
             releaseSession(session);
         }
     }
@@ -1084,8 +2084,14 @@ public class AetherBasedResolver implements MavenResolver {
                                                List<RemoteRepository> remoteRepos, Artifact artifact)
             throws VersionRangeResolutionException {
 
-        VersionRangeResult versionResult = m_repoSystem.resolveVersionRange(session,
-                new VersionRangeRequest(artifact, remoteRepos, null));
+        ResolverMetrics.Phase phase = m_metrics.begin(ResolverMetrics.PHASE_VERSION_RANGE, artifact);
+        VersionRangeResult versionResult;
+        try {
+            versionResult = m_repoSystem.resolveVersionRange(session,
+                    new VersionRangeRequest(artifact, remoteRepos, null));
+        } finally {
+            phase.end();
+        }
         if (versionResult != null) {
             Version v = versionResult.getHighestVersion();
             if (v != null) {
@@ -1104,17 +2110,35 @@ public class AetherBasedResolver implements MavenResolver {
     }
 
     private RepositorySystemSession newSession(LocalRepository repo) {
+        return newSession(repo, false);
+    }
+
+    /**
+     * Gets pooled or new session. <em>Stale</em> session is offline and doesn't update already
+     * downloaded artifacts.
+     * @param repo
+     * @param stale
+     * @return
+     */
+    private RepositorySystemSession newSession(LocalRepository repo, boolean stale) {
         if (repo == null) {
             repo = getLocalRepository();
         }
-        Deque<RepositorySystemSession> deque = sessions.get(repo);
+        Deque<RepositorySystemSession> deque = (stale ? staleSessions : sessions).get(repo);
         RepositorySystemSession session = null;
         if (deque != null) {
             session = deque.pollFirst();
         }
         if (session == null) {
-            session = createSession(repo);
+            DefaultRepositorySystemSession newSession = createSession(repo);
+            if (stale) {
+                newSession.setOffline(true);
+                newSession.setConfigProperty(PaxLocalRepositoryManager.PROPERTY_UPDATE_RELEASES, false);
+                newSession.setConfigProperty(STALE_SESSION, true);
+            }
+            session = newSession;
         }
+        session.getData().set(CancellationToken.class, m_cancellation.get());
         return session;
     }
 
@@ -1123,20 +2147,38 @@ public class AetherBasedResolver implements MavenResolver {
      */
     private static final String SESSION_CHECKS = "updateCheckManager.checks";
 
+    /**
+     * Marker configuration property of sessions used for stale-while-revalidate resolution
+     */
+    private static final String STALE_SESSION = "paxUrl.staleSession";
+
     private void releaseSession(RepositorySystemSession session) {
         LocalRepository repo = session.getLocalRepository();
-        Deque<RepositorySystemSession> deque = sessions.get(repo);
+        ConcurrentMap<LocalRepository, Deque<RepositorySystemSession>> pool
+                = session.getConfigProperties().containsKey(STALE_SESSION) ? staleSessions : sessions;
+        Deque<RepositorySystemSession> deque = pool.get(repo);
         if (deque == null) {
-            sessions.putIfAbsent(repo, new ConcurrentLinkedDeque<RepositorySystemSession>());
-            deque = sessions.get(repo);
+            pool.putIfAbsent(repo, new ConcurrentLinkedDeque<RepositorySystemSession>());
+            deque = pool.get(repo);
+        }
+        if (session.getLocalRepositoryManager() instanceof PaxLocalRepositoryManager) {
+            // write tracking information collected during resolution
+            ((PaxLocalRepositoryManager) session.getLocalRepositoryManager()).flush();
         }
         session.getData().set(SESSION_CHECKS, null);
+        session.getData().set(CancellationToken.class, null);
         deque.add(session);
     }
 
-    private RepositorySystemSession createSession(LocalRepository repo) {
+    private DefaultRepositorySystemSession createSession(LocalRepository repo) {
         DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
 
+        String sharedStore = m_config.getProperty(ServiceConstants.PROPERTY_SHARED_STORE, null, String.class);
+        if (sharedStore != null && (repo == null || repo.equals(getLocalRepository()))) {
+            // shared store is used only with main local repository, not with default repositories
+            session.setConfigProperty(PaxLocalRepositoryManager.PROPERTY_SHARED_STORE, sharedStore);
+        }
+
         if (repo != null) {
             session.setLocalRepositoryManager(m_repoSystem.newLocalRepositoryManager(session, repo));
         } else {
@@ -1178,6 +2220,25 @@ public class AetherBasedResolver implements MavenResolver {
 
         session.setOffline(m_config.isOffline());
 
+        ChainedTransferListener listener = new ChainedTransferListener(m_metrics.getTransferListener(),
+                m_transferDispatcher);
+        if (m_mirrorBalancer != null) {
+            listener.add(m_mirrorBalancer);
+        }
+        if (m_peerHealth != null) {
+            listener.add(m_peerHealth);
+        }
+        session.setTransferListener(listener);
+        session.setRepositoryListener(new AbstractRepositoryListener() {
+            @Override
+            public void artifactDownloaded(RepositoryEvent event) {
+                if (event.getException() == null && event.getArtifact() != null && isTrusted(event.getRepository())) {
+                    m_trustedDownloads.add(ArtifactIdUtils.toId(event.getArtifact()));
+                }
+            }
+        });
+        m_metrics.increment("sessions.created", 1L);
+
         // PAXURL-322
         boolean updateReleases = m_config.getProperty(ServiceConstants.PROPERTY_UPDATE_RELEASES, false, Boolean.class);
         session.setConfigProperty(PaxLocalRepositoryManager.PROPERTY_UPDATE_RELEASES, updateReleases);
@@ -1231,37 +2292,4 @@ public class AetherBasedResolver implements MavenResolver {
         return null;
     }
 
-    private RepositorySystem newRepositorySystem() {
-        DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
-
-        // default timeout (both connection and read timeouts)
-        int defaultTimeout = m_config.getTimeout();
-        // connection timeout
-        int connectionTimeout = m_config.getProperty(ServiceConstants.PROPERTY_SOCKET_CONNECTION_TIMEOUT, defaultTimeout, Integer.class);
-        // read timeout
-        int soTimeout = m_config.getProperty(ServiceConstants.PROPERTY_SOCKET_SO_TIMEOUT, defaultTimeout, Integer.class);
-        locator.setServices(WagonProvider.class, new ManualWagonProvider(m_client, soTimeout, connectionTimeout));
-        locator.addService(TransporterFactory.class, WagonTransporterFactory.class);
-        locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
-
-        decrypter = new ConfigurableSettingsDecrypter();
-        PaxUrlSecDispatcher secDispatcher = new PaxUrlSecDispatcher();
-        try {
-            secDispatcher.setCipher(new DefaultPlexusCipher());
-        } catch (PlexusCipherException exc) {
-            throw new IllegalStateException(exc);
-        }
-        secDispatcher.setConfigurationFile(m_config.getSecuritySettings());
-        decrypter.setSecurityDispatcher(secDispatcher);
-
-        locator.setServices(SettingsDecrypter.class, decrypter);
-
-        locator.setService(LocalRepositoryManagerFactory.class,
-                PaxLocalRepositoryManagerFactory.class);
-        locator.setService(org.eclipse.aether.spi.log.LoggerFactory.class,
-                Slf4jLoggerFactory.class);
-
-        return locator.getService(RepositorySystem.class);
-    }
-
 }
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.mvn.ServiceConstants;
+
+/**
+ * <p>Bounded (by total size) LRU cache of content of small artifacts, keyed by <code>mvn:</code> URL.</p>
+ * <p>Content of released artifacts is immutable, so cached content is returned without resolving the artifact
+ * again (as long as the file in local repository has the same size and modification time), which saves the disk
+ * round-trips of local repository lookup and of reading the file. For SNAPSHOTs, <code>LATEST</code>, version
+ * ranges and (with {@link ServiceConstants#PROPERTY_UPDATE_RELEASES}) releases, the artifact is resolved
+ * and cached content is used only if resolved file didn't change.</p>
+ */
+public class ArtifactContentCache {
+
+    private final long maxSize;
+    private final long capacity;
+    private final boolean updateReleases;
+
+    private long size;
+    private final Map<String, Content> cache = new LinkedHashMap<String, Content>(16, 0.75f, true);
+
+    /**
+     * @param maxSize maximal size of artifact which content is returned
+     * @param capacity maximal total size of cached content, <code>0</code> disables caching
+     * @param updateReleases whether released artifacts are subject to update policies
+     */
+    public ArtifactContentCache(long maxSize, long capacity, boolean updateReleases) {
+        this.maxSize = maxSize;
+        this.capacity = capacity;
+        this.updateReleases = updateReleases;
+    }
+
+    /**
+     * Resolves artifact using <code>resolver</code> unless content of immutable artifact is cached.
+     * @param resolver
+     * @param url maven based url
+     * @return resolved artifact with its content (if it's not larger than configured limit) or <code>null</code>
+     * if resolver returned <code>null</code>
+     * @throws IOException
+     */
+    public Content resolve(MavenResolver resolver, String url) throws IOException {
+        Content cached = get(url);
+        if (cached != null && cached.immutable && cached.isCurrent()) {
+            return cached;
+        }
+        File file = resolver.resolve(url);
+        if (file == null) {
+            return null;
+        }
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if (cached != null && cached.file.equals(file)
+                && cached.length == length && cached.lastModified == lastModified) {
+            return cached;
+        }
+        boolean immutable = cached != null ? cached.immutable : !updateReleases && isImmutable(url);
+        if (length > maxSize) {
+            return new Content(file, length, lastModified, immutable, null);
+        }
+        Content content = new Content(file, length, lastModified, immutable, Files.readAllBytes(file.toPath()));
+        put(url, content);
+        return content;
+    }
+
+    /**
+     * Forgets content of artifacts from given directory (e.g., removed from local repository)
+     * @param directory
+     */
+    public synchronized void evict(File directory) {
+        directory = directory.getAbsoluteFile();
+        for (Iterator<Content> it = cache.values().iterator(); it.hasNext(); ) {
+            Content content = it.next();
+            if (directory.equals(content.file.getAbsoluteFile().getParentFile())) {
+                size -= content.bytes.length;
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized Content get(String url) {
+        return cache.get(url);
+    }
+
+    private synchronized void put(String url, Content content) {
+        if (content.bytes.length > capacity) {
+            return;
+        }
+        Content previous = cache.put(url, content);
+        if (previous != null) {
+            size -= previous.bytes.length;
+        }
+        size += content.bytes.length;
+        for (Iterator<Content> it = cache.values().iterator(); size > capacity && it.hasNext(); ) {
+            size -= it.next().bytes.length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if content of artifact with given url can't change
+     * @param url
+     * @return
+     */
+    private static boolean isImmutable(String url) {
+        try {
+            String version = Parser.parse(url.substring((ServiceConstants.PROTOCOL + ":").length())).getVersion();
+            return !version.endsWith("SNAPSHOT") && !Parser.VERSION_LATEST.equals(version)
+                    && !version.startsWith("[") && !version.startsWith("(");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolved artifact with its content
+     */
+    public static class Content {
+
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final boolean immutable;
+        private final byte[] bytes;
+
+        Content(File file, long length, long lastModified, boolean immutable, byte[] bytes) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.immutable = immutable;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns <code>true</code> if the file in local repository wasn't changed or removed since its content
+         * was read
+         * @return
+         */
+        boolean isCurrent() {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns <code>true</code> if content of the artifact is available in memory
+         * @return
+         */
+        public boolean isAvailable() {
+            return bytes != null;
+        }
+
+        /**
+         * Returns read-only view of artifact's content (<code>null</code> if the artifact is too large)
+         * @return
+         */
+        public ByteBuffer getBuffer() {
+            return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        /**
+         * Returns stream of artifact's content
+         * @return
+         * @throws IOException
+         */
+        public InputStream openStream() throws IOException {
+            return bytes == null ? Files.newInputStream(file.toPath()) : new ByteArrayInputStream(bytes);
+        }
+    }
+
+}
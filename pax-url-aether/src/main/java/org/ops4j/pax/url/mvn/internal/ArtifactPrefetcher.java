@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ops4j.pax.url.mvn.CancellationToken;
+import org.ops4j.pax.url.mvn.MavenResolver2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves sets of artifacts in background (low priority threads, {@link MavenResolver2.Priority#BACKGROUND}
+ * resolutions, limited number of resolutions started per second), so they're available in local repository
+ * when they're needed.
+ * @see MavenResolver2#prefetch(Collection)
+ */
+public class ArtifactPrefetcher implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactPrefetcher.class);
+
+    private final MavenResolver2 resolver;
+    private final int threads;
+    private final long interval;
+
+    private ExecutorService executor;
+    private boolean closed;
+    private long nextStart;
+    private final Set<CancellationToken> tokens
+            = Collections.newSetFromMap(new ConcurrentHashMap<CancellationToken, Boolean>());
+
+    /**
+     * @param resolver resolver used to resolve artifacts
+     * @param threads maximal number of concurrent resolutions
+     * @param rate maximal number of resolutions started per second, <code>0</code> for no limit
+     */
+    public ArtifactPrefetcher(MavenResolver2 resolver, int threads, double rate) {
+        this.resolver = resolver;
+        this.threads = Math.max(1, threads);
+        this.interval = rate > 0 ? (long) (1000000000L / rate) : 0L;
+    }
+
+    /**
+     * Schedules resolution of given <code>mvn:</code> URLs
+     * @param urls
+     * @return future completed when all URLs are processed, with failures keyed by URL
+     */
+    public Future<Map<String, Exception>> prefetch(Collection<String> urls) {
+        final Result result = new Result(urls.size());
+        ExecutorService executor = executor();
+        for (String url : urls) {
+            Prefetch task = new Prefetch(url, result);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.skip();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stops prefetching, cancelling resolutions in progress
+     */
+    @Override
+    public void close() {
+        ExecutorService executor;
+        synchronized (this) {
+            closed = true;
+            executor = this.executor;
+        }
+        if (executor != null) {
+            for (Runnable task : executor.shutdownNow()) {
+                ((Prefetch) task).skip();
+            }
+        }
+        for (CancellationToken token : tokens) {
+            token.cancel();
+        }
+    }
+
+    /**
+     * Reads list of <code>mvn:</code> URLs (one per line, <code>#</code> starts a comment)
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static List<String> readUrls(File file) throws IOException {
+        List<String> urls = new ArrayList<String>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int hash = line.indexOf('#');
+                line = (hash >= 0 ? line.substring(0, hash) : line).trim();
+                if (!line.isEmpty()) {
+                    urls.add(line);
+                }
+            }
+        }
+        return urls;
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "pax-url-aether-prefetch-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+            if (closed) {
+                executor.shutdownNow();
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Waits until next resolution may be started
+     * @throws InterruptedIOException
+     */
+    private void throttle() throws InterruptedIOException {
+        if (interval == 0L) {
+            return;
+        }
+        long start;
+        synchronized (this) {
+            long now = System.nanoTime();
+            start = Math.max(now, nextStart);
+            nextStart = start + interval;
+        }
+        long delay = start - System.nanoTime();
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Prefetching interrupted");
+            }
+        }
+    }
+
+    /**
+     * Resolution of single artifact
+     */
+    private class Prefetch implements Runnable {
+
+        private final String url;
+        private final Result result;
+
+        Prefetch(String url, Result result) {
+            this.url = url;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            CancellationToken token = new CancellationToken();
+            tokens.add(token);
+            try {
+                throttle();
+                resolver.resolve(url, null, token, MavenResolver2.Priority.BACKGROUND);
+            } catch (Exception e) {
+                LOG.debug("Prefetching of {} failed: {}", url, e.getMessage());
+                result.failed(url, e);
+            } finally {
+                tokens.remove(token);
+                result.done();
+            }
+        }
+
+        /**
+         * Marks the artifact as not prefetched
+         */
+        void skip() {
+            result.failed(url, new CancellationException("Prefetching stopped"));
+            result.done();
+        }
+    }
+
+    /**
+     * Failures of prefetched artifacts, available when all of them are processed
+     */
+    private static class Result implements Future<Map<String, Exception>> {
+
+        private final CountDownLatch remaining;
+        private final Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+
+        Result(int count) {
+            remaining = new CountDownLatch(count);
+        }
+
+        synchronized void failed(String url, Exception e) {
+            failures.put(url, e);
+        }
+
+        void done() {
+            remaining.countDown();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return remaining.getCount() == 0;
+        }
+
+        @Override
+        public Map<String, Exception> get() throws InterruptedException, ExecutionException {
+            remaining.await();
+            return failures();
+        }
+
+        @Override
+        public Map<String, Exception> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!remaining.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return failures();
+        }
+
+        private synchronized Map<String, Exception> failures() {
+            return new LinkedHashMap<String, Exception>(failures);
+        }
+    }
+
+}
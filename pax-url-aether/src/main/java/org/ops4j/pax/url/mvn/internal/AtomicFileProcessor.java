@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+import org.eclipse.aether.internal.impl.DefaultFileProcessor;
+
+/**
+ * {@link org.eclipse.aether.spi.io.FileProcessor} that copies files (e.g., when artifacts are installed into
+ * local repository) to a temporary file first, and then atomically renames it to target file. Other processes
+ * reading local repository never see partially written files.
+ */
+public class AtomicFileProcessor extends DefaultFileProcessor {
+
+    @Override
+    public void copy(File source, File target) throws IOException {
+        copy(source, target, null);
+    }
+
+    @Override
+    public long copy(File source, File target, ProgressListener listener) throws IOException {
+        File tmp = new File(target.getAbsoluteFile().getParentFile(),
+                target.getName() + "." + UUID.randomUUID().toString() + ".tmp");
+        try {
+            long total = super.copy(source, tmp, listener);
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return total;
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+}
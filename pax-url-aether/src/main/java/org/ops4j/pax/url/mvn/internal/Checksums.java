@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Helper methods to calculate digests of local files.
+ */
+public class Checksums {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Maximal number of digests kept by {@link #localSha1(File)}.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Calculated digests, in access order.
+     */
+    private static final Map<File, CachedDigest> CACHE = new LinkedHashMap<File, CachedDigest>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, CachedDigest> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private Checksums() { }
+
+    /**
+     * Calculates SHA-1 digest of a file
+     * @param file
+     * @return hex encoded digest
+     * @throws IOException
+     */
+    public static String sha1(File file) throws IOException {
+        return digest(file, "SHA-1");
+    }
+
+    /**
+     * Returns SHA-1 digest of a local file without reading the file if possible. The digest is taken from
+     * accompanying <code>.sha1</code> file (if it's not older than the file) or calculated and cached until
+     * size or modification time of the file changes.
+     * @param file
+     * @return hex encoded digest
+     * @throws IOException
+     */
+    public static String localSha1(File file) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        File checksumFile = new File(file.getParentFile(), file.getName() + ".sha1");
+        if (checksumFile.lastModified() >= lastModified) {
+            String checksum = read(checksumFile);
+            if (checksum != null) {
+                return checksum;
+            }
+        }
+        return calculatedSha1(file);
+    }
+
+    /**
+     * Calculates SHA-1 digest of a local file, never trusting accompanying <code>.sha1</code> file. The digest
+     * is cached until size or modification time of the file changes.
+     * @param file
+     * @return hex encoded digest
+     * @throws IOException
+     */
+    public static String calculatedSha1(File file) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized (CACHE) {
+            CachedDigest cached = CACHE.get(file);
+            if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+                return cached.digest;
+            }
+        }
+        String digest = sha1(file);
+        synchronized (CACHE) {
+            CACHE.put(file, new CachedDigest(length, lastModified, digest));
+        }
+        return digest;
+    }
+
+    /**
+     * Calculates digest of a file using given algorithm
+     * @param file
+     * @param algorithm
+     * @return hex encoded digest
+     * @throws IOException
+     */
+    public static String digest(File file, String algorithm) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Can't calculate " + algorithm + " digest", e);
+        }
+        byte[] buffer = new byte[16384];
+        try (InputStream is = new FileInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Reads first token of checksum file (e.g., <code>artifact.jar.sha1</code>). Such files may
+     * contain only the digest or the digest followed by file name.
+     * @param checksumFile
+     * @return digest or <code>null</code> if the file doesn't exist or is empty
+     * @throws IOException
+     */
+    public static String read(File checksumFile) throws IOException {
+        if (!checksumFile.isFile()) {
+            return null;
+        }
+        String content = new String(Files.readAllBytes(checksumFile.toPath()), "UTF-8").trim();
+        int space = content.indexOf(' ');
+        String checksum = space > 0 ? content.substring(0, space) : content;
+        return checksum.isEmpty() ? null : checksum.toLowerCase();
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    private static class CachedDigest {
+        private final long length;
+        private final long lastModified;
+        private final String digest;
+
+        CachedDigest(long length, long lastModified, String digest) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+
+}
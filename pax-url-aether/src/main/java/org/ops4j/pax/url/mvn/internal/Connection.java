@@ -21,14 +21,25 @@ package org.ops4j.pax.url.mvn.internal;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.mvn.ServiceConstants;
+import org.ops4j.pax.url.reference.ReferenceInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,7 +71,17 @@ import org.slf4j.LoggerFactory;
  * - org.ops4j.pax.url.mvn.localRepository = the path to local repository directory;<br>
  * - org.ops4j.pax.url.mvn.repository =  a comma separated list for repositories urls;<br/>
  * - org.ops4j.pax.url.mvn.certificateCheck = true/false if the SSL certificate check should be done.
- * Default false.
+ * Default false.<br/>
+ * <br/>
+ * The artifact is resolved when the connection is connected (explicitly or when the stream or any header field is
+ * requested). Header fields: content-length, last-modified, {@link ServiceConstants#HEADER_CHECKSUM_SHA1} and
+ * {@link ServiceConstants#HEADER_REPOSITORY}.<br/>
+ * <br/>
+ * With <code>#reference</code> fragment (e.g., mvn:org.ops4j.pax.runner/runner/0.4.0#reference) the input stream
+ * is a <code>org.ops4j.pax.url.reference.ReferenceInputStream</code> pointing to resolved file, so frameworks
+ * supporting <code>reference:</code> installation use the file in place instead of copying it into bundle cache.
+ * The file must not be changed later (e.g., by updating a SNAPSHOT in local repository) while the bundle is
+ * installed.
  *
  * @author Toni Menzel
  * @author Alin Dreghiciu
@@ -74,11 +95,39 @@ public class Connection
      * Logger.
      */
     private static final Logger LOG = LoggerFactory.getLogger( Connection.class );
+    /**
+     * Header fields provided by the connection.
+     */
+    private static final String[] HEADERS = {
+        "content-length", "last-modified", ServiceConstants.HEADER_CHECKSUM_SHA1, ServiceConstants.HEADER_REPOSITORY
+    };
+
+    /**
+     * URL fragment requesting in-place ("reference") installation.
+     */
+    private static final String REFERENCE = "reference";
+
     /**
      * Maven resolver
      */
     private final MavenResolver m_resolver;
 
+    /**
+     * Resolved artifact, available after connecting.
+     */
+    private File m_file;
+
+    /**
+     * Resolved artifact with its content (if it's small), available after connecting to
+     * {@link AetherBasedResolver}.
+     */
+    private ArtifactContentCache.Content m_content;
+
+    /**
+     * SHA-1 digest of resolved artifact, calculated when requested.
+     */
+    private String m_sha1;
+
     /**
      * Creates a new connection.
      *
@@ -96,42 +145,201 @@ public class Connection
 
         m_resolver = resolver;
         // Verify the url syntax, will throw an exception when invalid
-        new Parser( url.getPath() );
+        Parser.parse( url.getPath() );
     }
 
 
     /**
-     * Does nothing.
+     * Resolves the artifact (only once).
      *
      * @see java.net.URLConnection#connect()
      */
     @Override
     public void connect()
-    {
-        // do nothing
-    }
-
-    /**
-     * TODO doc
-     */
-    @Override
-    public InputStream getInputStream()
         throws IOException
     {
-        connect();
+        if( connected )
+        {
+            return;
+        }
         String mvnUrl = url.toExternalForm();
         boolean hasRuntimeRef = false;
         if ("runtime".equals(url.getRef())) {
             hasRuntimeRef = true;
             mvnUrl = mvnUrl.substring(0, mvnUrl.length() - "#runtime".length());
+        } else if (REFERENCE.equals(url.getRef())) {
+            mvnUrl = mvnUrl.substring(0, mvnUrl.length() - ("#" + REFERENCE).length());
         }
         LOG.debug( "Resolving [" + mvnUrl + "]" );
-        File file = m_resolver.resolve(mvnUrl);
+        if( !hasRuntimeRef && !REFERENCE.equals( url.getRef() ) && m_resolver instanceof AetherBasedResolver )
+        {
+            // small artifacts are read from memory
+            m_content = ( (AetherBasedResolver) m_resolver ).resolveCached( mvnUrl );
+        }
+        File file = m_content != null ? m_content.getFile() : m_resolver.resolve(mvnUrl);
         if (file == null && hasRuntimeRef) {
             mvnUrl = url.toExternalForm();
             LOG.debug( "Resolving [" + mvnUrl + "]" );
             file = m_resolver.resolve(mvnUrl);
         }
-        return new FileInputStream( file );
+        if( file == null )
+        {
+            throw new FileNotFoundException( "Can't resolve " + url.toExternalForm() );
+        }
+        m_file = file;
+        connected = true;
+    }
+
+    /**
+     * Returns the input stream of resolved artifact (or a reference to it).
+     */
+    @Override
+    public InputStream getInputStream()
+        throws IOException
+    {
+        connect();
+        if( REFERENCE.equals( url.getRef() ) )
+        {
+            if( References.AVAILABLE )
+            {
+                return References.open( m_file );
+            }
+            LOG.warn( "org.ops4j.pax.url.reference package is not available, returning content of " + url );
+        }
+        if( m_content != null )
+        {
+            return m_content.openStream();
+        }
+        return new FileInputStream( m_file );
+    }
+
+    @Override
+    public long getContentLengthLong()
+    {
+        return connectQuietly() ? m_file.length() : -1L;
+    }
+
+    @Override
+    public long getLastModified()
+    {
+        return connectQuietly() ? m_file.lastModified() : 0L;
+    }
+
+    @Override
+    public String getHeaderField( final String name )
+    {
+        if( name == null || !connectQuietly() )
+        {
+            return null;
+        }
+        if( HEADERS[ 0 ].equalsIgnoreCase( name ) )
+        {
+            return Long.toString( m_file.length() );
+        }
+        if( HEADERS[ 1 ].equalsIgnoreCase( name ) )
+        {
+            SimpleDateFormat format = new SimpleDateFormat( "EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US );
+            format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+            return format.format( new Date( m_file.lastModified() ) );
+        }
+        if( HEADERS[ 2 ].equalsIgnoreCase( name ) )
+        {
+            return getSha1();
+        }
+        if( HEADERS[ 3 ].equalsIgnoreCase( name ) && m_resolver instanceof AetherBasedResolver )
+        {
+            return ( (AetherBasedResolver) m_resolver ).getRepository( m_file );
+        }
+        return null;
     }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields()
+    {
+        Map<String, List<String>> fields = new LinkedHashMap<String, List<String>>();
+        for( String name : HEADERS )
+        {
+            String value = getHeaderField( name );
+            if( value != null )
+            {
+                fields.put( name, Collections.singletonList( value ) );
+            }
+        }
+        return Collections.unmodifiableMap( fields );
+    }
+
+    @Override
+    public String getHeaderFieldKey( final int n )
+    {
+        String[] keys = getHeaderFields().keySet().toArray( new String[0] );
+        return n >= 0 && n < keys.length ? keys[ n ] : null;
+    }
+
+    @Override
+    public String getHeaderField( final int n )
+    {
+        String key = getHeaderFieldKey( n );
+        return key == null ? null : getHeaderField( key );
+    }
+
+    private synchronized String getSha1()
+    {
+        if( m_sha1 == null )
+        {
+            try
+            {
+                m_sha1 = Checksums.localSha1( m_file );
+            }
+            catch( IOException e )
+            {
+                LOG.debug( "Can't calculate SHA-1 digest of " + m_file + ": " + e.getMessage() );
+            }
+        }
+        return m_sha1;
+    }
+
+    /**
+     * Access to optional pax-url-reference classes, loaded only if reference is requested.
+     */
+    private static class References
+    {
+
+        static final boolean AVAILABLE = isAvailable();
+
+        static InputStream open( final File file )
+            throws IOException
+        {
+            return new ReferenceInputStream( file.toURI().toURL() );
+        }
+
+        private static boolean isAvailable()
+        {
+            try
+            {
+                Class.forName( "org.ops4j.pax.url.reference.ReferenceInputStream", false,
+                               Connection.class.getClassLoader() );
+                return true;
+            }
+            catch( Throwable t )
+            {
+                return false;
+            }
+        }
+
+    }
+
+    private boolean connectQuietly()
+    {
+        try
+        {
+            connect();
+            return true;
+        }
+        catch( IOException e )
+        {
+            LOG.debug( "Can't resolve " + url + ": " + e.getMessage() );
+            return false;
+        }
+    }
+
 }
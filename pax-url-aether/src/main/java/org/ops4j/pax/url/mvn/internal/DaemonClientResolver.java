@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.ops4j.pax.url.mvn.CancellationToken;
+import org.ops4j.pax.url.mvn.MavenResolver2;
+import org.ops4j.pax.url.mvn.MirrorInfo;
+import org.ops4j.pax.url.mvn.ServiceConstants;
+import org.ops4j.pax.url.mvn.TransferProgressListener;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Thin {@link MavenResolver2} delegating resolution to {@link ResolverDaemon} running on the same host.
+ * If the daemon isn't running, own {@link AetherBasedResolver} is created and used instead. Installation
+ * into local repository and dependency resolution are always performed by own resolver, transfer listeners are notified only about
+ * transfers of own resolver and cancelled resolutions may still be completed by the daemon.</p>
+ * <p>The daemon resolves using its own configuration - repositories, mirrors, update policies and other options
+ * configured for this resolver apply only to own resolver. The daemon is used only if its secret is found in
+ * local repository configured for this resolver, i.e., only if both use the same local repository.</p>
+ * <p>When the daemon can't be used (it isn't running, its secret isn't found or it doesn't respond in time),
+ * own resolver is used and the daemon is tried again after a minute.</p>
+ */
+public class DaemonClientResolver implements MavenResolver2 {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DaemonClientResolver.class);
+
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    /**
+     * Resolutions not completed by the daemon within this time are performed by own resolver
+     */
+    private static final int READ_TIMEOUT = 300000;
+
+    /**
+     * Time (in milliseconds) for which unavailable daemon isn't used
+     */
+    private static final long RETRY_INTERVAL = 60000L;
+
+    private final int port;
+    private final MavenConfiguration configuration;
+    private final MirrorInfo mirror;
+
+    private final ArtifactPrefetcher prefetcher;
+    private final ArtifactContentCache contentCache;
+    private final File secretFile;
+
+    private volatile long unavailableUntil;
+    private AetherBasedResolver fallback;
+
+    public DaemonClientResolver(int port, MavenConfiguration configuration, MirrorInfo mirror) {
+        this.port = port;
+        this.configuration = configuration;
+        this.mirror = mirror;
+        prefetcher = new ArtifactPrefetcher(this,
+                configuration.getProperty(ServiceConstants.PROPERTY_PREFETCH_THREADS, 2, Integer.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_PREFETCH_RATE, 10, Integer.class));
+        contentCache = new ArtifactContentCache(
+                configuration.getProperty(ServiceConstants.PROPERTY_CONTENT_MAX_SIZE, 65536L, Long.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_CONTENT_CACHE_SIZE, 16777216L, Long.class),
+                configuration.getProperty(ServiceConstants.PROPERTY_UPDATE_RELEASES, false, Boolean.class));
+        File localRepository = configuration.getLocalRepository() != null
+                ? configuration.getLocalRepository().getFile()
+                : new File(System.getProperty("user.home"), ".m2/repository");
+        secretFile = ResolverDaemon.secretFile(localRepository, port);
+    }
+
+    @Override
+    public File resolve(String url) throws IOException {
+        return resolve(url, null);
+    }
+
+    @Override
+    public File resolve(String url, Exception previousException) throws IOException {
+        return resolve(url, previousException, new CancellationToken());
+    }
+
+    @Override
+    public File resolve(String url, Exception previousException, CancellationToken token) throws IOException {
+        return resolve(url, previousException, token, null);
+    }
+
+    @Override
+    public File resolve(String url, Exception previousException, CancellationToken token, Priority priority)
+            throws IOException {
+        if (token != null && token.isCancelled()) {
+            throw new InterruptedIOException("Resolution of " + url + " was cancelled");
+        }
+        if (isDaemonAvailable()) {
+            Map<String, String> params = new LinkedHashMap<String, String>();
+            params.put("url", url);
+            params.put("priority", priority == null ? null : priority.name());
+            String path = request("/resolve", params, token);
+            if (path != null) {
+                return file(path);
+            }
+        }
+        return fallback().resolve(url, previousException, token, priority);
+    }
+
+    @Override
+    public ByteBuffer resolveContent(String url) throws IOException {
+        ArtifactContentCache.Content content = contentCache.resolve(this, url);
+        return content == null ? null : content.getBuffer();
+    }
+
+    @Override
+    public File resolve(String groupId, String artifactId, String classifier, String extension, String version) throws IOException {
+        return resolve(groupId, artifactId, classifier, extension, version, null);
+    }
+
+    @Override
+    public File resolve(String groupId, String artifactId, String classifier, String extension, String version,
+                        Exception previousException) throws IOException {
+        if (isDaemonAvailable()) {
+            Map<String, String> params = new LinkedHashMap<String, String>();
+            params.put("groupId", groupId);
+            params.put("artifactId", artifactId);
+            params.put("classifier", classifier);
+            params.put("extension", extension);
+            params.put("version", version);
+            String path = request("/artifact", params, null);
+            if (path != null) {
+                return file(path);
+            }
+        }
+        return fallback().resolve(groupId, artifactId, classifier, extension, version, previousException);
+    }
+
+    @Override
+    public Map<String, File> resolveDependencies(String url, Collection<String> scopes,
+                                                 Collection<String> exclusions) throws IOException {
+        return fallback().resolveDependencies(url, scopes, exclusions);
+    }
+
+    @Override
+    public Future<Map<String, Exception>> prefetch(Collection<String> urls) {
+        return prefetcher.prefetch(urls);
+    }
+
+    @Override
+    public File resolveMetadata(String groupId, String artifactId, String type, String version) throws IOException {
+        return resolveMetadata(groupId, artifactId, type, version, null);
+    }
+
+    @Override
+    public File resolveMetadata(String groupId, String artifactId, String type, String version,
+                                Exception previousException) throws IOException {
+        if (isDaemonAvailable()) {
+            Map<String, String> params = new LinkedHashMap<String, String>();
+            params.put("groupId", groupId);
+            params.put("artifactId", artifactId);
+            params.put("type", type);
+            params.put("version", version);
+            String path = request("/metadata", params, null);
+            if (path != null) {
+                return file(path);
+            }
+        }
+        return fallback().resolveMetadata(groupId, artifactId, type, version, previousException);
+    }
+
+    @Override
+    public boolean isUpToDate(String url, String checksum, long timestamp) throws IOException {
+        if (isDaemonAvailable()) {
+            Map<String, String> params = new LinkedHashMap<String, String>();
+            params.put("url", url);
+            params.put("checksum", checksum);
+            params.put("timestamp", Long.toString(timestamp));
+            String result = request("/upToDate", params, null);
+            if (result != null) {
+                return Boolean.parseBoolean(result);
+            }
+        }
+        return fallback().isUpToDate(url, checksum, timestamp);
+    }
+
+    @Override
+    public boolean isUpToDate(String groupId, String artifactId, String classifier, String extension, String version,
+                              String checksum, long timestamp) throws IOException {
+        if (isDaemonAvailable()) {
+            StringBuilder url = new StringBuilder("mvn:").append(groupId).append('/').append(artifactId)
+                    .append('/').append(version);
+            if (extension != null && !extension.isEmpty() || classifier != null && !classifier.isEmpty()) {
+                url.append('/').append(extension == null || extension.isEmpty() ? "jar" : extension);
+            }
+            if (classifier != null && !classifier.isEmpty()) {
+                url.append('/').append(classifier);
+            }
+            return isUpToDate(url.toString(), checksum, timestamp);
+        }
+        return fallback().isUpToDate(groupId, artifactId, classifier, extension, version, checksum, timestamp);
+    }
+
+    @Override
+    public void upload(String groupId, String artifactId, String classifier, String extension, String version,
+                       File artifact) throws IOException {
+        fallback().upload(groupId, artifactId, classifier, extension, version, artifact);
+    }
+
+    @Override
+    public void uploadMetadata(String groupId, String artifactId, String type, String version,
+                               File artifact) throws IOException {
+        fallback().uploadMetadata(groupId, artifactId, type, version, artifact);
+    }
+
+    @Override
+    public void addTransferListener(TransferProgressListener listener) {
+        fallback().addTransferListener(listener);
+    }
+
+    @Override
+    public void removeTransferListener(TransferProgressListener listener) {
+        fallback().removeTransferListener(listener);
+    }
+
+    @Override
+    public RetryChance isRetryableException(Exception exception) {
+        for (Throwable t = exception; t != null; t = t.getCause()) {
+            if (t instanceof DaemonResolutionException) {
+                return ((DaemonResolutionException) t).getRetryChance();
+            }
+        }
+        synchronized (this) {
+            if (fallback != null) {
+                return fallback.isRetryableException(exception);
+            }
+        }
+        return RetryChance.UNKNOWN;
+    }
+
+    @Override
+    public void close() throws IOException {
+        prefetcher.close();
+        synchronized (this) {
+            if (fallback != null) {
+                fallback.close();
+            }
+        }
+    }
+
+    /**
+     * Returns own resolver, creating it when first needed
+     * @return
+     */
+    synchronized AetherBasedResolver fallback() {
+        if (fallback == null) {
+            fallback = new AetherBasedResolver(configuration, mirror);
+        }
+        return fallback;
+    }
+
+    /**
+     * Sends request to the daemon
+     * @param operation
+     * @param params
+     * @param token
+     * @return response body or <code>null</code> if the daemon isn't running
+     * @throws IOException if resolution performed by the daemon failed
+     */
+    private String request(String operation, Map<String, String> params, CancellationToken token) throws IOException {
+        String secret = secretFile.isFile() ? new String(Files.readAllBytes(secretFile.toPath()), "UTF-8").trim() : null;
+        if (secret == null || secret.isEmpty()) {
+            unavailable("its secret isn't found in " + secretFile.getParent());
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (param.getValue() != null) {
+                query.append(query.length() == 0 ? '?' : '&').append(param.getKey()).append('=')
+                        .append(URLEncoder.encode(param.getValue(), "UTF-8"));
+            }
+        }
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http", "127.0.0.1", port,
+                operation + query).openConnection(Proxy.NO_PROXY);
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestProperty(ResolverDaemon.SECRET, secret);
+        Closeable abort = new Closeable() {
+            @Override
+            public void close() {
+                connection.disconnect();
+            }
+        };
+        if (token != null) {
+            token.register(abort);
+        }
+        try {
+            int status;
+            try {
+                status = connection.getResponseCode();
+            } catch (ConnectException e) {
+                unavailable("it isn't running");
+                return null;
+            } catch (SocketTimeoutException e) {
+                if (token != null && token.isCancelled()) {
+                    throw e;
+                }
+                unavailable("it didn't respond within " + READ_TIMEOUT + "ms");
+                return null;
+            }
+            if (status == HttpURLConnection.HTTP_FORBIDDEN) {
+                unavailable("it rejected the secret");
+                return null;
+            }
+            InputStream is = status == HttpURLConnection.HTTP_OK ? connection.getInputStream() : connection.getErrorStream();
+            String body = is == null ? "" : read(is);
+            if (status != HttpURLConnection.HTTP_OK) {
+                String chance = connection.getHeaderField(ResolverDaemon.RETRY_CHANCE);
+                throw new DaemonResolutionException(body, chance == null ? RetryChance.UNKNOWN : RetryChance.valueOf(chance));
+            }
+            return body;
+        } catch (IOException e) {
+            if (token != null && token.isCancelled()) {
+                InterruptedIOException cancelled = new InterruptedIOException("Resolution of " + params + " was cancelled");
+                cancelled.initCause(e);
+                throw cancelled;
+            }
+            throw e;
+        } finally {
+            if (token != null) {
+                token.unregister(abort);
+            }
+        }
+    }
+
+    /**
+     * Stops using the daemon for {@link #RETRY_INTERVAL}
+     * @param reason
+     */
+    private void unavailable(String reason) {
+        if (isDaemonAvailable()) {
+            LOG.info("Resolution daemon at port {} can't be used ({}), resolving without it", port, reason);
+        }
+        unavailableUntil = System.currentTimeMillis() + RETRY_INTERVAL;
+    }
+
+    private boolean isDaemonAvailable() {
+        return System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    private static String read(InputStream is) throws IOException {
+        try (InputStream in = is) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), "UTF-8");
+        }
+    }
+
+    private static File file(String path) {
+        return path.isEmpty() ? null : new File(path);
+    }
+
+    /**
+     * Failure of resolution performed by the daemon
+     */
+    static class DaemonResolutionException extends IOException {
+
+        private final RetryChance retryChance;
+
+        DaemonResolutionException(String message, RetryChance retryChance) {
+            super(message);
+            this.retryChance = retryChance;
+        }
+
+        RetryChance getRetryChance() {
+            return retryChance;
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.WorkspaceReader;
+import org.eclipse.aether.repository.WorkspaceRepository;
+
+/**
+ * Makes artifacts from <em>default repositories</em> (e.g., Karaf system repository) available in place
+ * during resolution of dependency graphs, the same way as {@link AetherBasedResolver#resolve(String)} checks
+ * them before remote repositories. Default repositories use <code>simple</code> layout.
+ */
+public class DefaultRepositoriesReader implements WorkspaceReader {
+
+    private static final WorkspaceRepository REPOSITORY = new WorkspaceRepository("default-repositories");
+
+    private final List<LocalRepository> repositories;
+
+    public DefaultRepositoriesReader(List<LocalRepository> repositories) {
+        this.repositories = repositories;
+    }
+
+    @Override
+    public WorkspaceRepository getRepository() {
+        return REPOSITORY;
+    }
+
+    @Override
+    public File findArtifact(Artifact artifact) {
+        for (LocalRepository repository : repositories) {
+            File file = new File(repository.getBasedir(), path(artifact, artifact.getBaseVersion(), artifact.getVersion()));
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> findVersions(Artifact artifact) {
+        List<String> versions = new ArrayList<String>();
+        for (LocalRepository repository : repositories) {
+            File artifactDir = new File(repository.getBasedir(),
+                    artifact.getGroupId().replace('.', '/') + "/" + artifact.getArtifactId());
+            String[] dirs = artifactDir.list();
+            if (dirs == null) {
+                continue;
+            }
+            for (String version : dirs) {
+                if (!versions.contains(version)
+                        && new File(repository.getBasedir(), path(artifact, version, version)).isFile()) {
+                    versions.add(version);
+                }
+            }
+        }
+        return versions;
+    }
+
+    private static String path(Artifact artifact, String baseVersion, String version) {
+        StringBuilder path = new StringBuilder();
+        path.append(artifact.getGroupId().replace('.', '/')).append('/');
+        path.append(artifact.getArtifactId()).append('/');
+        path.append(baseVersion).append('/');
+        path.append(artifact.getArtifactId()).append('-').append(version);
+        if (!artifact.getClassifier().isEmpty()) {
+            path.append('-').append(artifact.getClassifier());
+        }
+        path.append('.').append(artifact.getExtension());
+        return path.toString();
+    }
+
+}
@@ -43,15 +43,36 @@ import org.ops4j.util.property.PropertyResolver;
 public class HttpClients {
 
     public static CloseableHttpClient createClient(PropertyResolver resolver, String pid) {
+        return createClient( createConnManager( resolver, pid ), resolver, pid );
+    }
+
+    /**
+     * Creates client using existing connection manager, so statistics of the connection pool are available
+     * @param connManager
+     * @param resolver
+     * @param pid
+     * @return
+     */
+    public static CloseableHttpClient createClient(PoolingHttpClientConnectionManager connManager,
+                                                   PropertyResolver resolver, String pid) {
         return HttpClientBuilder.create() //
                 .useSystemProperties() //
                 .disableConnectionState() //
-                .setConnectionManager( createConnManager( resolver, pid ) ) //
+                .setConnectionManager( connManager ) //
                 .setRetryHandler( createRetryHandler( resolver, pid ) )
                 .build();
     }
 
-    private static PoolingHttpClientConnectionManager createConnManager(PropertyResolver resolver, String pid)
+    /**
+     * Returns maximum number of connections per route of connection pool
+     * @param resolver
+     * @return
+     */
+    public static int getMaxConnectionsPerRoute(PropertyResolver resolver) {
+        return getInteger( resolver, "maven.wagon.httpconnectionManager.maxPerRoute", 20 );
+    }
+
+    public static PoolingHttpClientConnectionManager createConnManager(PropertyResolver resolver, String pid)
     {
         boolean SSL_INSECURE = getBoolean( resolver, "maven.wagon.http.ssl.insecure",
                                 !getBoolean( resolver, pid + "certificateCheck", false ) );
@@ -59,7 +80,7 @@ public class HttpClients {
         boolean SSL_ALLOW_ALL = getBoolean( resolver, "maven.wagon.http.ssl.allowall",
                                 !getBoolean( resolver, pid + "certificateCheck", false ) );
         boolean PERSISTENT_POOL = getBoolean( resolver, "maven.wagon.http.pool", true );
-        int MAX_CONN_PER_ROUTE = getInteger( resolver, "maven.wagon.httpconnectionManager.maxPerRoute", 20 );
+        int MAX_CONN_PER_ROUTE = getMaxConnectionsPerRoute( resolver );
         int MAX_CONN_TOTAL = getInteger( resolver, "maven.wagon.httpconnectionManager.maxTotal", 40 );
 
         String sslProtocolsStr = getProperty( resolver, "https.protocols", null );
@@ -133,6 +154,39 @@ public class HttpClients {
         return connManager;
     }
 
+    /**
+     * Returns a key identifying all properties used by {@link #createConnManager} and {@link #createClient},
+     * so a client may be shared by configurations with equal keys
+     * @param resolver
+     * @param pid
+     * @return
+     */
+    public static String getConfigurationKey(PropertyResolver resolver, String pid) {
+        String[] keys = new String[] {
+                "maven.wagon.http.ssl.insecure",
+                "maven.wagon.http.ssl.ignore.validity.dates",
+                "maven.wagon.http.ssl.allowall",
+                "maven.wagon.http.pool",
+                "maven.wagon.httpconnectionManager.maxPerRoute",
+                "maven.wagon.httpconnectionManager.maxTotal",
+                "https.protocols",
+                "https.cipherSuites",
+                pid + "certificateCheck",
+                pid + ServiceConstants.PROPERTY_SOCKET_SO_KEEPALIVE,
+                pid + ServiceConstants.PROPERTY_SOCKET_SO_LINGER,
+                pid + ServiceConstants.PROPERTY_SOCKET_SO_REUSEADDRESS,
+                pid + ServiceConstants.PROPERTY_SOCKET_TCP_NODELAY,
+                pid + ServiceConstants.PROPERTY_CONNECTION_BUFFER_SIZE,
+                pid + ServiceConstants.PROPERTY_CONNECTION_RETRY_COUNT
+        };
+        StringBuilder sb = new StringBuilder();
+        for ( String key : keys )
+        {
+            sb.append( getProperty( resolver, key, "" ) ).append( ';' );
+        }
+        return sb.toString();
+    }
+
     private static HttpRequestRetryHandler createRetryHandler(PropertyResolver resolver, String pid) {
         int retryCount = getInteger( resolver, pid + ServiceConstants.PROPERTY_CONNECTION_RETRY_COUNT, 3 );
         return new DefaultHttpRequestRetryHandler( retryCount, false );
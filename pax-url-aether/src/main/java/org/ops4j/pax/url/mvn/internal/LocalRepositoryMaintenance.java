@@ -0,0 +1,490 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Keeps size of local repository below configured limit. Periodically (in background):<ul>
+ *     <li>removes all but the newest timestamped SNAPSHOT of every artifact,</li>
+ *     <li>if the repository is still larger than the limit, removes least recently used artifact versions (whole
+ *     version directories) until it's 10% below the limit.</li>
+ * </ul></p>
+ * <p>Artifacts matching <code>groupId[:artifactId[:version]]</code> patterns passed to constructor are
+ * <em>pinned</em> and are never removed. Other artifacts are ordered by their last use (download or access
+ * recorded with {@link #accessed(File)}) - time of last access is persisted as modification time of
+ * {@link #ACCESS_FILE} in version directory, so it survives restarts and is shared with other processes using
+ * the same local repository.</p>
+ * <p>Stale SNAPSHOTs are removed and version directory is removed only while holding its
+ * {@link NamedLockSyncContextFactory named lock}, the latter only if there are no (recent) partially downloaded
+ * files in it. Version directories that didn't change since previous run are not scanned again.</p>
+ */
+public class LocalRepositoryMaintenance implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalRepositoryMaintenance.class);
+
+    /**
+     * <code>artifactId-version-yyyyMMdd.HHmmss-buildNumber[-classifier].extension</code> - the part after build
+     * number identifies the file within single SNAPSHOT build
+     */
+    private static final Pattern TIMESTAMPED = Pattern.compile("^(.*)-(\\d{8}\\.\\d{6})-(\\d+)(.*)$");
+
+    /**
+     * File in version directory, which is touched when any of its artifacts is accessed
+     */
+    public static final String ACCESS_FILE = "_pax-url-aether-accessed";
+
+    /**
+     * Access time is persisted at most once per minute for each version directory
+     */
+    private static final long ACCESS_RESOLUTION = 60000L;
+
+    /**
+     * Files left by downloads in progress (by {@link org.eclipse.aether.connector.basic.BasicRepositoryConnector}
+     * and by {@link org.eclipse.aether.internal.impl.SharedArtifactStore}). Older ones are leftovers of
+     * interrupted downloads.
+     */
+    private static final String[] IN_PROGRESS_SUFFIXES = { ".part", ".lock", ".tmp" };
+    private static final long IN_PROGRESS_EXPIRY = 3600000L;
+
+    /**
+     * Directories modified less than this before a run are scanned again by the next run, because file systems
+     * may store modification times with one or two seconds resolution
+     */
+    private static final long MODIFICATION_RESOLUTION = 2000L;
+
+    private final File basedir;
+    private final long maxSize;
+    private final List<String[]> pinned = new ArrayList<String[]>();
+
+    /** Access times recently persisted by this process, to touch {@link #ACCESS_FILE} at most once per minute */
+    private final ConcurrentMap<File, Long> accessed = new ConcurrentHashMap<File, Long>();
+    /** Version directories found by previous run, which are not scanned again while they're not modified */
+    private final ConcurrentMap<File, VersionDirectory> scanned = new ConcurrentHashMap<File, VersionDirectory>();
+    private ScheduledExecutorService executor;
+    private volatile Listener listener;
+
+    public LocalRepositoryMaintenance(File basedir, long maxSize, List<String> pinned) {
+        this.basedir = basedir.getAbsoluteFile();
+        this.maxSize = maxSize;
+        for (String pattern : pinned) {
+            if (!pattern.trim().isEmpty()) {
+                this.pinned.add(pattern.trim().split(":"));
+            }
+        }
+    }
+
+    /**
+     * Sets listener notified about version directories removed from local repository
+     * @param listener
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts periodic maintenance
+     * @param interval in milliseconds
+     */
+    public synchronized void start(long interval) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "pax-url-aether-maintenance");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    LocalRepositoryMaintenance.this.run();
+                } catch (Exception e) {
+                    LOG.warn("Local repository maintenance failed: " + e.getMessage(), e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Records access to (resolution of) a file from local repository. Version directory of such artifact
+     * will be the last one to be removed by this and other processes.
+     * @param file
+     */
+    public void accessed(File file) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && dir.getPath().startsWith(basedir.getPath())) {
+            long now = System.currentTimeMillis();
+            Long touched = accessed.get(dir);
+            if (touched == null || now - touched >= ACCESS_RESOLUTION) {
+                accessed.put(dir, now);
+                File accessFile = new File(dir, ACCESS_FILE);
+                try {
+                    if (!accessFile.createNewFile() && !accessFile.setLastModified(now)) {
+                        LOG.debug("Can't record access time in {}", accessFile);
+                    }
+                } catch (IOException e) {
+                    LOG.debug("Can't record access time in {}: {}", accessFile, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs single maintenance run
+     * @return number of bytes removed
+     * @throws IOException
+     */
+    public long run() throws IOException {
+        if (!basedir.isDirectory()) {
+            return 0L;
+        }
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<File, Long> entry : accessed.entrySet()) {
+            if (now - entry.getValue() >= ACCESS_RESOLUTION) {
+                accessed.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        final Map<File, VersionDirectory> directories = new HashMap<File, VersionDirectory>();
+        final Map<File, Long> modified = new HashMap<File, Long>();
+        Files.walkFileTree(basedir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.getFileName().toString().startsWith(".") && !dir.equals(basedir.toPath())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                File file = dir.toFile();
+                VersionDirectory known = scanned.get(file);
+                if (known != null && known.modified == attrs.lastModifiedTime().toMillis()) {
+                    // no file was added or removed since previous run, only access time may have changed
+                    known.lastAccessed = new File(file, ACCESS_FILE).lastModified();
+                    directories.put(file, known);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                modified.put(file, attrs.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                File dir = file.getParent().toFile();
+                VersionDirectory vd = directories.get(dir);
+                if (vd == null) {
+                    vd = new VersionDirectory(dir);
+                    Long dirModified = modified.get(dir);
+                    vd.modified = dirModified == null ? 0L : dirModified;
+                    directories.put(dir, vd);
+                }
+                vd.files.add(file.toFile());
+                vd.size += attrs.size();
+                if (ACCESS_FILE.equals(file.getFileName().toString())) {
+                    vd.lastAccessed = attrs.lastModifiedTime().toMillis();
+                } else {
+                    vd.lastModified = Math.max(vd.lastModified, attrs.lastModifiedTime().toMillis());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        long removed = 0L;
+        long total = 0L;
+        List<VersionDirectory> candidates = new ArrayList<VersionDirectory>();
+        scanned.clear();
+        for (VersionDirectory vd : directories.values()) {
+            boolean versionDirectory = vd.isVersionDirectory();
+            if (versionDirectory && vd.dir.getName().endsWith("-SNAPSHOT")) {
+                long staleSize = removeStaleSnapshots(vd);
+                removed += staleSize;
+                vd.size -= staleSize;
+            }
+            total += vd.size;
+            if (versionDirectory && !isPinned(vd)) {
+                candidates.add(vd);
+            }
+            if (versionDirectory && vd.modified > 0L && vd.modified < now - MODIFICATION_RESOLUTION) {
+                scanned.put(vd.dir, vd);
+            }
+        }
+
+        if (maxSize > 0 && total > maxSize) {
+            final long lowWatermark = maxSize - maxSize / 10;
+            Collections.sort(candidates, new Comparator<VersionDirectory>() {
+                @Override
+                public int compare(VersionDirectory vd1, VersionDirectory vd2) {
+                    return Long.compare(vd1.lastUsed(), vd2.lastUsed());
+                }
+            });
+            for (VersionDirectory vd : candidates) {
+                if (total <= lowWatermark) {
+                    break;
+                }
+                NamedLockSyncContextFactory.Held lock = NamedLockSyncContextFactory.tryLock(basedir, vd.lockName());
+                if (lock == null) {
+                    LOG.debug("Not removing {}, its artifacts are being resolved", vd.dir);
+                    continue;
+                }
+                long size;
+                try {
+                    if (vd.isInProgress(now)) {
+                        LOG.debug("Not removing {}, it contains files being downloaded", vd.dir);
+                        continue;
+                    }
+                    size = vd.delete();
+                    if (!vd.dir.exists()) {
+                        lock.discard();
+                    }
+                } finally {
+                    lock.close();
+                }
+                scanned.remove(vd.dir);
+                LOG.debug("Removed {} ({} bytes) from local repository", vd.dir, size);
+                Listener listener = this.listener;
+                if (listener != null) {
+                    listener.removed(vd.dir);
+                }
+                total -= size;
+                removed += size;
+            }
+        }
+        if (removed > 0) {
+            LOG.info("Removed " + removed + " bytes from local repository " + basedir);
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all but the newest timestamped SNAPSHOT files from SNAPSHOT version directory, unless its
+     * artifacts are being resolved
+     * @param vd
+     * @return
+     * @throws IOException
+     */
+    private long removeStaleSnapshots(VersionDirectory vd) throws IOException {
+        Closeable lock = NamedLockSyncContextFactory.tryLock(basedir, vd.lockName());
+        if (lock == null) {
+            LOG.debug("Not removing stale SNAPSHOTs from {}, its artifacts are being resolved", vd.dir);
+            // scan it again during next run
+            vd.modified = 0L;
+            return 0L;
+        }
+        try {
+            return removeStaleSnapshotFiles(vd);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private long removeStaleSnapshotFiles(VersionDirectory vd) {
+        // file suffix (classifier + extension) -> newest timestamp + build number
+        Map<String, String> newest = new HashMap<String, String>();
+        for (File f : vd.files) {
+            Matcher m = TIMESTAMPED.matcher(f.getName());
+            if (m.matches()) {
+                String build = m.group(2) + "-" + String.format("%08d", Long.parseLong(m.group(3)));
+                String current = newest.get(m.group(4));
+                if (current == null || current.compareTo(build) < 0) {
+                    newest.put(m.group(4), build);
+                }
+            }
+        }
+        long removed = 0L;
+        for (File f : new ArrayList<File>(vd.files)) {
+            Matcher m = TIMESTAMPED.matcher(f.getName());
+            if (m.matches()) {
+                String build = m.group(2) + "-" + String.format("%08d", Long.parseLong(m.group(3)));
+                if (!build.equals(newest.get(m.group(4)))) {
+                    long length = f.length();
+                    if (f.delete()) {
+                        vd.files.remove(f);
+                        removed += length;
+                    }
+                    // the directory is modified, but its modification time may not change within the same second
+                    vd.modified = 0L;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private boolean isPinned(VersionDirectory vd) {
+        if (pinned.isEmpty()) {
+            return false;
+        }
+        String[] coordinates = vd.coordinates();
+        for (String[] pattern : pinned) {
+            boolean matches = pattern.length <= coordinates.length;
+            for (int i = 0; matches && i < pattern.length; i++) {
+                matches = pattern[i].equals(coordinates[i]);
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Listener of local repository maintenance
+     */
+    public interface Listener {
+
+        /**
+         * Called after version directory (with all its files) is removed from local repository
+         * @param directory
+         */
+        void removed(File directory);
+
+    }
+
+    private class VersionDirectory {
+        private final File dir;
+        private final List<File> files = new ArrayList<File>();
+        private long size;
+        /** newest modification time of artifact files, i.e., time of last download */
+        private long lastModified;
+        /** last access recorded in {@link #ACCESS_FILE} (possibly by another process) */
+        private long lastAccessed;
+        /** modification time of the directory itself when it was scanned */
+        private long modified;
+
+        VersionDirectory(File dir) {
+            this.dir = dir;
+        }
+
+        long lastUsed() {
+            return Math.max(lastModified, lastAccessed);
+        }
+
+        String lockName() {
+            String[] coordinates = coordinates();
+            return coordinates[0] + ':' + coordinates[1] + ':' + coordinates[2];
+        }
+
+        /**
+         * Checks (current content of) the directory for files of downloads in progress
+         * @param now
+         * @return
+         */
+        boolean isInProgress(long now) {
+            File[] current = dir.listFiles();
+            if (current == null) {
+                return false;
+            }
+            for (File f : current) {
+                for (String suffix : IN_PROGRESS_SUFFIXES) {
+                    if (f.getName().endsWith(suffix) && now - f.lastModified() < IN_PROGRESS_EXPIRY) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Version directory contains at least one <code>artifactId-version*</code> file
+         * @return
+         */
+        boolean isVersionDirectory() {
+            File artifactDir = dir.getParentFile();
+            if (artifactDir == null || artifactDir.equals(basedir)) {
+                return false;
+            }
+            String version = dir.getName();
+            if (version.endsWith("-SNAPSHOT")) {
+                version = version.substring(0, version.length() - "-SNAPSHOT".length());
+            }
+            String prefix = artifactDir.getName() + "-" + version;
+            for (File f : files) {
+                if (f.getName().startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns <code>groupId, artifactId, version</code> of this directory
+         * @return
+         */
+        String[] coordinates() {
+            File artifactDir = dir.getParentFile();
+            String groupPath = basedir.toPath().relativize(artifactDir.getParentFile().toPath()).toString();
+            return new String[] {
+                    groupPath.replace(File.separatorChar, '.'), artifactDir.getName(), dir.getName()
+            };
+        }
+
+        long delete() {
+            long deleted = 0L;
+            for (File f : files) {
+                long length = f.length();
+                if (f.delete()) {
+                    deleted += length;
+                }
+            }
+            // may have been created after the directory was scanned
+            new File(dir, ACCESS_FILE).delete();
+            dir.delete();
+            return deleted;
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.maven.wagon.Wagon;
 import org.apache.maven.wagon.providers.file.FileWagon;
 import org.eclipse.aether.transport.wagon.WagonProvider;
+import org.ops4j.pax.url.mvn.internal.wagon.ChecksumPrefetcher;
 import org.ops4j.pax.url.mvn.internal.wagon.ConfigurableHttpWagon;
 
 /**
@@ -31,6 +32,7 @@ public class ManualWagonProvider implements WagonProvider
     private CloseableHttpClient client;
     private int readTimeout;
     private int connectionTimeout;
+    private ChecksumPrefetcher prefetcher;
 
     public ManualWagonProvider( CloseableHttpClient client, int readTimeout )
     {
@@ -38,10 +40,17 @@ public class ManualWagonProvider implements WagonProvider
     }
 
     public ManualWagonProvider( CloseableHttpClient client, int readTimeout, int connectionTimeout )
+    {
+        this( client, readTimeout, connectionTimeout, null );
+    }
+
+    public ManualWagonProvider( CloseableHttpClient client, int readTimeout, int connectionTimeout,
+                                ChecksumPrefetcher prefetcher )
     {
         this.client = client;
         this.readTimeout = readTimeout;
         this.connectionTimeout = connectionTimeout;
+        this.prefetcher = prefetcher;
     }
 
     public Wagon lookup( String roleHint ) throws Exception
@@ -52,7 +61,7 @@ public class ManualWagonProvider implements WagonProvider
         }
         else if( "http".equals( roleHint ) || "https".equals( roleHint) )
         {
-            return new ConfigurableHttpWagon( client, readTimeout, connectionTimeout);
+            return new ConfigurableHttpWagon( client, readTimeout, connectionTimeout, prefetcher );
         }
 
         return null;
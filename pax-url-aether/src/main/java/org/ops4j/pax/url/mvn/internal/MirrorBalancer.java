@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.MetadataNotFoundException;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chooses one of several equivalent mirrors for each resolution and tracks their health and response
+ * times using transfer events. Mirrors are identified by their URLs.
+ * @see org.ops4j.pax.url.mvn.ServiceConstants#PROPERTY_MIRROR_BALANCING
+ */
+public class MirrorBalancer extends AbstractTransferListener {
+
+    public static final String NONE = "none";
+    public static final String ROUND_ROBIN = "roundRobin";
+    public static final String LATENCY = "latency";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MirrorBalancer.class);
+
+    /**
+     * Weight of the newest sample in exponentially weighted average of response times
+     */
+    private static final double ALPHA = 0.2;
+
+    private final boolean latencyAware;
+    private final int failureThreshold;
+    private final long quarantine;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final ConcurrentMap<String, Health> mirrors = new ConcurrentHashMap<String, Health>();
+
+    /**
+     * @param strategy {@link #ROUND_ROBIN} or {@link #LATENCY}
+     * @param failureThreshold number of consecutive failures after which mirror is skipped
+     * @param quarantine time (ms) for which failed mirror is skipped
+     */
+    public MirrorBalancer(String strategy, int failureThreshold, long quarantine) {
+        if (!ROUND_ROBIN.equals(strategy) && !LATENCY.equals(strategy)) {
+            throw new IllegalArgumentException("Unknown mirror balancing strategy: " + strategy);
+        }
+        this.latencyAware = LATENCY.equals(strategy);
+        this.failureThreshold = failureThreshold;
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Registers URL of balanced mirror, so its transfers are tracked
+     * @param url
+     */
+    public void register(String url) {
+        mirrors.putIfAbsent(normalize(url), new Health());
+    }
+
+    /**
+     * Chooses one of mirrors, skipping unhealthy ones (unless all of them are unhealthy)
+     * @param urls URLs of equivalent mirrors
+     * @return index of chosen mirror
+     */
+    public int choose(List<String> urls) {
+        long now = System.currentTimeMillis();
+        List<Integer> candidates = new ArrayList<Integer>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            if (health(urls.get(i)).isHealthy(now)) {
+                candidates.add(i);
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (int i = 0; i < urls.size(); i++) {
+                candidates.add(i);
+            }
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        if (!latencyAware) {
+            return candidates.get((next.getAndIncrement() & Integer.MAX_VALUE) % candidates.size());
+        }
+
+        // mirrors without samples are assumed to be as fast as the fastest one, so they get some traffic
+        double fastest = Double.MAX_VALUE;
+        for (int i : candidates) {
+            double latency = health(urls.get(i)).latency;
+            if (latency >= 0 && latency < fastest) {
+                fastest = latency;
+            }
+        }
+        double[] weights = new double[candidates.size()];
+        double total = 0;
+        for (int c = 0; c < candidates.size(); c++) {
+            double latency = health(urls.get(candidates.get(c))).latency;
+            if (latency < 0) {
+                latency = fastest == Double.MAX_VALUE ? 1d : fastest;
+            }
+            weights[c] = 1d / Math.max(latency, 1d);
+            total += weights[c];
+        }
+        double r = ThreadLocalRandom.current().nextDouble() * total;
+        for (int c = 0; c < candidates.size(); c++) {
+            r -= weights[c];
+            if (r < 0) {
+                return candidates.get(c);
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    /**
+     * Returns <code>false</code> if mirror is skipped after recent failures
+     * @param url
+     * @return
+     */
+    public boolean isHealthy(String url) {
+        return health(url).isHealthy(System.currentTimeMillis());
+    }
+
+    /**
+     * Average response time of a mirror
+     * @param url
+     * @return time in milliseconds or <code>-1</code> if not known
+     */
+    public double getLatency(String url) {
+        return health(url).latency;
+    }
+
+    @Override
+    public void transferStarted(TransferEvent event) {
+        Health health = mirrors.get(normalize(event.getResource().getRepositoryUrl()));
+        if (health != null) {
+            // response headers were received
+            health.sample(System.currentTimeMillis() - event.getResource().getTransferStartTime());
+        }
+    }
+
+    @Override
+    public void transferSucceeded(TransferEvent event) {
+        Health health = mirrors.get(normalize(event.getResource().getRepositoryUrl()));
+        if (health != null) {
+            health.failures.set(0);
+        }
+    }
+
+    @Override
+    public void transferFailed(TransferEvent event) {
+        String url = normalize(event.getResource().getRepositoryUrl());
+        Health health = mirrors.get(url);
+        Exception exception = event.getException();
+        if (health == null || exception instanceof ArtifactNotFoundException
+                || exception instanceof MetadataNotFoundException || exception instanceof TransferCancelledException) {
+            // mirror responded
+            return;
+        }
+        if (health.failures.incrementAndGet() >= failureThreshold) {
+            health.failures.set(0);
+            health.quarantinedUntil = System.currentTimeMillis() + quarantine;
+            LOG.warn("Mirror {} failed {} times in a row, it won't be used for " + quarantine + "ms",
+                    url, failureThreshold);
+        }
+    }
+
+    private Health health(String url) {
+        Health health = mirrors.get(normalize(url));
+        return health == null ? new Health() : health;
+    }
+
+    private static String normalize(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    private static class Health {
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long quarantinedUntil;
+        private volatile double latency = -1d;
+
+        boolean isHealthy(long now) {
+            return quarantinedUntil <= now;
+        }
+
+        synchronized void sample(long millis) {
+            latency = latency < 0 ? millis : ALPHA * millis + (1 - ALPHA) * latency;
+        }
+    }
+
+}
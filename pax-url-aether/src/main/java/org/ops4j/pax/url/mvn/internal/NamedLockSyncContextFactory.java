@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SyncContext;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.impl.SyncContextFactory;
+import org.eclipse.aether.metadata.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>{@link SyncContextFactory} that coordinates access to local repository between threads and between
+ * processes (e.g., several Karaf instances sharing <code>~/.m2/repository</code>).</p>
+ * <p>Aether acquires sync context before checking local repository and keeps it until the artifacts (or
+ * metadata) are downloaded and installed, so whoever waits for a lock finds the file downloaded by the lock
+ * owner instead of downloading it again.</p>
+ * <p>Each lock is named after <code>groupId:artifactId:version</code> and is backed by in-JVM reentrant
+ * lock and by exclusive {@link FileLock} on a file in <code>.locks</code> directory of local repository.
+ * Shared contexts are treated as exclusive.</p>
+ * <p>Locks are kept in memory only while some thread holds or waits for them. Lock files are removed
+ * together with the version directory they protect (see {@link Held#discard()}).</p>
+ */
+public class NamedLockSyncContextFactory implements SyncContextFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NamedLockSyncContextFactory.class);
+
+    public static final String LOCKS_DIRECTORY = ".locks";
+
+    /**
+     * Locks are JVM-wide, because {@link FileLock file locks} are held on behalf of entire JVM. Lock is
+     * removed from the map when no thread holds it or waits for it.
+     */
+    private static final ConcurrentMap<File, NamedLock> locks = new ConcurrentHashMap<File, NamedLock>();
+
+    @Override
+    public SyncContext newInstance(RepositorySystemSession session, boolean shared) {
+        return new NamedLockSyncContext(new File(session.getLocalRepository().getBasedir().getAbsoluteFile(),
+                LOCKS_DIRECTORY));
+    }
+
+    static String lockName(Artifact artifact) {
+        return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getBaseVersion();
+    }
+
+    static String lockName(Metadata metadata) {
+        return metadata.getGroupId() + ':' + metadata.getArtifactId() + ':' + metadata.getVersion();
+    }
+
+    /**
+     * Converts lock name to a name of lock file
+     * @param name
+     * @return
+     */
+    static String fileName(String name) {
+        StringBuilder sb = new StringBuilder(name.length() + 5);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_' ? c : '~');
+        }
+        return sb.append(".lock").toString();
+    }
+
+    /**
+     * Acquires lock with given name if it's not held by another thread or process, e.g., to remove a version
+     * directory from local repository only when none of its artifacts is being resolved.
+     * @param localRepository base directory of local repository
+     * @param name lock name (<code>groupId:artifactId:version</code>)
+     * @return acquired lock that has to be closed or <code>null</code> if the lock is held by someone else
+     */
+    static Held tryLock(File localRepository, String name) {
+        NamedLock lock = lockFor(new File(new File(localRepository.getAbsoluteFile(), LOCKS_DIRECTORY),
+                fileName(name)));
+        if (!lock.tryLock()) {
+            lock.release();
+            return null;
+        }
+        return new Held(lock);
+    }
+
+    /**
+     * Returns lock for given file, registered as used by the caller. Each call has to be paired with
+     * {@link NamedLock#unlock()} or {@link NamedLock#release()}.
+     * @param file
+     * @return
+     */
+    private static NamedLock lockFor(File file) {
+        while (true) {
+            NamedLock lock = locks.get(file);
+            if (lock == null) {
+                NamedLock created = new NamedLock(file);
+                lock = locks.putIfAbsent(file, created);
+                if (lock == null) {
+                    lock = created;
+                }
+            }
+            if (lock.retain()) {
+                return lock;
+            }
+            // the lock was released by its last user just now
+            locks.remove(file, lock);
+        }
+    }
+
+    /**
+     * Lock acquired by {@link #tryLock(File, String)}
+     */
+    static class Held implements Closeable {
+
+        private final NamedLock lock;
+
+        private Held(NamedLock lock) {
+            this.lock = lock;
+        }
+
+        /**
+         * Marks the lock file to be deleted when this lock is released, e.g., after the version directory
+         * protected by this lock was removed from local repository
+         */
+        void discard() {
+            lock.discard = true;
+        }
+
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+
+    }
+
+    private class NamedLockSyncContext implements SyncContext {
+
+        private final File lockDirectory;
+        private final List<NamedLock> acquired = new ArrayList<NamedLock>();
+
+        NamedLockSyncContext(File lockDirectory) {
+            this.lockDirectory = lockDirectory;
+        }
+
+        @Override
+        public void acquire(Collection<? extends Artifact> artifacts, Collection<? extends Metadata> metadatas) {
+            // sorted names - to always acquire locks in the same order
+            Set<String> names = new TreeSet<String>();
+            if (artifacts != null) {
+                for (Artifact artifact : artifacts) {
+                    names.add(lockName(artifact));
+                }
+            }
+            if (metadatas != null) {
+                for (Metadata metadata : metadatas) {
+                    names.add(lockName(metadata));
+                }
+            }
+            for (String name : names) {
+                NamedLock lock = lockFor(new File(lockDirectory, fileName(name)));
+                lock.lock();
+                acquired.add(lock);
+            }
+        }
+
+        @Override
+        public void close() {
+            for (int i = acquired.size() - 1; i >= 0; i--) {
+                acquired.get(i).unlock();
+            }
+            acquired.clear();
+        }
+
+    }
+
+    /**
+     * Reentrant lock, which (when held by any thread) holds also a lock on a file.
+     */
+    private static class NamedLock {
+
+        private final File file;
+        private final ReentrantLock lock = new ReentrantLock();
+        private RandomAccessFile raf;
+        private FileLock fileLock;
+        /** Number of threads holding or waiting for this lock, <code>-1</code> when removed from the map */
+        private int users;
+        /** Whether to delete the lock file when the lock is released (accessed only by holding thread) */
+        private boolean discard;
+
+        NamedLock(File file) {
+            this.file = file;
+        }
+
+        synchronized boolean retain() {
+            if (users < 0) {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        synchronized void release() {
+            if (--users == 0) {
+                users = -1;
+                locks.remove(file, this);
+            }
+        }
+
+        public void lock() {
+            lock.lock();
+            if (lock.getHoldCount() > 1) {
+                return;
+            }
+            try {
+                file.getParentFile().mkdirs();
+                do {
+                    closeFile();
+                    raf = new RandomAccessFile(file, "rw");
+                    FileChannel channel = raf.getChannel();
+                    fileLock = channel.lock();
+                    // the file may have been deleted by process that held the lock before
+                } while (!file.isFile());
+            } catch (IOException | OverlappingFileLockException e) {
+                LOG.warn("Can't lock " + file + ", local repository is not protected against concurrent processes: "
+                        + e.getMessage());
+                closeFile();
+            }
+        }
+
+        /**
+         * Acquires the lock only if it's not held by another thread or (using the file) by another process
+         * @return
+         */
+        public boolean tryLock() {
+            if (!lock.tryLock()) {
+                return false;
+            }
+            if (lock.getHoldCount() > 1) {
+                return true;
+            }
+            try {
+                file.getParentFile().mkdirs();
+                do {
+                    closeFile();
+                    raf = new RandomAccessFile(file, "rw");
+                    fileLock = raf.getChannel().tryLock();
+                    if (fileLock == null) {
+                        closeFile();
+                        lock.unlock();
+                        return false;
+                    }
+                } while (!file.isFile());
+            } catch (IOException | OverlappingFileLockException e) {
+                LOG.warn("Can't lock " + file + ", local repository is not protected against concurrent processes: "
+                        + e.getMessage());
+                closeFile();
+            }
+            return true;
+        }
+
+        public void unlock() {
+            try {
+                if (lock.getHoldCount() == 1) {
+                    if (fileLock != null) {
+                        try {
+                            fileLock.release();
+                        } catch (IOException e) {
+                            LOG.debug("Can't release lock on " + file + ": " + e.getMessage());
+                        }
+                        fileLock = null;
+                    }
+                    closeFile();
+                    if (discard) {
+                        discard = false;
+                        file.delete();
+                    }
+                }
+            } finally {
+                lock.unlock();
+                release();
+            }
+        }
+
+        private void closeFile() {
+            fileLock = null;
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+                raf = null;
+            }
+        }
+
+    }
+
+}
@@ -19,11 +19,14 @@
 package org.ops4j.pax.url.mvn.internal;
 
 import java.net.MalformedURLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.ops4j.pax.url.mvn.internal.config.MavenRepositoryURL;
 
 /**
  * Parser for mvn: protocol.<br/>
+ * Parsers are immutable, {@link #parse(String)} reuses parsers of recently parsed urls.<br/>
  *
  * @author Alin Dreghiciu
  * @author Toni Menzel
@@ -91,34 +94,84 @@ public class Parser
      */
     private static final String METADATA_FILE_LOCAL = "maven-metadata-local.xml";
 
+    /**
+     * Maximal number of parsed urls kept by {@link #parse(String)}.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Parsed urls (parsers are immutable), in access order.
+     */
+    private static final Map<String, Parser> CACHE = new LinkedHashMap<String, Parser>( 16, 0.75f, true )
+    {
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<String, Parser> eldest )
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
+
     /**
      * Repository URL. Null if not present.
      */
-    private MavenRepositoryURL m_repositoryURL;
+    private final MavenRepositoryURL m_repositoryURL;
     /**
      * Artifact group id.
      */
-    private String m_group;
+    private final String m_group;
     /**
      * Artifact id.
      */
-    private String m_artifact;
+    private final String m_artifact;
     /**
      * Artifact version.
      */
-    private String m_version;
+    private final String m_version;
     /**
      * Artifact type.
      */
-    private String m_type;
+    private final String m_type;
     /**
      * Artifact classifier.
      */
-    private String m_classifier;
+    private final String m_classifier;
     /**
      * Artifact classifier to use to build artifact name.
      */
-    private String m_fullClassifier;
+    private final String m_fullClassifier;
+
+    /**
+     * Returns a parser for given path, reusing a parser created earlier for the same path. The same url is
+     * usually parsed several times (e.g., when opening a connection and then when resolving the artifact).
+     *
+     * @param path the path part of the url (without starting mvn:)
+     *
+     * @return parser of the path
+     *
+     * @throws MalformedURLException if provided path does not comply to expected syntax or an malformed repository URL
+     */
+    public static Parser parse( final String path )
+        throws MalformedURLException
+    {
+        if( path == null )
+        {
+            return new Parser( path );
+        }
+        Parser parser;
+        synchronized( CACHE )
+        {
+            parser = CACHE.get( path );
+        }
+        if( parser == null )
+        {
+            parser = new Parser( path );
+            synchronized( CACHE )
+            {
+                CACHE.put( path, parser );
+            }
+        }
+        return parser;
+    }
 
     /**
      * Creates a new protocol parser.
@@ -140,64 +193,98 @@ public class Parser
                 "Path cannot start or end with " + REPOSITORY_SEPARATOR + ". Syntax " + SYNTAX
             );
         }
-        if( path.contains( REPOSITORY_SEPARATOR ) )
+        final String part;
+        int pos = path.lastIndexOf( REPOSITORY_SEPARATOR );
+        if( pos >= 0 )
         {
-            int pos = path.lastIndexOf( REPOSITORY_SEPARATOR );
-            parseArtifactPart( path.substring( pos + 1 ) );
-            m_repositoryURL = new MavenRepositoryURL( path.substring( 0, pos ) + "@snapshots" );
+            part = path.substring( pos + 1 );
         }
         else
         {
-            parseArtifactPart( path );
+            part = path;
         }
-    }
 
-    /**
-     * Parses the artifact part of the url ( without the repository).
-     *
-     * @param part url part without protocol and repository.
-     *
-     * @throws MalformedURLException if provided path does not comply to syntax.
-     */
-    private void parseArtifactPart( final String part )
-        throws MalformedURLException
-    {
-        String[] segments = part.split( ARTIFACT_SEPARATOR );
-        if( segments.length < 2 )
+        // parse the artifact part of the url (without the repository)
+        final String[] segments = new String[5];
+        final int count = split( part, segments );
+        if( count < 2 )
         {
             throw new MalformedURLException( "Invalid path. Syntax " + SYNTAX );
         }
         // we must have a valid group
         m_group = segments[ 0 ];
-        if( m_group.trim().length() == 0 )
+        if( isBlank( m_group ) )
         {
             throw new MalformedURLException( "Invalid groupId. Syntax " + SYNTAX );
         }
         // valid artifact
         m_artifact = segments[ 1 ];
-        if( m_artifact.trim().length() == 0 )
+        if( isBlank( m_artifact ) )
         {
             throw new MalformedURLException( "Invalid artifactId. Syntax " + SYNTAX );
         }
-        // version is optional but we have a default value 
-        m_version = VERSION_LATEST;
-        if( segments.length >= 3 && segments[ 2 ].trim().length() > 0 )
-        {
-            m_version = segments[ 2 ];
-        }
+        // version is optional but we have a default value
+        m_version = count >= 3 && !isBlank( segments[ 2 ] ) ? segments[ 2 ] : VERSION_LATEST;
         // type is optional but we have a default value
-        m_type = TYPE_JAR;
-        if( segments.length >= 4 && segments[ 3 ].trim().length() > 0 )
-        {
-            m_type = segments[ 3 ];
-        }
+        m_type = count >= 4 && !isBlank( segments[ 3 ] ) ? segments[ 3 ] : TYPE_JAR;
         // classifier is optional (if not pressent or empty we will have a null classsifier
-        m_fullClassifier = "";
-        if( segments.length >= 5 && segments[ 4 ].trim().length() > 0 )
+        if( count >= 5 && !isBlank( segments[ 4 ] ) )
         {
             m_classifier = segments[ 4 ];
             m_fullClassifier = CLASSIFIER_SEPARATOR + m_classifier;
         }
+        else
+        {
+            m_classifier = null;
+            m_fullClassifier = "";
+        }
+
+        m_repositoryURL = pos >= 0 ? new MavenRepositoryURL( path.substring( 0, pos ) + "@snapshots" ) : null;
+    }
+
+    /**
+     * Splits the artifact part of the url into at most <code>segments.length</code> segments. As with
+     * {@link String#split(String)}, trailing empty segments are not counted.
+     *
+     * @param part     url part without protocol and repository.
+     * @param segments array to fill with segments
+     *
+     * @return number of segments
+     */
+    private static int split( final String part, final String[] segments )
+    {
+        int count = 0;
+        int start = 0;
+        while( count < segments.length )
+        {
+            int end = part.indexOf( ARTIFACT_SEPARATOR, start );
+            segments[ count++ ] = part.substring( start, end < 0 ? part.length() : end );
+            if( end < 0 )
+            {
+                break;
+            }
+            start = end + 1;
+        }
+        while( count > 0 && segments[ count - 1 ].length() == 0 )
+        {
+            count--;
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the segment is empty or contains only whitespace (as with <code>trim().length() == 0</code>).
+     */
+    private static boolean isBlank( final String segment )
+    {
+        for( int i = 0; i < segment.length(); i++ )
+        {
+            if( segment.charAt( i ) > ' ' )
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -15,11 +15,17 @@
  */
 package org.ops4j.pax.url.mvn.internal;
 
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.impl.RemoteRepositoryManager;
 import org.eclipse.aether.impl.UpdatePolicyAnalyzer;
 import org.eclipse.aether.internal.impl.PaxLocalRepositoryManager;
+import org.eclipse.aether.internal.impl.SharedArtifactStore;
 import org.eclipse.aether.internal.impl.SimpleLocalRepositoryManagerFactory;
+import org.eclipse.aether.internal.impl.TrackingFileCache;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.LocalRepositoryManager;
 import org.eclipse.aether.spi.locator.Service;
@@ -30,6 +36,14 @@ public class PaxLocalRepositoryManagerFactory extends SimpleLocalRepositoryManag
     private UpdatePolicyAnalyzer updatePolicyAnalyzer;
     private RemoteRepositoryManager remoteRepositoryManager;
 
+    /**
+     * Tracking files are shared by all sessions created by single resolver and updates are written
+     * when session is released
+     */
+    private final TrackingFileCache trackingFileCache = new TrackingFileCache(true);
+
+    private final ConcurrentMap<String, SharedArtifactStore> sharedStores = new ConcurrentHashMap<String, SharedArtifactStore>();
+
     @Override
     public void initService(ServiceLocator locator) {
         updatePolicyAnalyzer = locator.getService(UpdatePolicyAnalyzer.class);
@@ -38,8 +52,17 @@ public class PaxLocalRepositoryManagerFactory extends SimpleLocalRepositoryManag
 
     @Override
     public LocalRepositoryManager newInstance(RepositorySystemSession session, LocalRepository repository) {
+        SharedArtifactStore sharedStore = null;
+        String sharedStoreLocation = (String) session.getConfigProperties().get(PaxLocalRepositoryManager.PROPERTY_SHARED_STORE);
+        if (sharedStoreLocation != null) {
+            sharedStore = sharedStores.get(sharedStoreLocation);
+            if (sharedStore == null) {
+                sharedStores.putIfAbsent(sharedStoreLocation, new SharedArtifactStore(new File(sharedStoreLocation)));
+                sharedStore = sharedStores.get(sharedStoreLocation);
+            }
+        }
         return new PaxLocalRepositoryManager(repository.getBasedir(),
-                updatePolicyAnalyzer, remoteRepositoryManager);
+                updatePolicyAnalyzer, remoteRepositoryManager, trackingFileCache, sharedStore);
     }
 
 }
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.internal.impl.DefaultChecksumPolicyProvider;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.checksum.ChecksumPolicy;
+import org.eclipse.aether.spi.connector.checksum.ChecksumPolicyProvider;
+import org.eclipse.aether.transfer.TransferResource;
+import org.ops4j.pax.url.mvn.internal.wagon.ChecksumPrefetcher;
+
+/**
+ * {@link ChecksumPolicyProvider} which verifies checksums of artifacts downloaded from peers, even if global
+ * checksum policy (which overrides policies of repositories) says otherwise. It also tells
+ * {@link ChecksumPrefetcher} which downloads will have their checksums verified.
+ */
+public class PeerChecksumPolicyProvider implements ChecksumPolicyProvider {
+
+    /**
+     * Prefix of identifiers of repositories representing peers
+     */
+    public static final String PEER_ID_PREFIX = "pax-url-peer-";
+
+    private final ChecksumPolicyProvider delegate = new DefaultChecksumPolicyProvider();
+    private final ChecksumPrefetcher prefetcher;
+
+    public PeerChecksumPolicyProvider() {
+        this(null);
+    }
+
+    /**
+     * @param prefetcher may be <code>null</code>
+     */
+    public PeerChecksumPolicyProvider(ChecksumPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * Returns <code>true</code> if given repository represents a peer
+     * @param repository
+     * @return
+     */
+    public static boolean isPeer(RemoteRepository repository) {
+        return repository.getId().startsWith(PEER_ID_PREFIX);
+    }
+
+    @Override
+    public ChecksumPolicy newChecksumPolicy(RepositorySystemSession session, RemoteRepository repository,
+                                           TransferResource resource, String policy) {
+        if (isPeer(repository)) {
+            policy = RepositoryPolicy.CHECKSUM_POLICY_FAIL;
+        }
+        ChecksumPolicy checksumPolicy = delegate.newChecksumPolicy(session, repository, resource, policy);
+        if (checksumPolicy != null && prefetcher != null) {
+            prefetcher.expect(resource.getRepositoryUrl() + resource.getResourceName());
+        }
+        return checksumPolicy;
+    }
+
+    @Override
+    public String getEffectiveChecksumPolicy(RepositorySystemSession session, String policy1, String policy2) {
+        return delegate.getEffectiveChecksumPolicy(session, policy1, policy2);
+    }
+
+}
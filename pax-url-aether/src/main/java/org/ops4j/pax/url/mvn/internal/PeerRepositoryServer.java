@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves local repository read-only to peers over HTTP. Only artifacts accompanied by <code>.sha1</code> checksum
+ * fetched from upstream repository (and matching the artifact) are served, together with their stored checksums.
+ * Artifacts installed locally, downloaded without checksum verification or corrupted since, as well as tracking
+ * files, metadata and files being downloaded are not served. Checksums are never calculated, so peers verify
+ * artifacts against checksums of the upstream repository.
+ * There's no authentication - the server has to be bound to an address reachable only by trusted peers.
+ * Servers are shared by resolvers configured with the same address, so reconfigured resolver may be created
+ * before the previous one is closed. The server serves local repository of most recently acquiring resolver.
+ */
+public class PeerRepositoryServer implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PeerRepositoryServer.class);
+
+    private static final int THREADS = 4;
+
+    private static final Map<String, PeerRepositoryServer> SERVERS = new HashMap<String, PeerRepositoryServer>();
+
+    private final String key;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile File basedir;
+    private int references = 1;
+
+    /**
+     * Returns running server listening on given address, starting it if needed
+     * @param host bind address, required as there's no authentication
+     * @param port port, <code>0</code> for ephemeral port (such servers are not shared)
+     * @param basedir local repository to serve
+     * @return
+     * @throws IOException if the server can't be started
+     */
+    public static PeerRepositoryServer acquire(String host, int port, File basedir) throws IOException {
+        if (host == null) {
+            throw new IllegalArgumentException("Bind address of peer repository server has to be specified");
+        }
+        String key = host + ":" + port;
+        synchronized (SERVERS) {
+            PeerRepositoryServer server = port == 0 ? null : SERVERS.get(key);
+            if (server == null) {
+                server = new PeerRepositoryServer(key, host, port, basedir);
+                if (port != 0) {
+                    SERVERS.put(key, server);
+                }
+            } else {
+                server.references++;
+                server.basedir = basedir;
+            }
+            return server;
+        }
+    }
+
+    private PeerRepositoryServer(String key, String host, int port, File basedir) throws IOException {
+        this.key = key;
+        this.basedir = basedir;
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "pax-url-aether-peer-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/", new RepositoryHandler());
+        server.start();
+        LOG.warn("Serving verified artifacts of local repository {} without authentication to anyone able to connect to {}",
+                basedir, server.getAddress());
+    }
+
+    /**
+     * Actual port the server listens on
+     * @return
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Releases the server, stopping it if it's not used by other resolvers
+     */
+    @Override
+    public void close() {
+        synchronized (SERVERS) {
+            if (--references > 0) {
+                return;
+            }
+            if (SERVERS.get(key) == this) {
+                SERVERS.remove(key);
+            }
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Finds file to serve for given request path. Artifacts are served only if accompanied by matching
+     * <code>.sha1</code> checksum, checksums only if they accompany such artifacts.
+     * @param path
+     * @return file or <code>null</code> if there's nothing to serve
+     * @throws IOException
+     */
+    File find(String path) throws IOException {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        if (name.isEmpty() || name.startsWith("_") || name.startsWith(".") || name.startsWith("maven-metadata")
+                || name.startsWith("resolver-status") || name.endsWith(".lastUpdated") || name.endsWith(".part")
+                || name.endsWith(".lock") || name.endsWith(".tmp")) {
+            return null;
+        }
+        File base = basedir.getCanonicalFile();
+        File file = new File(base, path).getCanonicalFile();
+        if (!file.getPath().startsWith(base.getPath() + File.separator) || !file.isFile()) {
+            return null;
+        }
+        String artifactName = name.endsWith(".sha1") || name.endsWith(".md5")
+                ? name.substring(0, name.lastIndexOf('.')) : name;
+        File artifact = new File(file.getParentFile(), artifactName);
+        return verified(artifact) ? file : null;
+    }
+
+    /**
+     * Checks whether the artifact matches its stored <code>.sha1</code> checksum
+     * @param artifact
+     * @return
+     * @throws IOException
+     */
+    private boolean verified(File artifact) throws IOException {
+        if (!artifact.isFile()) {
+            return false;
+        }
+        String checksum = Checksums.read(new File(artifact.getParentFile(), artifact.getName() + ".sha1"));
+        if (checksum == null || !checksum.equals(Checksums.calculatedSha1(artifact))) {
+            LOG.debug("Not serving {} to peers - there's no matching checksum", artifact);
+            return false;
+        }
+        return true;
+    }
+
+    private class RepositoryHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String method = exchange.getRequestMethod();
+                if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                File file = find(exchange.getRequestURI().getPath());
+                if (file == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, "HEAD".equals(method) ? -1 : file.length());
+                if ("GET".equals(method)) {
+                    try (OutputStream os = exchange.getResponseBody()) {
+                        Files.copy(file.toPath(), os);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.debug("Can't serve {} to peer: {}", exchange.getRequestURI(), e.getMessage());
+                throw e;
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.ops4j.pax.url.mvn.CancellationToken;
+import org.ops4j.pax.url.mvn.MavenResolver2.Priority;
+
+/**
+ * <p>Admits remote resolutions in order of their {@link Priority}, so artifacts needed to start the container
+ * don't wait behind optional downloads for connections (which are limited per route by {@link HttpClients}).</p>
+ * <p>At most <code>permits</code> remote resolutions run at once. Waiting resolutions are admitted by priority
+ * and then in arrival order. {@link Priority#BACKGROUND Background} resolutions never use more than
+ * <code>backgroundPermits</code>, so there are always permits left for more important ones.</p>
+ */
+public class ResolutionScheduler {
+
+    private final int permits;
+    private final int backgroundPermits;
+    private final List<String[]> critical = new ArrayList<String[]>();
+    private final List<String[]> background = new ArrayList<String[]>();
+
+    private final PriorityQueue<Permit> waiting = new PriorityQueue<Permit>();
+    private long sequence;
+    private int running;
+    private int runningBackground;
+
+    /**
+     * @param permits maximal number of concurrent remote resolutions, <code>0</code> for no limit
+     * @param backgroundPermits maximal number of concurrent background resolutions
+     * @param critical <code>groupId[:artifactId[:version[:classifier]]]</code> patterns of critical artifacts
+     * @param background <code>groupId[:artifactId[:version[:classifier]]]</code> patterns of background artifacts
+     */
+    public ResolutionScheduler(int permits, int backgroundPermits, List<String> critical, List<String> background) {
+        this.permits = Math.max(0, permits);
+        this.backgroundPermits = Math.max(1, Math.min(backgroundPermits, this.permits));
+        parsePatterns(critical, this.critical);
+        parsePatterns(background, this.background);
+    }
+
+    /**
+     * Returns priority of resolution of given artifact - either the one requested by caller or the one
+     * configured for matching coordinates.
+     * @param artifact
+     * @param requested priority requested by caller (may be <code>null</code>)
+     * @return
+     */
+    public Priority priority(Artifact artifact, Priority requested) {
+        if (requested != null) {
+            return requested;
+        }
+        if (matches(critical, artifact)) {
+            return Priority.CRITICAL;
+        }
+        if (matches(background, artifact)) {
+            return Priority.BACKGROUND;
+        }
+        return Priority.NORMAL;
+    }
+
+    /**
+     * Waits until resolution with given priority may start.
+     * @param priority
+     * @param token token of the resolution (may be <code>null</code>)
+     * @return permit that has to be {@link Permit#release() released} after the resolution
+     * @throws InterruptedIOException if the resolution is cancelled or the thread is interrupted
+     */
+    public Permit acquire(Priority priority, CancellationToken token) throws InterruptedIOException {
+        return acquire(priority, token, 1);
+    }
+
+    /**
+     * Waits until resolution with given priority, which uses up to <code>count</code> concurrent transfers, may start.
+     * The count is limited to number of permits available for given priority, so large resolutions don't wait forever.
+     * @param priority
+     * @param token token of the resolution (may be <code>null</code>)
+     * @param count number of concurrent transfers of the resolution
+     * @return permit that has to be {@link Permit#release() released} after the resolution
+     * @throws InterruptedIOException if the resolution is cancelled or the thread is interrupted
+     */
+    public Permit acquire(Priority priority, CancellationToken token, int count) throws InterruptedIOException {
+        count = Math.max(1, count);
+        if (permits > 0) {
+            count = Math.min(count, priority == Priority.BACKGROUND ? backgroundPermits : permits);
+        }
+        synchronized (this) {
+            Permit permit = new Permit(priority, sequence++, count);
+            if (permits == 0) {
+                return permit;
+            }
+            waiting.add(permit);
+            try {
+                while (!admit(permit)) {
+                    if (token != null && token.isCancelled()) {
+                        throw new InterruptedIOException("Resolution was cancelled");
+                    }
+                    permit.waited = true;
+                    // cancellation tokens don't notify, so check them periodically
+                    wait(100L);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for resolution permit");
+            } finally {
+                if (waiting.remove(permit)) {
+                    // someone else may be admitted now
+                    notifyAll();
+                }
+            }
+            return permit;
+        }
+    }
+
+    /**
+     * Admits given permit if it's first in the queue and there are free permits
+     * @param permit
+     * @return
+     */
+    private boolean admit(Permit permit) {
+        if (waiting.peek() != permit || running + permit.count > permits
+                || permit.priority == Priority.BACKGROUND && runningBackground + permit.count > backgroundPermits) {
+            return false;
+        }
+        waiting.poll();
+        running += permit.count;
+        if (permit.priority == Priority.BACKGROUND) {
+            runningBackground += permit.count;
+        }
+        permit.admitted = true;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Returns number of resolutions waiting for a permit
+     * @return
+     */
+    synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private synchronized void release(Permit permit) {
+        if (!permit.admitted) {
+            return;
+        }
+        permit.admitted = false;
+        running -= permit.count;
+        if (permit.priority == Priority.BACKGROUND) {
+            runningBackground -= permit.count;
+        }
+        notifyAll();
+    }
+
+    private static void parsePatterns(List<String> patterns, List<String[]> parsed) {
+        for (String pattern : patterns) {
+            if (!pattern.trim().isEmpty()) {
+                parsed.add(pattern.trim().split(":"));
+            }
+        }
+    }
+
+    private static boolean matches(List<String[]> patterns, Artifact artifact) {
+        String[] coordinates = {
+                artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getClassifier()
+        };
+        for (String[] pattern : patterns) {
+            boolean matches = pattern.length <= coordinates.length;
+            for (int i = 0; matches && i < pattern.length; i++) {
+                matches = "*".equals(pattern[i]) || pattern[i].equals(coordinates[i]);
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Permission to perform single remote resolution
+     */
+    public class Permit implements Comparable<Permit> {
+
+        private final Priority priority;
+        private final long sequence;
+        private final int count;
+        private boolean admitted;
+        private boolean waited;
+
+        Permit(Priority priority, long sequence, int count) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.count = count;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Returns number of concurrent transfers the resolution may use
+         * @return
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns <code>true</code> if the resolution couldn't start at once
+         * @return
+         */
+        public boolean hasWaited() {
+            return waited;
+        }
+
+        public void release() {
+            ResolutionScheduler.this.release(this);
+        }
+
+        @Override
+        public int compareTo(Permit other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.apache.maven.settings.crypto.SettingsDecrypter;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.impl.SyncContextFactory;
+import org.eclipse.aether.internal.impl.slf4j.Slf4jLoggerFactory;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.checksum.ChecksumPolicyProvider;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.spi.io.FileProcessor;
+import org.eclipse.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.eclipse.aether.transport.wagon.WagonProvider;
+import org.eclipse.aether.transport.wagon.WagonTransporterFactory;
+import org.ops4j.pax.url.mvn.ServiceConstants;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfiguration;
+import org.ops4j.pax.url.mvn.internal.wagon.ChecksumPrefetcher;
+import org.sonatype.plexus.components.cipher.DefaultPlexusCipher;
+import org.sonatype.plexus.components.cipher.PlexusCipherException;
+
+/**
+ * <p>Heavyweight components of {@link AetherBasedResolver}: HTTP client with its connection pool,
+ * {@link RepositorySystem} and settings decrypter.</p>
+ * <p>Resolvers whose configurations have equal network, locking and security settings share single,
+ * reference counted core, so creating many resolvers (e.g., one per tenant or per mirror) doesn't
+ * multiply threads, sockets and heap. Everything else (repositories, local repository, sessions) stays
+ * in the resolver.</p>
+ */
+public class ResolverCore {
+
+    private static final Map<String, ResolverCore> CORES = new HashMap<String, ResolverCore>();
+
+    private final String key;
+    private int references;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final ChecksumPrefetcher checksumPrefetcher;
+    private final ConfigurableSettingsDecrypter decrypter;
+    private final RepositorySystem repositorySystem;
+
+    /**
+     * Returns a core matching given configuration, creating it if there's none.
+     * Each call has to be followed by {@link #release()}.
+     * @param config
+     * @return
+     */
+    public static ResolverCore acquire(MavenConfiguration config) {
+        String key = getKey(config);
+        synchronized (CORES) {
+            ResolverCore core = CORES.get(key);
+            if (core == null) {
+                core = new ResolverCore(key, config);
+                CORES.put(key, core);
+            }
+            core.references++;
+            return core;
+        }
+    }
+
+    /**
+     * Number of cores currently in use
+     * @return
+     */
+    public static int getCoreCount() {
+        synchronized (CORES) {
+            return CORES.size();
+        }
+    }
+
+    private static String getKey(MavenConfiguration config) {
+        int defaultTimeout = config.getTimeout();
+        StringBuilder sb = new StringBuilder();
+        sb.append(HttpClients.getConfigurationKey(config.getPropertyResolver(), config.getPid()));
+        sb.append(config.getProperty(ServiceConstants.PROPERTY_SOCKET_CONNECTION_TIMEOUT, defaultTimeout, Integer.class)).append(';');
+        sb.append(config.getProperty(ServiceConstants.PROPERTY_SOCKET_SO_TIMEOUT, defaultTimeout, Integer.class)).append(';');
+        sb.append(config.getProperty(ServiceConstants.PROPERTY_CHECKSUM_PREFETCH, false, Boolean.class)).append(';');
+        sb.append(config.getProperty(ServiceConstants.PROPERTY_LOCAL_REPOSITORY_LOCKING, false, Boolean.class)).append(';');
+        sb.append(config.getProperty(ServiceConstants.PROPERTY_SHARED_STORE, null, String.class) != null).append(';');
+        sb.append(config.getSecuritySettings());
+        return sb.toString();
+    }
+
+    private ResolverCore(String key, MavenConfiguration config) {
+        this.key = key;
+        connectionManager = HttpClients.createConnManager(config.getPropertyResolver(), config.getPid());
+        client = HttpClients.createClient(connectionManager, config.getPropertyResolver(), config.getPid());
+        if (config.getProperty(ServiceConstants.PROPERTY_CHECKSUM_PREFETCH, false, Boolean.class)) {
+            checksumPrefetcher = new ChecksumPrefetcher(ChecksumPrefetcher.getThreads(
+                    HttpClients.getMaxConnectionsPerRoute(config.getPropertyResolver())));
+        } else {
+            checksumPrefetcher = null;
+        }
+        decrypter = new ConfigurableSettingsDecrypter();
+        repositorySystem = newRepositorySystem(config);
+    }
+
+    private RepositorySystem newRepositorySystem(MavenConfiguration config) {
+        DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
+
+        // default timeout (both connection and read timeouts)
+        int defaultTimeout = config.getTimeout();
+        // connection timeout
+        int connectionTimeout = config.getProperty(ServiceConstants.PROPERTY_SOCKET_CONNECTION_TIMEOUT, defaultTimeout, Integer.class);
+        // read timeout
+        int soTimeout = config.getProperty(ServiceConstants.PROPERTY_SOCKET_SO_TIMEOUT, defaultTimeout, Integer.class);
+        locator.setServices(WagonProvider.class, new ManualWagonProvider(client, soTimeout, connectionTimeout,
+                checksumPrefetcher));
+        locator.addService(TransporterFactory.class, WagonTransporterFactory.class);
+        locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+        locator.setServices(ChecksumPolicyProvider.class, new PeerChecksumPolicyProvider(checksumPrefetcher));
+
+        PaxUrlSecDispatcher secDispatcher = new PaxUrlSecDispatcher();
+        try {
+            secDispatcher.setCipher(new DefaultPlexusCipher());
+        } catch (PlexusCipherException exc) {
+            throw new IllegalStateException(exc);
+        }
+        secDispatcher.setConfigurationFile(config.getSecuritySettings());
+        decrypter.setSecurityDispatcher(secDispatcher);
+
+        locator.setServices(SettingsDecrypter.class, decrypter);
+
+        locator.setService(LocalRepositoryManagerFactory.class,
+                PaxLocalRepositoryManagerFactory.class);
+        boolean locking = config.getProperty(ServiceConstants.PROPERTY_LOCAL_REPOSITORY_LOCKING, false, Boolean.class);
+        if (locking) {
+            locator.setServices(SyncContextFactory.class, new NamedLockSyncContextFactory());
+        }
+        if (locking || config.getProperty(ServiceConstants.PROPERTY_SHARED_STORE, null, String.class) != null) {
+            // files hard linked from shared store must never be overwritten in place
+            locator.setService(FileProcessor.class, AtomicFileProcessor.class);
+        }
+        locator.setService(org.eclipse.aether.spi.log.LoggerFactory.class,
+                Slf4jLoggerFactory.class);
+
+        return locator.getService(RepositorySystem.class);
+    }
+
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    public ConfigurableSettingsDecrypter getDecrypter() {
+        return decrypter;
+    }
+
+    public RepositorySystem getRepositorySystem() {
+        return repositorySystem;
+    }
+
+    /**
+     * Releases the core acquired with {@link #acquire(MavenConfiguration)}. The last release closes
+     * the HTTP client.
+     * @throws IOException
+     */
+    public void release() throws IOException {
+        synchronized (CORES) {
+            if (--references > 0) {
+                return;
+            }
+            CORES.remove(key);
+        }
+        if (checksumPrefetcher != null) {
+            checksumPrefetcher.close();
+        }
+        client.close();
+    }
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.ops4j.pax.url.mvn.CancellationToken;
+import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.mvn.MavenResolver2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves resolution requests of other processes on the same host over loopback HTTP. Resolved files are
+ * returned as paths in the local repository of the daemon, so nothing is copied. Requests are:<ul>
+ *     <li><code>/resolve?url=</code></li>
+ *     <li><code>/artifact?groupId=&amp;artifactId=&amp;classifier=&amp;extension=&amp;version=</code></li>
+ *     <li><code>/metadata?groupId=&amp;artifactId=&amp;type=&amp;version=</code></li>
+ *     <li><code>/upToDate?url=&amp;checksum=&amp;timestamp=</code></li>
+ * </ul>
+ * Failures are reported with status 500, exception message as body and {@link #RETRY_CHANCE} header.
+ * <p>Requests have to carry {@link #SECRET} header with random secret, which the daemon writes to
+ * {@link #secretFile(File, int) file readable only by its owner} in local repository, and <code>Host</code>
+ * header naming the loopback address, so other users of the host and web pages (even with rebound DNS names)
+ * can't make the daemon resolve artifacts. Clients using other local repository don't know the secret.</p>
+ * Like {@link PeerRepositoryServer}, daemon is shared by resolvers configured with the same port and serves
+ * using the most recently acquiring resolver.
+ * @see DaemonClientResolver
+ */
+public class ResolverDaemon implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResolverDaemon.class);
+
+    /**
+     * Response header with {@link MavenResolver.RetryChance} of failed resolution
+     */
+    public static final String RETRY_CHANCE = "X-Retry-Chance";
+
+    /**
+     * Request header with the secret of the daemon
+     */
+    public static final String SECRET = "X-Daemon-Secret";
+
+    private static final int THREADS = 8;
+
+    private static final Map<Integer, ResolverDaemon> DAEMONS = new HashMap<Integer, ResolverDaemon>();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String secret;
+    /** Files with the secret, written to local repositories of acquiring resolvers */
+    private final Set<File> secretFiles = new LinkedHashSet<File>();
+    private volatile MavenResolver2 resolver;
+    private int references = 1;
+
+    /**
+     * Returns running daemon listening on given loopback port, starting it if needed
+     * @param port port, <code>0</code> for ephemeral port (such daemons are not shared)
+     * @param localRepository local repository of the resolver, to which the secret is written
+     * @param resolver resolver performing the resolution
+     * @return
+     * @throws IOException if the daemon can't be started
+     */
+    public static ResolverDaemon acquire(int port, File localRepository, MavenResolver2 resolver) throws IOException {
+        synchronized (DAEMONS) {
+            ResolverDaemon daemon = port == 0 ? null : DAEMONS.get(port);
+            if (daemon == null) {
+                daemon = new ResolverDaemon(port, resolver);
+                if (port != 0) {
+                    DAEMONS.put(port, daemon);
+                }
+            } else {
+                daemon.references++;
+                daemon.resolver = resolver;
+            }
+            try {
+                daemon.writeSecret(localRepository);
+            } catch (IOException e) {
+                daemon.close();
+                throw e;
+            }
+            return daemon;
+        }
+    }
+
+    /**
+     * Returns file with the secret of daemon listening on given port
+     * @param localRepository
+     * @param port
+     * @return
+     */
+    public static File secretFile(File localRepository, int port) {
+        return new File(localRepository, ".pax-url-aether-daemon-" + port);
+    }
+
+    private ResolverDaemon(int port, MavenResolver2 resolver) throws IOException {
+        this.resolver = resolver;
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        secret = Checksums.toHex(random);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+        executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "pax-url-aether-daemon-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/", new ResolutionHandler());
+        server.start();
+        LOG.info("Serving resolution requests at {}", server.getAddress());
+    }
+
+    /**
+     * Actual port the daemon listens on
+     * @return
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Releases the daemon, stopping it if it's not used by other resolvers
+     */
+    @Override
+    public void close() {
+        synchronized (DAEMONS) {
+            if (--references > 0) {
+                return;
+            }
+            if (DAEMONS.get(getPort()) == this) {
+                DAEMONS.remove(getPort());
+            }
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        synchronized (secretFiles) {
+            for (File file : secretFiles) {
+                if (file.delete()) {
+                    LOG.debug("Removed {}", file);
+                }
+            }
+            secretFiles.clear();
+        }
+    }
+
+    /**
+     * Writes the secret to a file readable only by owner of this process
+     * @param localRepository
+     * @throws IOException
+     */
+    private void writeSecret(File localRepository) throws IOException {
+        File file = secretFile(localRepository, getPort()).getAbsoluteFile();
+        synchronized (secretFiles) {
+            if (secretFiles.contains(file) && file.isFile()) {
+                return;
+            }
+            file.getParentFile().mkdirs();
+            Path tmp;
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp",
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+                File f = tmp.toFile();
+                if (!f.setReadable(false, false) || !f.setReadable(true, true)) {
+                    LOG.warn("Can't make {} readable only by its owner", file);
+                }
+            }
+            try {
+                Files.write(tmp, secret.getBytes("UTF-8"));
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            secretFiles.add(file);
+        }
+    }
+
+    /**
+     * Checks whether the request comes from a client knowing the secret and addressing loopback interface
+     * @param exchange
+     * @return
+     */
+    private boolean isAuthorized(HttpExchange exchange) throws IOException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !(host.equals("127.0.0.1:" + getPort()) || host.equals("localhost:" + getPort()))) {
+            return false;
+        }
+        String provided = exchange.getRequestHeaders().getFirst(SECRET);
+        return provided != null && MessageDigest.isEqual(secret.getBytes("UTF-8"), provided.getBytes("UTF-8"));
+    }
+
+    /**
+     * Performs single request
+     * @param operation
+     * @param params
+     * @return response body
+     * @throws IOException
+     */
+    String handle(String operation, Map<String, String> params) throws IOException {
+        MavenResolver2 resolver = this.resolver;
+        switch (operation) {
+            case "/resolve":
+                String priority = params.get("priority");
+                return path(resolver.resolve(required(params, "url"), null, new CancellationToken(),
+                        priority == null ? null : MavenResolver2.Priority.valueOf(priority)));
+            case "/artifact":
+                return path(resolver.resolve(required(params, "groupId"), required(params, "artifactId"),
+                        params.get("classifier"), params.get("extension"), required(params, "version")));
+            case "/metadata":
+                return path(resolver.resolveMetadata(required(params, "groupId"), required(params, "artifactId"),
+                        required(params, "type"), required(params, "version")));
+            case "/upToDate":
+                long timestamp = params.containsKey("timestamp") ? Long.parseLong(params.get("timestamp")) : 0L;
+                return Boolean.toString(resolver.isUpToDate(required(params, "url"), params.get("checksum"), timestamp));
+            default:
+                return null;
+        }
+    }
+
+    private static String path(File file) {
+        return file == null ? "" : file.getAbsolutePath();
+    }
+
+    private static String required(Map<String, String> params, String name) throws IOException {
+        String value = params.get(name);
+        if (value == null) {
+            throw new IOException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> params = new HashMap<String, String>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+                            URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    private class ResolutionHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!isAuthorized(exchange)) {
+                    LOG.debug("Rejected unauthorized request {}", exchange.getRequestURI());
+                    exchange.sendResponseHeaders(403, -1);
+                    return;
+                }
+                int status = 200;
+                String body;
+                try {
+                    body = ResolverDaemon.this.handle(exchange.getRequestURI().getPath(),
+                            parseQuery(exchange.getRequestURI().getRawQuery()));
+                    if (body == null) {
+                        status = 404;
+                        body = "Unknown request: " + exchange.getRequestURI().getPath();
+                    }
+                } catch (Exception e) {
+                    LOG.debug("Resolution requested by client failed: {}", e.getMessage());
+                    status = 500;
+                    body = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+                    exchange.getResponseHeaders().set(RETRY_CHANCE, resolver.isRetryableException(e).name());
+                }
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+                if (bytes.length > 0) {
+                    try (OutputStream os = exchange.getResponseBody()) {
+                        os.write(bytes);
+                    }
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+}
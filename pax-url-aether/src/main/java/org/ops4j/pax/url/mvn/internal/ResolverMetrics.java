@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferListener;
+import org.eclipse.aether.transfer.TransferResource;
+import org.ops4j.pax.url.commons.jfr.UrlTrace;
+import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.mvn.ResolverMetricsMXBean;
+
+/**
+ * Counters and latency histograms of {@link AetherBasedResolver}.
+ */
+public class ResolverMetrics implements ResolverMetricsMXBean {
+
+    public static final String PHASE_RESOLVE = "resolve";
+    public static final String PHASE_DEFAULT_REPOSITORIES = "defaultRepositories";
+    public static final String PHASE_VERSION_RANGE = "versionRange";
+    public static final String PHASE_LOCAL = "local";
+    public static final String PHASE_REMOTE = "remote";
+    public static final String PHASE_METADATA = "metadata";
+    public static final String PHASE_UP_TO_DATE = "upToDate";
+    public static final String PHASE_DEPENDENCIES = "dependencies";
+    public static final String PHASE_SCHEDULE = "schedule";
+
+    private final MavenResolver resolver;
+    private final ConcurrentMap<LocalRepository, Deque<RepositorySystemSession>> sessions;
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, Histogram> latencies = new ConcurrentHashMap<String, Histogram>();
+
+    /**
+     * Maximal number of transfers traced at once
+     */
+    static final int MAX_TRACED_TRANSFERS = 1024;
+
+    /**
+     * Traces of transfers which didn't end within this time (e.g., cancelled before they were started) are
+     * discarded when {@link #MAX_TRACED_TRANSFERS} is reached.
+     */
+    private static final long TRACED_TRANSFER_EXPIRY = 3600000L;
+
+    /**
+     * Transfers traced as JFR events
+     */
+    private final ConcurrentMap<TransferResource, TracedTransfer> transfers = new ConcurrentHashMap<TransferResource, TracedTransfer>();
+
+    private final TransferListener transferListener = new AbstractTransferListener() {
+        @Override
+        public void transferInitiated(TransferEvent event) {
+            increment(repository(event) + ".requests", 1L);
+            if (UrlTrace.isEnabled() && (transfers.size() < MAX_TRACED_TRANSFERS || expireTransfers())) {
+                TransferResource resource = event.getResource();
+                transfers.put(resource, new TracedTransfer(UrlTrace.begin("mvn", "transfer",
+                        resource.getRepositoryUrl() + resource.getResourceName())));
+            }
+        }
+
+        @Override
+        public void transferSucceeded(TransferEvent event) {
+            increment(repository(event) + ".bytes", event.getTransferredBytes());
+            endTransfer(event);
+        }
+
+        @Override
+        public void transferCorrupted(TransferEvent event) {
+            increment(repository(event) + ".corrupted", 1L);
+            endTransfer(event);
+        }
+
+        @Override
+        public void transferFailed(TransferEvent event) {
+            MavenResolver.RetryChance chance = event.getException() == null ? MavenResolver.RetryChance.UNKNOWN
+                    : resolver.isRetryableException(event.getException());
+            increment(repository(event) + ".failures." + chance.name(), 1L);
+            endTransfer(event);
+        }
+
+        private void endTransfer(TransferEvent event) {
+            TracedTransfer transfer = transfers.remove(event.getResource());
+            if (transfer != null) {
+                transfer.trace.bytes(event.getTransferredBytes()).end();
+            }
+        }
+
+        /**
+         * Discards traces of transfers which didn't end for too long
+         * @return <code>true</code> if another transfer may be traced
+         */
+        private boolean expireTransfers() {
+            long now = System.currentTimeMillis();
+            for (Iterator<TracedTransfer> it = transfers.values().iterator(); it.hasNext(); ) {
+                if (now - it.next().started > TRACED_TRANSFER_EXPIRY) {
+                    it.remove();
+                }
+            }
+            return transfers.size() < MAX_TRACED_TRANSFERS;
+        }
+
+        private String repository(TransferEvent event) {
+            return "repository." + event.getResource().getRepositoryId();
+        }
+    };
+
+    /**
+     * Returns number of transfers currently traced as JFR events
+     * @return
+     */
+    int getTracedTransfers() {
+        return transfers.size();
+    }
+
+    public ResolverMetrics(MavenResolver resolver,
+                           ConcurrentMap<LocalRepository, Deque<RepositorySystemSession>> sessions,
+                           PoolingHttpClientConnectionManager connectionManager) {
+        this.resolver = resolver;
+        this.sessions = sessions;
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * Listener to be set in sessions to collect per-repository statistics
+     * @return
+     */
+    public TransferListener getTransferListener() {
+        return transferListener;
+    }
+
+    public void increment(String name, long delta) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counters.putIfAbsent(name, new AtomicLong());
+            counter = counters.get(name);
+        }
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * Starts single execution of resolution phase, which is also traced as JFR event
+     * @param phase
+     * @param subject resolved artifact or metadata (converted to string only if JFR recording is on)
+     * @return
+     */
+    public Phase begin(String phase, Object subject) {
+        return new Phase(phase, UrlTrace.begin("mvn", phase, UrlTrace.isEnabled() ? String.valueOf(subject) : null));
+    }
+
+    /**
+     * Records duration of single execution of resolution phase
+     * @param phase
+     * @param start value of {@link System#nanoTime()} at the start of the phase
+     */
+    public void record(String phase, long start) {
+        long millis = (System.nanoTime() - start) / 1000000L;
+        Histogram histogram = latencies.get(phase);
+        if (histogram == null) {
+            latencies.putIfAbsent(phase, new Histogram());
+            histogram = latencies.get(phase);
+        }
+        histogram.record(millis);
+        increment("phase." + phase + ".count", 1L);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            result.put(e.getKey(), e.getValue().get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getLatencies() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Histogram> e : latencies.entrySet()) {
+            String prefix = "phase." + e.getKey();
+            result.put(prefix + ".p50", e.getValue().percentile(0.5));
+            result.put(prefix + ".p90", e.getValue().percentile(0.9));
+            result.put(prefix + ".p99", e.getValue().percentile(0.99));
+            result.put(prefix + ".max", e.getValue().max.get());
+        }
+        return result;
+    }
+
+    @Override
+    public int getPooledSessions() {
+        int count = 0;
+        for (Deque<RepositorySystemSession> deque : sessions.values()) {
+            count += deque.size();
+        }
+        return count;
+    }
+
+    @Override
+    public int getLeasedConnections() {
+        return connectionManager == null ? 0 : connectionManager.getTotalStats().getLeased();
+    }
+
+    @Override
+    public int getAvailableConnections() {
+        return connectionManager == null ? 0 : connectionManager.getTotalStats().getAvailable();
+    }
+
+    @Override
+    public int getPendingConnections() {
+        return connectionManager == null ? 0 : connectionManager.getTotalStats().getPending();
+    }
+
+    @Override
+    public void reset() {
+        counters.clear();
+        latencies.clear();
+    }
+
+    /**
+     * Single execution of resolution phase
+     */
+    public class Phase {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final UrlTrace trace;
+
+        Phase(String name, UrlTrace trace) {
+            this.name = name;
+            this.trace = trace;
+        }
+
+        public void end() {
+            record(name, start);
+            trace.end();
+        }
+    }
+
+    /**
+     * Histogram with fixed, exponential buckets (in milliseconds)
+     */
+    static class Histogram {
+
+        static final long[] BOUNDS = {
+                1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000, Long.MAX_VALUE
+        };
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long millis) {
+            int i = 0;
+            while (millis > BOUNDS[i]) {
+                i++;
+            }
+            buckets.incrementAndGet(i);
+            count.incrementAndGet();
+            long current;
+            while ((current = max.get()) < millis && !max.compareAndSet(current, millis)) {
+                // retry
+            }
+        }
+
+        long percentile(double p) {
+            long total = count.get();
+            if (total == 0L) {
+                return 0L;
+            }
+            long threshold = (long) Math.ceil(total * p);
+            long seen = 0L;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold) {
+                    return Math.min(BOUNDS[i], max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    /**
+     * JFR trace of single transfer
+     */
+    private static class TracedTransfer {
+        private final UrlTrace trace;
+        private final long started = System.currentTimeMillis();
+
+        TracedTransfer(UrlTrace trace) {
+            this.trace = trace;
+        }
+    }
+
+}
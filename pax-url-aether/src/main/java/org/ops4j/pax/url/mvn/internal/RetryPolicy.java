@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.ops4j.pax.url.mvn.MavenResolver.RetryChance;
+
+/**
+ * Decides whether (and when) failed resolution should be repeated. Each {@link RetryChance} has its own
+ * number of allowed retries, delays grow exponentially (with random jitter, so clients don't retry in
+ * lockstep) and all retries of a resolver are limited by a token bucket, so retries don't amplify an outage
+ * of a repository.
+ * @see org.ops4j.pax.url.mvn.ServiceConstants#PROPERTY_RETRY_HIGH
+ */
+public class RetryPolicy {
+
+    private final int high;
+    private final int low;
+    private final int unknown;
+    private final long backoff;
+    private final long maxBackoff;
+
+    private final int budget;
+    private double tokens;
+    private long refilled = System.nanoTime();
+
+    /**
+     * @param high retries allowed for {@link RetryChance#HIGH}
+     * @param low retries allowed for {@link RetryChance#LOW}
+     * @param unknown retries allowed for {@link RetryChance#UNKNOWN}
+     * @param backoff delay (ms) before first retry
+     * @param maxBackoff maximal delay (ms) between retries
+     * @param budget number of retries allowed per minute
+     */
+    public RetryPolicy(int high, int low, int unknown, long backoff, long maxBackoff, int budget) {
+        this.high = high;
+        this.low = low;
+        this.unknown = unknown;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.budget = budget;
+        this.tokens = budget;
+    }
+
+    /**
+     * Returns <code>true</code> if any failure may be retried
+     * @return
+     */
+    public boolean isEnabled() {
+        return (high > 0 || low > 0 || unknown > 0) && budget > 0;
+    }
+
+    /**
+     * Returns delay before next attempt or <code>-1</code> if the resolution shouldn't be retried
+     * @param chance retry hint of last failure
+     * @param retry number of the retry (starting with <code>1</code>)
+     * @return
+     */
+    public long nextDelay(RetryChance chance, int retry) {
+        int allowed;
+        switch (chance) {
+            case HIGH:
+                allowed = high;
+                break;
+            case LOW:
+                allowed = low;
+                break;
+            case UNKNOWN:
+                allowed = unknown;
+                break;
+            default:
+                allowed = 0;
+        }
+        if (retry > allowed || !acquire()) {
+            return -1L;
+        }
+        long delay = Math.min(maxBackoff, backoff << Math.min(retry - 1, 30));
+        // "equal jitter" - at least half of the delay
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private synchronized boolean acquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(budget, tokens + budget * (now - refilled) / 60e9);
+        refilled = now;
+        if (tokens < 1d) {
+            return false;
+        }
+        tokens -= 1d;
+        return true;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+import org.ops4j.pax.url.mvn.CancellationToken;
+import org.ops4j.pax.url.mvn.TransferProgressListener;
+import org.ops4j.pax.url.mvn.internal.wagon.ConfigurableHttpWagon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Passes Aether transfer events to registered {@link TransferProgressListener}s and cancels transfers
+ * of sessions with cancelled {@link CancellationToken} (kept in session data under
+ * <code>CancellationToken.class</code> key).
+ */
+public class TransferProgressDispatcher extends AbstractTransferListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransferProgressDispatcher.class);
+
+    private final List<TransferProgressListener> listeners = new CopyOnWriteArrayList<TransferProgressListener>();
+
+    /**
+     * Handles aborting HTTP requests of transfers in progress, registered in their tokens
+     */
+    private final ConcurrentMap<TransferResource, Closeable> aborts = new ConcurrentHashMap<TransferResource, Closeable>();
+
+    public void addListener(TransferProgressListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TransferProgressListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void transferInitiated(TransferEvent event) throws TransferCancelledException {
+        checkCancelled(event);
+    }
+
+    @Override
+    public void transferStarted(TransferEvent event) throws TransferCancelledException {
+        CancellationToken token = checkCancelled(event);
+        if (token != null) {
+            // called in the thread executing the request
+            final HttpUriRequest request = ConfigurableHttpWagon.currentRequest();
+            if (request != null) {
+                Closeable abort = new Closeable() {
+                    @Override
+                    public void close() {
+                        request.abort();
+                    }
+                };
+                aborts.put(event.getResource(), abort);
+                token.register(abort);
+            }
+        }
+        TransferResource resource = event.getResource();
+        for (TransferProgressListener listener : listeners) {
+            try {
+                listener.transferStarted(resource.getRepositoryId(), url(resource), resource.getContentLength());
+            } catch (CancellationException e) {
+                throw cancelled(resource, e);
+            } catch (RuntimeException e) {
+                LOG.warn("Transfer listener failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void transferProgressed(TransferEvent event) throws TransferCancelledException {
+        checkCancelled(event);
+        TransferResource resource = event.getResource();
+        for (TransferProgressListener listener : listeners) {
+            try {
+                listener.transferProgressed(resource.getRepositoryId(), url(resource),
+                        event.getTransferredBytes(), resource.getContentLength());
+            } catch (CancellationException e) {
+                throw cancelled(resource, e);
+            } catch (RuntimeException e) {
+                LOG.warn("Transfer listener failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void transferSucceeded(TransferEvent event) {
+        forget(event);
+        TransferResource resource = event.getResource();
+        for (TransferProgressListener listener : listeners) {
+            try {
+                listener.transferSucceeded(resource.getRepositoryId(), url(resource), event.getTransferredBytes());
+            } catch (RuntimeException e) {
+                LOG.warn("Transfer listener failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void transferFailed(TransferEvent event) {
+        forget(event);
+        TransferResource resource = event.getResource();
+        for (TransferProgressListener listener : listeners) {
+            try {
+                listener.transferFailed(resource.getRepositoryId(), url(resource), event.getException());
+            } catch (RuntimeException e) {
+                LOG.warn("Transfer listener failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Throws {@link TransferCancelledException} if the token of event's session is cancelled
+     * @param event
+     * @return the token or <code>null</code> if the session has none
+     */
+    private CancellationToken checkCancelled(TransferEvent event) throws TransferCancelledException {
+        CancellationToken token = (CancellationToken) event.getSession().getData().get(CancellationToken.class);
+        if (token != null && token.isCancelled()) {
+            throw cancelled(event.getResource(), null);
+        }
+        return token;
+    }
+
+    private void forget(TransferEvent event) {
+        Closeable abort = aborts.remove(event.getResource());
+        CancellationToken token = (CancellationToken) event.getSession().getData().get(CancellationToken.class);
+        if (abort != null && token != null) {
+            token.unregister(abort);
+        }
+    }
+
+    private static TransferCancelledException cancelled(TransferResource resource, Exception cause) {
+        return new TransferCancelledException("Transfer of " + url(resource) + " was cancelled", cause);
+    }
+
+    private static String url(TransferResource resource) {
+        return resource.getRepositoryUrl() + resource.getResourceName();
+    }
+
+}
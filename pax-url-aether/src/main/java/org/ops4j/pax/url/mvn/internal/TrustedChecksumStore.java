@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Trust-on-first-use store of SHA-1 digests of artifacts downloaded from repositories marked with
+ * {@link org.ops4j.pax.url.mvn.ServiceConstants#OPTION_TRUSTED}. Checksums of such artifacts are not
+ * downloaded from remote repository - instead the digest is calculated locally and compared with the
+ * digest recorded when given version of the artifact was downloaded for the first time.</p>
+ * <p>Digests are kept in <code>_pax-url-aether-trusted.properties</code> file next to the artifact.</p>
+ */
+public class TrustedChecksumStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrustedChecksumStore.class);
+
+    public static final String STORE_FILENAME = "_pax-url-aether-trusted.properties";
+
+    private final ConcurrentMap<File, Object> locks = new ConcurrentHashMap<File, Object>();
+
+    /**
+     * Verifies a file of just downloaded artifact. If there's no digest recorded, current digest is stored.
+     * If recorded digest doesn't match, artifact file is deleted and {@link IOException} is thrown.
+     * @param file artifact file in local repository
+     * @param version exact version of the artifact (timestamped version for SNAPSHOTs)
+     * @throws IOException
+     */
+    public void verify(File file, String version) throws IOException {
+        String actual = Checksums.sha1(file);
+        File store = new File(file.getParentFile(), STORE_FILENAME);
+        String key = file.getName() + "@" + version;
+
+        synchronized (lock(store)) {
+            Properties digests = load(store);
+            String known = digests.getProperty(key);
+            if (known == null) {
+                LOG.debug("Recording SHA-1 digest " + actual + " of " + file + " (" + version + ")");
+                digests.setProperty(key, actual);
+                save(store, digests);
+            } else if (!known.equals(actual)) {
+                if (!file.delete()) {
+                    LOG.warn("Can't remove {} with unexpected digest", file);
+                }
+                throw new IOException("SHA-1 digest of " + file.getName() + " (" + version + ") is " + actual
+                        + ", but " + known + " was recorded when it was first downloaded");
+            }
+        }
+    }
+
+    private Object lock(File store) {
+        Object lock = locks.get(store);
+        if (lock == null) {
+            locks.putIfAbsent(store, new Object());
+            lock = locks.get(store);
+        }
+        return lock;
+    }
+
+    private Properties load(File store) throws IOException {
+        Properties props = new Properties();
+        if (store.isFile()) {
+            try (InputStream is = new FileInputStream(store)) {
+                props.load(is);
+            }
+        }
+        return props;
+    }
+
+    private void save(File store, Properties props) throws IOException {
+        try (OutputStream os = new FileOutputStream(store)) {
+            props.store(os, "pax-url-aether trusted digests");
+        }
+    }
+
+}
@@ -85,6 +85,11 @@ public class MavenRepositoryURL
 
     private final boolean m_multi;
 
+    /**
+     * True if checksums of artifacts from this repository should be verified locally (trust on first use)
+     */
+    private final boolean m_trusted;
+
     /**
      * Creates a maven repository URL bases on a string spec. The path can be marked with @snapshots and/or @noreleases
      * (not case sensitive).
@@ -104,6 +109,7 @@ public class MavenRepositoryURL
         boolean snapshotEnabled = false;
         boolean releasesEnabled = true;
         boolean multi = false;
+        boolean trusted = false;
 
         String name = null;
         String update = null;
@@ -128,6 +134,10 @@ public class MavenRepositoryURL
             {
                 multi = true;
             }
+            else if( segment.equalsIgnoreCase( ServiceConstants.OPTION_TRUSTED ) )
+            {
+                trusted = true;
+            }
             else if( segment.startsWith( ServiceConstants.OPTION_ID + "=" ) )
             {
                 try {
@@ -198,6 +208,7 @@ public class MavenRepositoryURL
         m_snapshotsEnabled = snapshotEnabled;
         m_releasesEnabled = releasesEnabled;
         m_multi = multi;
+        m_trusted = trusted;
         if (name == null) {
             String warn = "Repository spec " + spec + " does not contain an identifier. Give your repository a name, for example: " + repositorySpec + "@id=MyName";
             LOG.warn( warn );
@@ -332,6 +343,16 @@ public class MavenRepositoryURL
         return m_multi;
     }
 
+    /**
+     * Getter.
+     *
+     * @return true if the repository is trusted and checksums are verified locally
+     */
+    public boolean isTrusted()
+    {
+        return m_trusted;
+    }
+
     /**
      * Getter.
      *
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal.wagon;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches <code>.sha1</code> checksum files concurrently with the artifact body. Aether requests
+ * checksums only after the body has been downloaded, so on high-latency links the checksum round-trip
+ * is a noticeable part of the time needed to get small artifacts. Wagons share one prefetcher, because
+ * the checksum is usually requested through another wagon instance than the body.
+ * <p>Checksums are prefetched only for artifacts (not POMs or metadata) whose checksums will be verified
+ * (see {@link #expect(String)}) and only while fewer than <code>threads</code> prefetches are running, so
+ * prefetching never takes more connections than main transfers leave free.</p>
+ */
+public class ChecksumPrefetcher implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ChecksumPrefetcher.class );
+
+    /**
+     * Prefetched checksums not taken within this time (e.g., with <code>ignore</code> checksum policy)
+     * are discarded.
+     */
+    private static final long EXPIRY = 60000L;
+
+    private static final String[] CHECKSUM_EXTENSIONS = { ".sha1", ".md5", ".asc" };
+
+    private final ExecutorService executor;
+    private final Semaphore running;
+    private final ConcurrentMap<String, Entry> prefetched = new ConcurrentHashMap<String, Entry>();
+    /** uris of artifacts whose checksums will be verified -&gt; time of registration */
+    private final ConcurrentMap<String, Long> expected = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Returns number of connections per route used for prefetching - a quarter of them, the rest is left
+     * to main transfers
+     * @param maxConnectionsPerRoute
+     * @return
+     */
+    public static int getThreads( int maxConnectionsPerRoute )
+    {
+        return Math.max( 1, maxConnectionsPerRoute / 4 );
+    }
+
+    /**
+     * @param threads maximal number of concurrently prefetched checksums
+     */
+    public ChecksumPrefetcher( int threads )
+    {
+        threads = Math.max( 1, threads );
+        running = new Semaphore( threads );
+        executor = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread( r, "pax-url-aether-checksums-" + counter.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    /**
+     * Returns <code>true</code> if given resource is an artifact other than POM (not a checksum or metadata)
+     * @param uri
+     * @return
+     */
+    public static boolean isArtifact( String uri )
+    {
+        for ( String ext : CHECKSUM_EXTENSIONS )
+        {
+            if ( uri.endsWith( ext ) )
+            {
+                return false;
+            }
+        }
+        return !uri.endsWith( ".pom" ) && !uri.substring( uri.lastIndexOf( '/' ) + 1 ).startsWith( "maven-metadata" );
+    }
+
+    /**
+     * Records that checksum of resource that is about to be downloaded will be verified (its repository's
+     * checksum policy is not <code>ignore</code>)
+     * @param uri
+     */
+    public void expect( String uri )
+    {
+        if ( isArtifact( uri ) )
+        {
+            expected.put( uri, System.currentTimeMillis() );
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if checksum of given resource should be prefetched
+     * @param uri
+     * @return
+     */
+    public boolean isPrefetchable( String uri )
+    {
+        return expected.remove( uri ) != null;
+    }
+
+    /**
+     * Schedules retrieval of a checksum available at <code>checksumUri</code>, unless all prefetching threads
+     * are busy
+     * @param checksumUri
+     * @param task
+     */
+    public void submit( String checksumUri, final Callable<Response> task )
+    {
+        expire();
+        if ( prefetched.containsKey( checksumUri ) || !running.tryAcquire() )
+        {
+            return;
+        }
+        try
+        {
+            prefetched.put( checksumUri, new Entry( executor.submit( new Callable<Response>() {
+                @Override
+                public Response call() throws Exception
+                {
+                    try
+                    {
+                        return task.call();
+                    }
+                    finally
+                    {
+                        running.release();
+                    }
+                }
+            } ) ) );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            running.release();
+            LOG.debug( "Checksum prefetcher is closed, not prefetching " + checksumUri );
+        }
+    }
+
+    /**
+     * Takes (and forgets) prefetched checksum for given <code>uri</code>
+     * @param uri
+     * @return
+     */
+    public Future<Response> take( String uri )
+    {
+        Entry entry = prefetched.remove( uri );
+        return entry == null ? null : entry.future;
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+        prefetched.clear();
+        expected.clear();
+    }
+
+    private void expire()
+    {
+        long now = System.currentTimeMillis();
+        for ( Iterator<Map.Entry<String, Entry>> it = prefetched.entrySet().iterator(); it.hasNext(); )
+        {
+            Entry entry = it.next().getValue();
+            if ( now - entry.created > EXPIRY )
+            {
+                entry.future.cancel( true );
+                it.remove();
+            }
+        }
+        for ( Iterator<Long> it = expected.values().iterator(); it.hasNext(); )
+        {
+            if ( now - it.next() > EXPIRY )
+            {
+                it.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Future<Response> future;
+        private final long created = System.currentTimeMillis();
+
+        Entry( Future<Response> future )
+        {
+            this.future = future;
+        }
+    }
+
+    /**
+     * Buffered response of checksum request
+     */
+    public static class Response {
+        private final int status;
+        private final String reason;
+        private final byte[] content;
+
+        public Response( int status, String reason, byte[] content )
+        {
+            this.status = status;
+            this.reason = reason;
+            this.content = content;
+        }
+
+        public int getStatus()
+        {
+            return status;
+        }
+
+        public String getReason()
+        {
+            return reason;
+        }
+
+        public byte[] getContent()
+        {
+            return content;
+        }
+    }
+
+}
@@ -19,9 +19,16 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.http.HttpException;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
 import org.apache.http.auth.AUTH;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
@@ -32,20 +39,26 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
 import org.apache.maven.wagon.ConnectionException;
 import org.apache.maven.wagon.authentication.AuthenticationException;
 import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.events.TransferEvent;
 import org.apache.maven.wagon.providers.http.HttpWagon;
 import org.apache.maven.wagon.proxy.ProxyInfo;
 import org.apache.maven.wagon.proxy.ProxyInfoProvider;
 import org.apache.maven.wagon.repository.Repository;
+import org.apache.maven.wagon.resource.Resource;
 import org.apache.maven.wagon.shared.http.AbstractHttpClientWagon;
 import org.apache.maven.wagon.shared.http.HttpMethodConfiguration;
 import org.ops4j.net.URLUtils;
@@ -58,10 +71,22 @@ import org.ops4j.net.URLUtils;
  */
 public class ConfigurableHttpWagon extends HttpWagon {
 
+    /**
+     * GET request being executed by current thread, so it can be aborted when the transfer is cancelled
+     */
+    private static final ThreadLocal<HttpUriRequest> CURRENT_REQUEST = new ThreadLocal<HttpUriRequest>();
+
     private final CloseableHttpClient client;
+    private final ChecksumPrefetcher prefetcher;
 
     public ConfigurableHttpWagon(CloseableHttpClient client, int readTimeout, int connectionTimeout) {
+        this(client, readTimeout, connectionTimeout, null);
+    }
+
+    public ConfigurableHttpWagon(CloseableHttpClient client, int readTimeout, int connectionTimeout,
+                                 ChecksumPrefetcher prefetcher) {
         this.client = client;
+        this.prefetcher = prefetcher;
         setReadTimeout(readTimeout);
         setTimeout(connectionTimeout);
     }
@@ -158,10 +183,141 @@ public class ConfigurableHttpWagon extends HttpWagon {
                 }
             }
         }
-        
+
+        if ( prefetcher != null && httpMethod instanceof HttpGet )
+        {
+            String uri = httpMethod.getURI().toString();
+            Future<ChecksumPrefetcher.Response> prefetched = prefetcher.take( uri );
+            if ( prefetched != null )
+            {
+                CloseableHttpResponse response = prefetchedResponse( uri, prefetched );
+                if ( response != null )
+                {
+                    return response;
+                }
+            }
+            else if ( prefetcher.isPrefetchable( uri ) )
+            {
+                prefetchChecksum( uri + ".sha1", userAgent, localContext );
+            }
+        }
+
+        if ( httpMethod instanceof HttpGet )
+        {
+            CURRENT_REQUEST.set( httpMethod );
+        }
         return client.execute( httpMethod, localContext );
     }
 
+    /**
+     * Returns GET request being executed by current thread (e.g., in transfer listener)
+     * @return
+     */
+    public static HttpUriRequest currentRequest()
+    {
+        return CURRENT_REQUEST.get();
+    }
+
+    @Override
+    protected void fireTransferProgress( TransferEvent transferEvent, byte[] buffer, int n )
+    {
+        try
+        {
+            super.fireTransferProgress( transferEvent, buffer, n );
+        }
+        catch ( RuntimeException e )
+        {
+            // transfer cancelled by listener - closing the stream would read remaining content
+            HttpUriRequest request = CURRENT_REQUEST.get();
+            if ( request != null )
+            {
+                request.abort();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected void cleanupGetTransfer( Resource resource )
+    {
+        CURRENT_REQUEST.remove();
+        super.cleanupGetTransfer( resource );
+    }
+
+    /**
+     * Starts downloading checksum of a resource while the resource itself is being downloaded.
+     * @param checksumUri
+     * @param userAgent
+     * @param context
+     */
+    private void prefetchChecksum( String checksumUri, String userAgent, HttpClientContext context )
+    {
+        final HttpGet checksumGet = new HttpGet( checksumUri );
+        setHeaders( checksumGet );
+        if ( userAgent != null )
+        {
+            checksumGet.setHeader( HTTP.USER_AGENT, userAgent );
+        }
+        // context isn't thread safe, but credentials provider and auth cache are
+        final HttpClientContext checksumContext = HttpClientContext.create();
+        checksumContext.setCredentialsProvider( context.getCredentialsProvider() );
+        checksumContext.setAuthCache( context.getAuthCache() );
+        checksumContext.setRequestConfig( context.getRequestConfig() );
+
+        prefetcher.submit( checksumUri, new Callable<ChecksumPrefetcher.Response>() {
+            @Override
+            public ChecksumPrefetcher.Response call() throws Exception
+            {
+                try ( CloseableHttpResponse response = client.execute( checksumGet, checksumContext ) )
+                {
+                    int status = response.getStatusLine().getStatusCode();
+                    byte[] content = response.getEntity() == null ? new byte[0]
+                            : EntityUtils.toByteArray( response.getEntity() );
+                    return new ChecksumPrefetcher.Response( status, response.getStatusLine().getReasonPhrase(), content );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Turns prefetched checksum into a response. Returns <code>null</code> if the checksum should be
+     * requested again (prefetch failed, timed out or ended with status other than 200 or 404).
+     * @param uri
+     * @param prefetched
+     * @return
+     */
+    private CloseableHttpResponse prefetchedResponse( String uri, Future<ChecksumPrefetcher.Response> prefetched )
+    {
+        ChecksumPrefetcher.Response response;
+        try
+        {
+            response = prefetched.get( getReadTimeout(), TimeUnit.MILLISECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch ( ExecutionException e )
+        {
+            fireTransferDebug( "Prefetching " + uri + " failed: " + e.getCause().getMessage() );
+            return null;
+        }
+        catch ( TimeoutException e )
+        {
+            prefetched.cancel( true );
+            return null;
+        }
+        if ( response.getStatus() != HttpStatus.SC_OK && response.getStatus() != HttpStatus.SC_NOT_FOUND )
+        {
+            return null;
+        }
+        BufferedHttpResponse result = new BufferedHttpResponse( response.getStatus(), response.getReason() );
+        result.setEntity( new ByteArrayEntity( response.getContent() ) );
+        result.setHeader( HTTP.CONTENT_LEN, Integer.toString( response.getContent().length ) );
+        return result;
+    }
+
     @Override
     public void connect(Repository repository, AuthenticationInfo authenticationInfo, ProxyInfoProvider proxyInfoProvider)
             throws ConnectionException, AuthenticationException {
@@ -228,5 +384,18 @@ public class ConfigurableHttpWagon extends HttpWagon {
         }
     }
 
+    /**
+     * Response which doesn't hold any connection
+     */
+    private static class BufferedHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        BufferedHttpResponse(int status, String reason) {
+            super(HttpVersion.HTTP_1_1, status, reason);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 
 }
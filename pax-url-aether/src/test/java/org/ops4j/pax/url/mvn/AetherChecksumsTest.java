@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.TrustedChecksumStore;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for checksum prefetching and trusted repositories
+ */
+public class AetherChecksumsTest {
+
+    private static final String JAR = "/repository/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.jar";
+    private static final String POM = "/repository/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.pom";
+
+    private static Server server;
+    private static int port;
+
+    private static volatile byte[] content = new byte[] { 0x42 };
+    private static final Map<String, AtomicInteger> HITS = new ConcurrentHashMap<>();
+    /** resources whose checksum was requested while the resource itself was being served */
+    private static final Map<String, Boolean> PREFETCHED = new ConcurrentHashMap<>();
+    private static volatile CountDownLatch checksumRequested;
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                try {
+                    if (request.getRequestURI().equals(JAR) || request.getRequestURI().equals(POM)) {
+                        if (checksumRequested.await(300, TimeUnit.MILLISECONDS)) {
+                            PREFETCHED.put(request.getRequestURI(), Boolean.TRUE);
+                        }
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(content);
+                    } else if (request.getRequestURI().equals(JAR + ".sha1")
+                            || request.getRequestURI().equals(POM + ".sha1")) {
+                        checksumRequested.countDown();
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(sha1(content).getBytes("UTF-8"));
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } finally {
+                    HITS.putIfAbsent(request.getRequestURI(), new AtomicInteger());
+                    HITS.get(request.getRequestURI()).incrementAndGet();
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Before
+    public void init() {
+        HITS.clear();
+        PREFETCHED.clear();
+        checksumRequested = new CountDownLatch(1);
+        content = new byte[] { 0x42 };
+    }
+
+    @Test
+    public void prefetchedChecksum() throws Exception {
+        Properties properties = basicProperties("");
+        properties.setProperty("pid.checksum.prefetch", "true");
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration(properties));
+
+        File file = resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+        resolver.close();
+
+        assertTrue(file.isFile());
+        assertThat(HITS.get(JAR).get(), equalTo(1));
+        assertThat(HITS.get(JAR + ".sha1").get(), equalTo(1));
+        assertThat(HITS.get(JAR + ".md5"), nullValue());
+        assertTrue(PREFETCHED.containsKey(JAR));
+    }
+
+    @Test
+    public void pomChecksumNotPrefetched() throws Exception {
+        Properties properties = basicProperties("");
+        properties.setProperty("pid.checksum.prefetch", "true");
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration(properties));
+
+        File file = resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "pom", "1");
+        resolver.close();
+
+        assertTrue(file.isFile());
+        assertThat(HITS.get(POM + ".sha1").get(), equalTo(1));
+        assertFalse(PREFETCHED.containsKey(POM));
+    }
+
+    @Test
+    public void checksumNotPrefetchedWhenIgnored() throws Exception {
+        Properties properties = basicProperties("");
+        properties.setProperty("pid.checksum.prefetch", "true");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration(properties));
+
+        File file = resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+        resolver.close();
+
+        assertTrue(file.isFile());
+        assertThat(HITS.get(JAR + ".sha1"), nullValue());
+    }
+
+    @Test
+    public void trustedRepository() throws Exception {
+        Properties properties = basicProperties("@trusted");
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration(properties));
+
+        File file = resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+        assertTrue(file.isFile());
+        assertThat(HITS.get(JAR + ".sha1"), nullValue());
+
+        // artifact found in local repository isn't verified again
+        File store = new File(file.getParentFile(), TrustedChecksumStore.STORE_FILENAME);
+        assertTrue(store.delete());
+        assertThat(resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1"), equalTo(file));
+        assertFalse(store.exists());
+        assertTrue(file.delete());
+        resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+        assertTrue(store.isFile());
+
+        // the same version is redeployed with different content
+        content = new byte[] { 0x42, 0x42 };
+        assertTrue(file.delete());
+        try {
+            resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+            fail("Should not accept artifact with changed digest");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("SHA-1"));
+        }
+        assertTrue(!file.exists());
+        resolver.close();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private Properties basicProperties(String options) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "1000");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo" + options);
+        properties.setProperty("pid.connection.retryCount", "0");
+        return properties;
+    }
+
+    private MavenConfigurationImpl configuration(Properties properties) {
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+    private static String sha1(byte[] bytes) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(bytes)) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
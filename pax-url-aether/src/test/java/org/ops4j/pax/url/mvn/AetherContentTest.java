@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.ArtifactContentCache;
+import org.ops4j.pax.url.mvn.internal.Connection;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for in-memory resolution of small artifacts
+ */
+public class AetherContentTest {
+
+    private static Server server;
+    private static int port;
+    private static final Map<String, AtomicInteger> HITS = new ConcurrentHashMap<String, AtomicInteger>();
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                String uri = request.getRequestURI();
+                HITS.putIfAbsent(uri, new AtomicInteger());
+                HITS.get(uri).incrementAndGet();
+                try {
+                    if (uri.endsWith(".xml") || uri.endsWith(".jar")) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        byte[] content = new byte[uri.endsWith(".jar") ? 1024 : 0];
+                        Arrays.fill(content, (byte) 0x42);
+                        response.getOutputStream().write(uri.endsWith(".xml")
+                                ? "<features />".getBytes(StandardCharsets.UTF_8) : content);
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void releasedContentServedFromMemory() throws Exception {
+        MavenConfigurationImpl config = mavenConfiguration(new Properties());
+        AetherBasedResolver resolver = new AetherBasedResolver(config);
+        String url = "mvn:org.ops4j/features/1.0/xml/features";
+        assertThat(content(resolver.resolveContent(url)), equalTo("<features />"));
+
+        // cached content of released artifact isn't read again
+        File file = new File(config.getLocalRepository().getFile(), "org/ops4j/features/1.0/features-1.0-features.xml");
+        long lastModified = file.lastModified();
+        Files.write(file.toPath(), "<FEATURES />".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified));
+        assertThat(content(resolver.resolveContent(url)), equalTo("<features />"));
+
+        // but re-installed artifact is
+        Files.write(file.toPath(), "<changed />".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified + 2000L));
+        assertThat(content(resolver.resolveContent(url)), equalTo("<changed />"));
+
+        // and artifact removed from local repository is resolved again
+        assertTrue(file.delete());
+        assertThat(content(resolver.resolveContent(url)), equalTo("<features />"));
+        assertTrue(file.isFile());
+        resolver.close();
+    }
+
+    @Test
+    public void releasesUpdatedWhenConfigured() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("pid.updateReleases", "true");
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(properties));
+        String url = "mvn:org.ops4j/features/4.0/xml/features";
+        String path = "/repository/org/ops4j/features/4.0/features-4.0-features.xml";
+        assertThat(content(resolver.resolveContent(url)), equalTo("<features />"));
+        assertThat(HITS.get(path).get(), equalTo(1));
+
+        assertThat(content(resolver.resolveContent(url)), equalTo("<features />"));
+        assertThat(HITS.get(path).get(), equalTo(2));
+        resolver.close();
+    }
+
+    @Test
+    public void evictedContentReadAgain() throws Exception {
+        MavenConfigurationImpl config = mavenConfiguration(new Properties());
+        AetherBasedResolver resolver = new AetherBasedResolver(config);
+        ArtifactContentCache cache = new ArtifactContentCache(65536L, 65536L, false);
+        String url = "mvn:org.ops4j/features/3.0/xml/features";
+        assertThat(content(cache.resolve(resolver, url).getBuffer()), equalTo("<features />"));
+
+        File file = new File(config.getLocalRepository().getFile(), "org/ops4j/features/3.0/features-3.0-features.xml");
+        Files.write(file.toPath(), "<changed />".getBytes(StandardCharsets.UTF_8));
+        cache.evict(file.getParentFile());
+        assertThat(content(cache.resolve(resolver, url).getBuffer()), equalTo("<changed />"));
+        resolver.close();
+    }
+
+    @Test
+    public void largeArtifactsNotReturned() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("pid.content.maxSize", "512");
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(properties));
+        assertNull(resolver.resolveContent("mvn:org.ops4j/lib/1.0"));
+        assertThat(resolver.resolve("mvn:org.ops4j/lib/1.0").length(), equalTo(1024L));
+        resolver.close();
+    }
+
+    @Test
+    public void contentReadThroughConnection() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(new Properties()));
+        String url = "mvn:org.ops4j/features/2.0/xml/features";
+        Connection connection = new Connection(new URL(null, url, new Handler()), resolver);
+        byte[] bytes = new byte[64];
+        int read = connection.getInputStream().read(bytes);
+        assertThat(new String(bytes, 0, read, StandardCharsets.UTF_8), equalTo("<features />"));
+        resolver.close();
+    }
+
+    private static String content(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private MavenConfigurationImpl mavenConfiguration(Properties properties) {
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.globalUpdatePolicy", "always");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for resolution of transitive dependencies
+ */
+public class AetherDependenciesTest {
+
+    private static Server server;
+    private static int port;
+
+    private static Map<String, AtomicInteger> HITS = new ConcurrentHashMap<String, AtomicInteger>();
+
+    /**
+     * Dependencies (artifactId:scope) of artifacts in <code>org.example</code> group
+     */
+    private static final Map<String, String[]> DEPENDENCIES = new ConcurrentHashMap<String, String[]>();
+
+    static {
+        DEPENDENCIES.put("a", new String[] { "b:compile", "c:test", "d:runtime" });
+        DEPENDENCIES.put("b", new String[] { "e:compile" });
+        DEPENDENCIES.put("c", new String[0]);
+        DEPENDENCIES.put("d", new String[] { "e:compile", "f:provided" });
+        DEPENDENCIES.put("e", new String[0]);
+        DEPENDENCIES.put("f", new String[0]);
+    }
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                String uri = request.getRequestURI();
+                HITS.putIfAbsent(uri, new AtomicInteger());
+                HITS.get(uri).incrementAndGet();
+                String[] segments = uri.split("/");
+                String artifactId = segments.length > 4 ? segments[4] : "";
+                if (uri.startsWith("/repository/org/example/") && DEPENDENCIES.containsKey(artifactId)
+                        && uri.endsWith(".pom")) {
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    response.getOutputStream().write(pom(artifactId).getBytes("UTF-8"));
+                } else if (uri.startsWith("/repository/org/example/") && DEPENDENCIES.containsKey(artifactId)
+                        && uri.endsWith(".jar")) {
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    response.getOutputStream().write(artifactId.getBytes("UTF-8"));
+                } else {
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                }
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Before
+    public void init() {
+        HITS.clear();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void allScopes() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        Map<String, File> files = resolver.resolveDependencies("mvn:org.example/a/1.0", null, null);
+        resolver.close();
+
+        assertThat(artifactIds(files), equalTo(Arrays.asList("a", "b", "e", "d")));
+        for (File file : files.values()) {
+            assertTrue(file.isFile());
+        }
+        // each descriptor is read once, even if the artifact is reachable through several paths
+        assertThat(HITS.get("/repository/org/example/e/1.0/e-1.0.pom").get(), equalTo(1));
+        assertThat(HITS.get("/repository/org/example/e/1.0/e-1.0.jar").get(), equalTo(1));
+    }
+
+    @Test
+    public void selectedScopesAndExclusions() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        Map<String, File> files = resolver.resolveDependencies("mvn:org.example/a/1.0",
+                Arrays.asList("compile", "runtime"), Collections.singletonList("org.example:e"));
+        Map<String, File> compile = resolver.resolveDependencies("mvn:org.example/a/1.0",
+                Collections.singletonList("compile"), null);
+        resolver.close();
+
+        assertThat(artifactIds(files), equalTo(Arrays.asList("a", "b", "d")));
+        assertThat(artifactIds(compile), equalTo(Arrays.asList("a", "b", "e")));
+        assertThat(files.keySet().iterator().next(), equalTo("org.example:a:jar:1.0"));
+    }
+
+    @Test
+    public void missingDependency() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        try {
+            resolver.resolveDependencies("mvn:org.example/x/1.0", null, null);
+            fail("Should not resolve");
+        } catch (IOException expected) {
+        }
+        resolver.close();
+    }
+
+    @Test
+    public void defaultRepositoriesUsedInPlace() throws Exception {
+        File defaultRepository = new File("target/" + UUID.randomUUID().toString());
+        File pom = new File(defaultRepository, "org/example/b/1.0/b-1.0.pom");
+        File jar = new File(defaultRepository, "org/example/b/1.0/b-1.0.jar");
+        assertTrue(pom.getParentFile().mkdirs());
+        Files.write(pom.toPath(), pom("b").getBytes("UTF-8"));
+        Files.write(jar.toPath(), "b".getBytes("UTF-8"));
+        Properties properties = new Properties();
+        properties.setProperty("pid.defaultRepositories", defaultRepository.toURI().toString() + "@id=default");
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(properties));
+        Map<String, File> files = resolver.resolveDependencies("mvn:org.example/a/1.0", null, null);
+        resolver.close();
+
+        assertThat(artifactIds(files), equalTo(Arrays.asList("a", "b", "e", "d")));
+        assertThat(files.get("org.example:b:jar:1.0").getCanonicalFile(), equalTo(jar.getCanonicalFile()));
+        assertNull(HITS.get("/repository/org/example/b/1.0/b-1.0.pom"));
+        assertNull(HITS.get("/repository/org/example/b/1.0/b-1.0.jar"));
+    }
+
+    @Test
+    public void onlyLocalRepositories() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        try {
+            resolver.resolveDependencies("mvn:localrepositories://@id=local!org.example/a/1.0", null, null);
+            fail("Should not resolve");
+        } catch (IOException expected) {
+        }
+        resolver.close();
+
+        assertTrue(HITS.isEmpty());
+    }
+
+    private static List<String> artifactIds(Map<String, File> files) {
+        List<String> ids = new ArrayList<String>();
+        for (String coordinates : files.keySet()) {
+            ids.add(coordinates.split(":")[1]);
+        }
+        return ids;
+    }
+
+    private static String pom(String artifactId) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<project>\n");
+        sb.append("  <modelVersion>4.0.0</modelVersion>\n");
+        sb.append("  <groupId>org.example</groupId>\n");
+        sb.append("  <artifactId>").append(artifactId).append("</artifactId>\n");
+        sb.append("  <version>1.0</version>\n");
+        sb.append("  <dependencies>\n");
+        for (String dependency : DEPENDENCIES.get(artifactId)) {
+            String[] as = dependency.split(":");
+            sb.append("    <dependency>\n");
+            sb.append("      <groupId>org.example</groupId>\n");
+            sb.append("      <artifactId>").append(as[0]).append("</artifactId>\n");
+            sb.append("      <version>1.0</version>\n");
+            sb.append("      <scope>").append(as[1]).append("</scope>\n");
+            sb.append("    </dependency>\n");
+        }
+        sb.append("  </dependencies>\n");
+        sb.append("</project>\n");
+        return sb.toString();
+    }
+
+    private MavenConfigurationImpl mavenConfiguration() {
+        return mavenConfiguration(new Properties());
+    }
+
+    private MavenConfigurationImpl mavenConfiguration(Properties properties) {
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "1000");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
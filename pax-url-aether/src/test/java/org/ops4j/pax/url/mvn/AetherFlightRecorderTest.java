@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for Java Flight Recorder events emitted during resolution
+ */
+public class AetherFlightRecorderTest {
+
+    private static final String JAR = "/repository/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.jar";
+
+    private static Server server;
+    private static int port;
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                try {
+                    if (request.getRequestURI().equals(JAR)) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(new byte[] { 0x42, 0x42, 0x42 });
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Test
+    public void resolutionPhasesAndTransfersAreRecorded() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration("target/" + UUID.randomUUID().toString()));
+        File dump = new File("target/" + UUID.randomUUID().toString() + ".jfr");
+
+        Recording recording = new Recording();
+        recording.enable("org.ops4j.pax.url.Operation").withThreshold(Duration.ZERO);
+        recording.start();
+        try {
+            resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+        } finally {
+            recording.stop();
+            recording.dump(dump.toPath());
+            recording.close();
+            resolver.close();
+        }
+
+        Set<String> operations = new HashSet<>();
+        boolean transferred = false;
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+            assertThat(event.getString("protocol"), equalTo("mvn"));
+            operations.add(event.getString("operation"));
+            if ("transfer".equals(event.getString("operation"))
+                    && event.getString("url").endsWith("pax-web-api-1.jar")) {
+                assertThat(event.getLong("bytes"), equalTo(3L));
+                transferred = true;
+            }
+        }
+        assertTrue(operations.contains("resolve"));
+        assertTrue(operations.contains("remote"));
+        assertTrue(transferred);
+        dump.delete();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private MavenConfigurationImpl configuration(String localRepository) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", localRepository);
+        properties.setProperty("pid.timeout", "5000");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
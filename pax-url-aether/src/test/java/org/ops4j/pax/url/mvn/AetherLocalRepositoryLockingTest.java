@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for local repository shared by many resolvers
+ */
+public class AetherLocalRepositoryLockingTest {
+
+    private static final String JAR = "/repository/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.jar";
+
+    private static Server server;
+    private static int port;
+
+    private static final Map<String, AtomicInteger> HITS = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                try {
+                    if (request.getRequestURI().equals(JAR)) {
+                        // slow download, so other resolvers have to wait
+                        Thread.sleep(500);
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(0x42);
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } catch (InterruptedException e) {
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                } finally {
+                    HITS.putIfAbsent(request.getRequestURI(), new AtomicInteger());
+                    HITS.get(request.getRequestURI()).incrementAndGet();
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Test
+    public void concurrentResolversDownloadOnce() throws Exception {
+        String localRepository = "target/" + UUID.randomUUID().toString();
+        List<AetherBasedResolver> resolvers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            resolvers.add(new AetherBasedResolver(configuration(localRepository)));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(resolvers.size());
+        List<Future<File>> results = new ArrayList<>();
+        for (final AetherBasedResolver resolver : resolvers) {
+            results.add(pool.submit(new Callable<File>() {
+                @Override
+                public File call() throws Exception {
+                    return resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+                }
+            }));
+        }
+        for (Future<File> result : results) {
+            File file = result.get();
+            assertTrue(file.isFile());
+            assertThat(file.length(), equalTo(1L));
+        }
+        pool.shutdown();
+        for (AetherBasedResolver resolver : resolvers) {
+            resolver.close();
+        }
+
+        assertThat(HITS.get(JAR).get(), equalTo(1));
+        assertTrue(new File(localRepository, ".locks").isDirectory());
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private MavenConfigurationImpl configuration(String localRepository) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", localRepository);
+        properties.setProperty("pid.localRepository.locking", "true");
+        properties.setProperty("pid.timeout", "5000");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
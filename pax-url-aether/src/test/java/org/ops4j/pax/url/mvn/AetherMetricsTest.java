@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for resolver metrics
+ */
+public class AetherMetricsTest {
+
+    private static final String JAR = "/repository/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.jar";
+
+    private static Server server;
+    private static int port;
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                try {
+                    if (request.getRequestURI().equals(JAR)) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(0x42);
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Test
+    public void countersAndLatencies() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration("target/" + UUID.randomUUID().toString()));
+
+        resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+        try {
+            resolver.resolve("org.ops4j.pax.web", "pax-web-missing", "", "jar", "1");
+            fail("Should not resolve missing artifact");
+        } catch (IOException expected) {
+        }
+
+        Map<String, Long> counters = resolver.getMetrics().getCounters();
+        assertThat(counters.get("resolve.success"), equalTo(1L));
+        assertThat(counters.get("phase.resolve.count"), equalTo(2L));
+        assertThat(counters.get("phase.remote.count"), equalTo(2L));
+        // both artifacts were looked up in local repository before waiting for remote resolution
+        assertThat(counters.get("phase.local.count"), equalTo(2L));
+        assertThat(counters.get("repository.single-repo.bytes"), equalTo(1L));
+        assertTrue(counters.get("repository.single-repo.requests") >= 2L);
+        assertTrue(counters.get("repository.single-repo.failures.NEVER") >= 1L);
+        assertTrue(resolver.getMetrics().getLatencies().containsKey("phase.remote.p99"));
+        assertThat(resolver.getMetrics().getLeasedConnections(), equalTo(0));
+
+        // the metrics are valid MXBean
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(ResolverMetricsMXBean.OBJECT_NAME + ",test=true");
+        server.registerMBean(resolver.getMetrics(), name);
+        try {
+            assertTrue(server.getAttribute(name, "Counters") instanceof TabularData);
+            server.invoke(name, "reset", null, null);
+            assertTrue(resolver.getMetrics().getCounters().isEmpty());
+        } finally {
+            server.unregisterMBean(name);
+        }
+        resolver.close();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private MavenConfigurationImpl configuration(String localRepository) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", localRepository);
+        properties.setProperty("pid.timeout", "5000");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.ArtifactPrefetcher;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for background prefetching of artifacts
+ */
+public class AetherPrefetchTest {
+
+    private static Server server;
+    private static int port;
+
+    /**
+     * Released when requests for <code>slow</code> artifacts may be answered
+     */
+    private static volatile CountDownLatch slow = new CountDownLatch(0);
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                String uri = request.getRequestURI();
+                try {
+                    if (uri.endsWith(".jar") && !uri.contains("/missing/")) {
+                        if (uri.contains("/slow/")) {
+                            try {
+                                slow.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                        }
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(0x42);
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void prefetchedArtifactsAreInLocalRepository() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("pid.prefetch.rate", "0");
+        MavenConfigurationImpl config = mavenConfiguration(properties);
+        AetherBasedResolver resolver = new AetherBasedResolver(config);
+        Map<String, Exception> failures = resolver.prefetch(Arrays.asList(
+                "mvn:org.ops4j/a/1.0",
+                "mvn:org.ops4j/b/1.0",
+                "mvn:org.ops4j/missing/1.0")).get(10, TimeUnit.SECONDS);
+        resolver.close();
+
+        assertThat(failures.size(), equalTo(1));
+        assertTrue(failures.containsKey("mvn:org.ops4j/missing/1.0"));
+        File repository = config.getLocalRepository().getFile();
+        assertTrue(new File(repository, "org/ops4j/a/1.0/a-1.0.jar").isFile());
+        assertTrue(new File(repository, "org/ops4j/b/1.0/b-1.0.jar").isFile());
+    }
+
+    @Test
+    public void prefetchingIsThrottled() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("pid.prefetch.threads", "4");
+        properties.setProperty("pid.prefetch.rate", "5");
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(properties));
+        long start = System.currentTimeMillis();
+        Map<String, Exception> failures = resolver.prefetch(Arrays.asList(
+                "mvn:org.ops4j/a/2.0",
+                "mvn:org.ops4j/b/2.0",
+                "mvn:org.ops4j/c/2.0",
+                "mvn:org.ops4j/d/2.0")).get(10, TimeUnit.SECONDS);
+        long time = System.currentTimeMillis() - start;
+        resolver.close();
+
+        assertTrue(failures.isEmpty());
+        // 4 resolutions started at 5 per second - last one not earlier than after 600ms
+        assertTrue("Prefetching took " + time + "ms", time >= 550);
+    }
+
+    @Test
+    public void closingResolverStopsPrefetching() throws Exception {
+        slow = new CountDownLatch(1);
+        Properties properties = new Properties();
+        properties.setProperty("pid.prefetch.threads", "1");
+        properties.setProperty("pid.prefetch.rate", "0");
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(properties));
+        Future<Map<String, Exception>> result = resolver.prefetch(Arrays.asList(
+                "mvn:org.ops4j/slow/1.0",
+                "mvn:org.ops4j/a/3.0"));
+        Thread.sleep(200);
+        assertFalse(result.isDone());
+        resolver.close();
+        slow.countDown();
+
+        Map<String, Exception> failures = result.get(10, TimeUnit.SECONDS);
+        assertThat(failures.get("mvn:org.ops4j/a/3.0"), instanceOf(CancellationException.class));
+    }
+
+    @Test
+    public void readWarmUpList() throws Exception {
+        File file = new File("target/" + UUID.randomUUID().toString() + ".txt");
+        Files.write(file.toPath(), Arrays.asList(
+                "# artifacts of next upgrade",
+                "mvn:org.ops4j/a/1.0",
+                "",
+                "  mvn:org.ops4j/b/1.0/xml/features # features"), StandardCharsets.UTF_8);
+        List<String> urls = ArtifactPrefetcher.readUrls(file);
+
+        assertThat(urls, equalTo(Arrays.asList("mvn:org.ops4j/a/1.0", "mvn:org.ops4j/b/1.0/xml/features")));
+    }
+
+    private MavenConfigurationImpl mavenConfiguration(Properties properties) {
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "5000");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.globalUpdatePolicy", "always");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
@@ -15,7 +15,9 @@
  */
 package org.ops4j.pax.url.mvn;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -41,6 +43,7 @@ import org.ops4j.util.property.PropertiesPropertyResolver;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test cases for connection and read timeouts
@@ -85,8 +88,11 @@ public class AetherReleasesUpdatesTest {
         final MavenConfigurationImpl mavenConfiguration = basicMavenConfiguration(RepositoryPolicy.UPDATE_POLICY_ALWAYS, true);
         AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration);
 
-        resolver.resolve("org.ops4j.pax.web", "pax-web-api",
+        File file = resolver.resolve("org.ops4j.pax.web", "pax-web-api",
                 "", "jar", "1");
+        // tracking information collected with write-behind is written when resolution's session is released
+        File tracking = new File(file.getParentFile(), "_pax-url-aether-remote.repositories");
+        assertTrue(new String(Files.readAllBytes(tracking.toPath()), "UTF-8").contains("pax-web-api-1.jar>"));
         resolver.resolve("org.ops4j.pax.web", "pax-web-api",
                 "", "jar", "1");
         resolver.resolve("org.ops4j.pax.web", "pax-web-api",
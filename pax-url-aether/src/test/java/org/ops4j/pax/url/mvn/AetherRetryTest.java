@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for retries performed by the resolver itself
+ */
+public class AetherRetryTest {
+
+    private static Server server;
+    private static int port;
+
+    /**
+     * Number of initial requests for given artifact which time out
+     */
+    private static volatile int slowResponses;
+    private static Map<String, AtomicInteger> HITS = new ConcurrentHashMap<String, AtomicInteger>();
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                String uri = request.getRequestURI();
+                try {
+                    if (uri.endsWith(".jar")) {
+                        HITS.putIfAbsent(uri, new AtomicInteger());
+                        if (HITS.get(uri).incrementAndGet() <= slowResponses) {
+                            try {
+                                Thread.sleep(1000);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                        }
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(0x42);
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Before
+    public void init() {
+        HITS.clear();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void noRetriesByDefault() throws Exception {
+        slowResponses = 1;
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(new Properties()));
+        try {
+            resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1.0");
+            fail("Should time out");
+        } catch (IOException expected) {
+        }
+        resolver.close();
+
+        assertThat(hits("1.0"), equalTo(1));
+    }
+
+    @Test
+    public void timeoutIsRetried() throws Exception {
+        slowResponses = 2;
+        Properties properties = new Properties();
+        properties.setProperty("pid.retry.low", "2");
+        properties.setProperty("pid.retry.backoff", "10");
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(properties));
+        assertTrue(resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1.0").isFile());
+        resolver.close();
+
+        assertThat(hits("1.0"), equalTo(3));
+    }
+
+    @Test
+    public void retriesAreLimitedByBudget() throws Exception {
+        slowResponses = 5;
+        Properties properties = new Properties();
+        properties.setProperty("pid.retry.low", "2");
+        properties.setProperty("pid.retry.backoff", "10");
+        properties.setProperty("pid.retry.budget", "1");
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(properties));
+        for (String version : new String[] { "1.0", "2.0" }) {
+            try {
+                resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/" + version);
+                fail("Should time out");
+            } catch (IOException expected) {
+            }
+        }
+        resolver.close();
+
+        assertThat(hits("1.0"), equalTo(2));
+        assertThat(hits("2.0"), equalTo(1));
+    }
+
+    private int hits(String version) {
+        AtomicInteger hits = HITS.get("/repository/org/ops4j/pax/web/pax-web-api/" + version
+                + "/pax-web-api-" + version + ".jar");
+        return hits == null ? 0 : hits.get();
+    }
+
+    private MavenConfigurationImpl mavenConfiguration(Properties properties) {
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "500");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.globalUpdatePolicy", "always");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for scheduling of remote resolutions
+ */
+public class AetherSchedulingTest {
+
+    private static final String SLOW = "/repository/org/ops4j/pax/web/pax-web-slow/1/pax-web-slow-1.jar";
+
+    private static Server server;
+    private static int port;
+
+    private static volatile CountDownLatch slowRequested;
+    private static volatile CountDownLatch slowReleased;
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                try {
+                    if (request.getRequestURI().equals(SLOW)) {
+                        slowRequested.countDown();
+                        slowReleased.await(10, TimeUnit.SECONDS);
+                    }
+                    if (request.getRequestURI().endsWith(".jar")) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(0x42);
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void localArtifactDoesNotWaitForDownloads() throws Exception {
+        slowRequested = new CountDownLatch(1);
+        slowReleased = new CountDownLatch(1);
+        final AetherBasedResolver resolver = new AetherBasedResolver(configuration());
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            File local = resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+
+            // the only permit is taken by download of another artifact
+            Future<File> slow = executor.submit(new Callable<File>() {
+                @Override
+                public File call() throws Exception {
+                    return resolver.resolve("org.ops4j.pax.web", "pax-web-slow", "", "jar", "1");
+                }
+            });
+            assertTrue(slowRequested.await(5, TimeUnit.SECONDS));
+
+            Future<File> again = executor.submit(new Callable<File>() {
+                @Override
+                public File call() throws Exception {
+                    return resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+                }
+            });
+            assertThat(again.get(5, TimeUnit.SECONDS), equalTo(local));
+
+            slowReleased.countDown();
+            assertTrue(slow.get(5, TimeUnit.SECONDS).isFile());
+        } finally {
+            slowReleased.countDown();
+            executor.shutdownNow();
+            resolver.close();
+        }
+    }
+
+    private MavenConfigurationImpl configuration() {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "10000");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.scheduler.permits", "1");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
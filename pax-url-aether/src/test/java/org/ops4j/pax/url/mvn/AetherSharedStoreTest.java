@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for content-addressable store shared by many local repositories
+ */
+public class AetherSharedStoreTest {
+
+    private static final String JAR = "/repository/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.jar";
+    private static final String CORRUPTED_JAR = "/repository/org/ops4j/pax/web/pax-web-spi/1/pax-web-spi-1.jar";
+    /** SHA-1 of single <code>0x42</code> byte */
+    private static final String SHA1 = "ae4f281df5a5d0ff3cad6371f76d5c29b6d953ec";
+
+    private static Server server;
+    private static int port;
+
+    private static final Map<String, AtomicInteger> HITS = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                try {
+                    if (request.getRequestURI().equals(JAR) || request.getRequestURI().equals(CORRUPTED_JAR)) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(request.getRequestURI().equals(JAR) ? 0x42 : 0x43);
+                    } else if (request.getRequestURI().equals(JAR + ".sha1")
+                            || request.getRequestURI().equals(CORRUPTED_JAR + ".sha1")) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(SHA1.getBytes("UTF-8"));
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    HITS.putIfAbsent(request.getRequestURI(), new AtomicInteger());
+                    HITS.get(request.getRequestURI()).incrementAndGet();
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Test
+    public void artifactsLinkedFromSharedStore() throws Exception {
+        String sharedStore = "target/" + UUID.randomUUID().toString();
+        AetherBasedResolver resolver1 = new AetherBasedResolver(configuration("target/" + UUID.randomUUID().toString(), sharedStore));
+        AetherBasedResolver resolver2 = new AetherBasedResolver(configuration("target/" + UUID.randomUUID().toString(), sharedStore));
+
+        File f1 = resolver1.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+        File f2 = resolver2.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1");
+        resolver1.close();
+        resolver2.close();
+
+        assertThat(HITS.get(JAR).get(), equalTo(1));
+        assertThat(f2, not(equalTo(f1)));
+        assertThat(Files.readAllBytes(f2.toPath()), equalTo(new byte[] { 0x42 }));
+        assertTrue(new File(sharedStore, "index/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.jar.sha1").isFile());
+    }
+
+    @Test
+    public void corruptedArtifactsNotShared() throws Exception {
+        String sharedStore = "target/" + UUID.randomUUID().toString();
+        AetherBasedResolver resolver1 = new AetherBasedResolver(configuration("target/" + UUID.randomUUID().toString(), sharedStore));
+        AetherBasedResolver resolver2 = new AetherBasedResolver(configuration("target/" + UUID.randomUUID().toString(), sharedStore));
+
+        // "warn" policy accepts the corrupted artifact, but it must not be served to other local repositories
+        File f1 = resolver1.resolve("org.ops4j.pax.web", "pax-web-spi", "", "jar", "1");
+        int downloads = HITS.get(CORRUPTED_JAR).get();
+        File f2 = resolver2.resolve("org.ops4j.pax.web", "pax-web-spi", "", "jar", "1");
+        resolver1.close();
+        resolver2.close();
+
+        assertThat(Files.readAllBytes(f1.toPath()), equalTo(new byte[] { 0x43 }));
+        // second local repository had to download the artifact again
+        assertThat(HITS.get(CORRUPTED_JAR).get(), equalTo(2 * downloads));
+        assertFalse(Files.isSameFile(f1.toPath(), f2.toPath()));
+        assertFalse(new File(sharedStore, "index/org/ops4j/pax/web/pax-web-spi/1/pax-web-spi-1.jar.sha1").exists());
+        assertFalse(new File(sharedStore, "blobs").exists());
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private MavenConfigurationImpl configuration(String localRepository, String sharedStore) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", localRepository);
+        properties.setProperty("pid.sharedStore", sharedStore);
+        properties.setProperty("pid.timeout", "5000");
+        properties.setProperty("pid.globalChecksumPolicy", "warn");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
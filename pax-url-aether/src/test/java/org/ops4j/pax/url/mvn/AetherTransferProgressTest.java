@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for transfer progress listeners and cancellation of resolution
+ */
+public class AetherTransferProgressTest {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final int SMALL_CHUNKS = 2;
+    private static final int LARGE_CHUNKS = 4;
+
+    private static Server server;
+    private static int port;
+
+    /** Bytes of large artifact written by the server */
+    private static final AtomicLong written = new AtomicLong();
+    private static volatile CountDownLatch finished;
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                baseRequest.setHandled(true);
+                String uri = request.getRequestURI();
+                if (uri.endsWith("/small-1.0.jar")) {
+                    serve(response, SMALL_CHUNKS, 0L, null);
+                } else if (uri.endsWith("/large-1.0.jar")) {
+                    try {
+                        // stalls between chunks, so cancellation can't wait for next progress event
+                        serve(response, LARGE_CHUNKS, 2000L, written);
+                    } catch (IOException ignored) {
+                        // client went away
+                    } finally {
+                        finished.countDown();
+                    }
+                } else {
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    private static void serve(HttpServletResponse response, int chunks, long delay, AtomicLong counter)
+            throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLength(chunks * CHUNK);
+        OutputStream os = response.getOutputStream();
+        byte[] chunk = new byte[CHUNK];
+        for (int i = 0; i < chunks; i++) {
+            os.write(chunk);
+            os.flush();
+            if (counter != null) {
+                counter.addAndGet(CHUNK);
+            }
+            if (delay > 0L) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+    }
+
+    @Before
+    public void init() {
+        written.set(0L);
+        finished = new CountDownLatch(1);
+    }
+
+    @Test
+    public void listenersReceiveProgress() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(basicMavenConfiguration());
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final AtomicLong progress = new AtomicLong();
+        resolver.addTransferListener(new TransferProgressListener() {
+            @Override
+            public void transferStarted(String repositoryId, String url, long contentLength) {
+                if (url.endsWith(".jar")) {
+                    events.add("started " + repositoryId + " " + contentLength);
+                }
+            }
+
+            @Override
+            public void transferProgressed(String repositoryId, String url, long transferred, long contentLength) {
+                if (url.endsWith(".jar")) {
+                    progress.set(transferred);
+                }
+            }
+
+            @Override
+            public void transferSucceeded(String repositoryId, String url, long transferred) {
+                events.add("succeeded " + url.substring(url.lastIndexOf('/') + 1) + " " + transferred);
+            }
+
+            @Override
+            public void transferFailed(String repositoryId, String url, Exception exception) {
+                // checksums aren't available
+            }
+        });
+
+        resolver.resolve("mvn:org.ops4j.pax.url/small/1.0");
+        resolver.close();
+
+        assertThat(events.size(), equalTo(2));
+        assertThat(events.get(0), equalTo("started single-repo " + SMALL_CHUNKS * CHUNK));
+        assertThat(events.get(1), equalTo("succeeded small-1.0.jar " + SMALL_CHUNKS * CHUNK));
+        assertThat(progress.get(), equalTo((long) SMALL_CHUNKS * CHUNK));
+    }
+
+    @Test
+    public void cancelTransferInProgress() throws Exception {
+        final AetherBasedResolver resolver = new AetherBasedResolver(basicMavenConfiguration());
+        final CountDownLatch started = new CountDownLatch(1);
+        resolver.addTransferListener(new TransferProgressAdapter() {
+            @Override
+            public void transferProgressed(String repositoryId, String url, long transferred, long contentLength) {
+                started.countDown();
+            }
+        });
+
+        final CancellationToken token = new CancellationToken();
+        final AtomicReference<Exception> result = new AtomicReference<>();
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    resolver.resolve("mvn:org.ops4j.pax.url/large/1.0", null, token);
+                } catch (Exception e) {
+                    result.set(e);
+                }
+            }
+        });
+        t.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        long cancelled = System.currentTimeMillis();
+        token.cancel();
+        t.join(10000L);
+        assertFalse(t.isAlive());
+        assertTrue(System.currentTimeMillis() - cancelled < 1000L);
+        assertThat(result.get(), instanceOf(InterruptedIOException.class));
+
+        // connection was closed, not drained
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(written.get() < LARGE_CHUNKS * CHUNK);
+        resolver.close();
+    }
+
+    @Test
+    public void cancelledTokenPreventsResolution() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(basicMavenConfiguration());
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        try {
+            resolver.resolve("mvn:org.ops4j.pax.url/small/1.0", null, token);
+            fail("Should fail with InterruptedIOException");
+        } catch (InterruptedIOException expected) {
+        }
+        resolver.close();
+    }
+
+    @Test
+    public void nullTokenIsNotCancellable() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(basicMavenConfiguration());
+        assertTrue(resolver.resolve("mvn:org.ops4j.pax.url/small/1.0", null, null).isFile());
+        assertTrue(resolver.resolve("mvn:org.ops4j.pax.url/small/1.0", null, null,
+                MavenResolver2.Priority.CRITICAL).isFile());
+        resolver.close();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private static class TransferProgressAdapter implements TransferProgressListener {
+        @Override
+        public void transferStarted(String repositoryId, String url, long contentLength) {
+        }
+
+        @Override
+        public void transferProgressed(String repositoryId, String url, long transferred, long contentLength) {
+        }
+
+        @Override
+        public void transferSucceeded(String repositoryId, String url, long transferred) {
+        }
+
+        @Override
+        public void transferFailed(String repositoryId, String url, Exception exception) {
+        }
+    }
+
+    private MavenConfigurationImpl basicMavenConfiguration() {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "5000");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        mavenConfiguration.setSettings(settingsWithProxy());
+        return mavenConfiguration;
+    }
+
+    private Settings settingsWithProxy() {
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+
+        return settings;
+    }
+
+}
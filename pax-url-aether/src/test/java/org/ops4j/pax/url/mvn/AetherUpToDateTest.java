@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.Checksums;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for checking whether artifacts changed without downloading them
+ */
+public class AetherUpToDateTest {
+
+    private static final String SNAPSHOT_DIR = "/repository/org/ops4j/pax/web/pax-web-api/1-SNAPSHOT/";
+    private static final String RELEASE_DIR = "/repository/org/ops4j/pax/web/pax-web-api/1.0/";
+
+    private static Server server;
+    private static int port;
+
+    private static volatile boolean someoneDeploysNewerSnapshot = false;
+    private static Map<String, Integer> HITS = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                String uri = request.getRequestURI();
+                try {
+                    if (uri.endsWith("1-SNAPSHOT/maven-metadata.xml")) {
+                        String ts1 = someoneDeploysNewerSnapshot ? "20161017111010" : "20161017101010";
+                        String ts2 = someoneDeploysNewerSnapshot ? "20161017.111010" : "20161017.101010";
+                        String nr = someoneDeploysNewerSnapshot ? "2" : "1";
+
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        StringWriter sw = new StringWriter();
+                        sw.append("<metadata>\n");
+                        sw.append("  <groupId>org.ops4j.pax.web</groupId>\n");
+                        sw.append("  <artifactId>pax-web-api</artifactId>\n");
+                        sw.append("  <version>1-SNAPSHOT</version>\n");
+                        sw.append("  <versioning>\n");
+                        sw.append("    <snapshot>\n");
+                        sw.append("      <timestamp>" + ts2 + "</timestamp>\n");
+                        sw.append("      <buildNumber>" + nr + "</buildNumber>\n");
+                        sw.append("    </snapshot>\n");
+                        sw.append("    <lastUpdated>" + ts1 + "</lastUpdated>\n");
+                        sw.append("    <snapshotVersions>\n");
+                        sw.append("      <snapshotVersion>\n");
+                        sw.append("        <extension>jar</extension>\n");
+                        sw.append("        <value>1-" + ts2 + "-" + nr + "</value>\n");
+                        sw.append("        <updated>" + ts1 + "</updated>\n");
+                        sw.append("      </snapshotVersion>\n");
+                        sw.append("    </snapshotVersions>\n");
+                        sw.append("  </versioning>\n");
+                        sw.append("</metadata>\n");
+
+                        response.getOutputStream().write(sw.toString().getBytes("UTF-8"));
+                    } else if (uri.contains("/pax-web-api/") && uri.endsWith(".jar")) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(content(uri).getBytes("UTF-8"));
+                    } else if (uri.contains("/pax-web-api/") && uri.endsWith(".jar.sha1")) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(sha1(content(uri)).getBytes("UTF-8"));
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    Integer hits = HITS.get(uri);
+                    HITS.put(uri, hits == null ? 1 : hits + 1);
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Before
+    public void init() {
+        HITS.clear();
+        someoneDeploysNewerSnapshot = false;
+    }
+
+    @Test
+    public void snapshotCheckedByTimestamp() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(basicMavenConfiguration());
+        long deployed = utc("20161017.101010");
+
+        assertTrue(resolver.isUpToDate("mvn:org.ops4j.pax.web/pax-web-api/1-SNAPSHOT", null, deployed));
+        someoneDeploysNewerSnapshot = true;
+        assertFalse(resolver.isUpToDate("mvn:org.ops4j.pax.web/pax-web-api/1-SNAPSHOT", null, deployed));
+        resolver.close();
+
+        assertThat(HITS.get(SNAPSHOT_DIR + "maven-metadata.xml"), equalTo(2));
+        for (String uri : HITS.keySet()) {
+            assertFalse(uri.contains(".jar"));
+        }
+    }
+
+    @Test
+    public void snapshotCheckedByChecksum() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(basicMavenConfiguration());
+
+        File file = resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1-SNAPSHOT");
+        String checksum = Checksums.sha1(file);
+        assertTrue(resolver.isUpToDate("org.ops4j.pax.web", "pax-web-api", "", "jar", "1-SNAPSHOT", checksum, 0L));
+        someoneDeploysNewerSnapshot = true;
+        assertFalse(resolver.isUpToDate("org.ops4j.pax.web", "pax-web-api", "", "jar", "1-SNAPSHOT", checksum, 0L));
+        resolver.close();
+
+        assertThat(HITS.get(SNAPSHOT_DIR + "pax-web-api-1-20161017.101010-1.jar"), equalTo(1));
+        assertThat(HITS.get(SNAPSHOT_DIR + "pax-web-api-1-20161017.111010-2.jar"), nullValue());
+        assertThat(HITS.get(SNAPSHOT_DIR + "pax-web-api-1-20161017.111010-2.jar.sha1"), equalTo(1));
+    }
+
+    @Test
+    public void releaseNotDownloadedCheckedByChecksum() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(basicMavenConfiguration());
+
+        assertTrue(resolver.isUpToDate("mvn:org.ops4j.pax.web/pax-web-api/1.0", sha1(content("1.0")), 0L));
+        assertFalse(resolver.isUpToDate("mvn:org.ops4j.pax.web/pax-web-api/1.0", sha1("other"), 0L));
+        resolver.close();
+
+        assertThat(HITS.get(RELEASE_DIR + "pax-web-api-1.0.jar"), nullValue());
+        assertThat(HITS.get(RELEASE_DIR + "pax-web-api-1.0.jar.sha1"), equalTo(1));
+    }
+
+    @Test
+    public void missingArtifactIsNotUpToDate() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(basicMavenConfiguration());
+
+        assertFalse(resolver.isUpToDate("mvn:org.ops4j.pax.web/pax-web-spi/1.0", sha1("1.0"), 0L));
+        assertFalse(resolver.isUpToDate("mvn:org.ops4j.pax.web/pax-web-api/1.0", null, 0L));
+        resolver.close();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    /**
+     * Content of artifacts served by the repository - build number for SNAPSHOTs, version for releases
+     */
+    private static String content(String uri) {
+        if (uri.startsWith(SNAPSHOT_DIR)) {
+            return uri.contains("-2.jar") ? "2" : "1";
+        }
+        return "1.0";
+    }
+
+    private static String sha1(String content) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static long utc(String timestamp) throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd.HHmmss");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.parse(timestamp).getTime();
+    }
+
+    private MavenConfigurationImpl basicMavenConfiguration() {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "1000");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo@snapshots");
+        properties.setProperty("pid.globalChecksumPolicy", "warn");
+        properties.setProperty("pid.globalUpdatePolicy", RepositoryPolicy.UPDATE_POLICY_ALWAYS);
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        mavenConfiguration.setSettings(settingsWithProxy());
+        return mavenConfiguration;
+    }
+
+    private Settings settingsWithProxy() {
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+
+        return settings;
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.maven.settings.Settings;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.ServiceConstants;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.pax.url.mvn.internal.config.MavenRepositoryURL;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for caching of expanded <code>@multi</code> repositories
+ */
+public class AetherMultiCacheTest {
+
+    @Test
+    public void expansionRefreshedWhenDirectoryChanges() throws Exception {
+        File multi = new File("target/" + UUID.randomUUID().toString());
+        assertTrue(new File(multi, "repo1").mkdirs());
+        long now = System.currentTimeMillis();
+        assertTrue(multi.setLastModified(now - 60000L));
+
+        AetherBasedResolver resolver = new AetherBasedResolver(config(multi));
+        List<RemoteRepository> repositories = resolver.getRepositories();
+        List<LocalRepository> defaultRepositories = resolver.selectDefaultRepositories();
+        assertThat(repositories.size(), equalTo(1));
+        assertThat(defaultRepositories.size(), equalTo(1));
+        assertThat(resolver.getRepositories().get(0), sameInstance(repositories.get(0)));
+        assertThat(resolver.selectDefaultRepositories().get(0), sameInstance(defaultRepositories.get(0)));
+
+        assertTrue(new File(multi, "repo2").mkdirs());
+        assertTrue(multi.setLastModified(now - 30000L));
+        repositories = resolver.getRepositories();
+        assertThat(repositories.size(), equalTo(2));
+        assertTrue(repositories.get(1).getUrl().contains("repo2"));
+        assertThat(resolver.selectDefaultRepositories().size(), equalTo(2));
+        resolver.close();
+    }
+
+    @Test
+    public void remoteRepositoriesCachedBySpec() throws Exception {
+        File multi = new File("target/" + UUID.randomUUID().toString());
+        AetherBasedResolver resolver = new AetherBasedResolver(config(multi));
+        String spec = "http://everfree-forest/repository@id=single-repo@snapshots";
+        RemoteRepository repository = resolver.getRemoteRepository(new MavenRepositoryURL(spec));
+        assertThat(resolver.getRemoteRepository(new MavenRepositoryURL(spec)), sameInstance(repository));
+        assertThat(resolver.getRemoteRepository(new MavenRepositoryURL(spec + "@noreleases")),
+                not(sameInstance(repository)));
+        resolver.close();
+    }
+
+    private MavenConfigurationImpl config(File multi) {
+        Properties properties = new Properties();
+        String localRepository = new File("target/" + UUID.randomUUID().toString()).toURI().toString();
+        String multiRepository = multi.toURI().toString() + "@id=multitest@multi";
+        properties.setProperty(ServiceConstants.PID + "." + ServiceConstants.PROPERTY_LOCAL_REPOSITORY, localRepository);
+        properties.setProperty(ServiceConstants.PID + "." + ServiceConstants.PROPERTY_REPOSITORIES, multiRepository);
+        properties.setProperty(ServiceConstants.PID + "." + ServiceConstants.PROPERTY_DEFAULT_REPOSITORIES, multiRepository);
+        MavenConfigurationImpl config = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties),
+                ServiceConstants.PID);
+        Settings settings = new Settings();
+        settings.setLocalRepository(localRepository);
+        config.setSettings(settings);
+        return config;
+    }
+
+}
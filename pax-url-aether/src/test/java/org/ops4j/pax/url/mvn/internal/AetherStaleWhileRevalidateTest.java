@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for stale-while-revalidate resolution of SNAPSHOTs
+ */
+public class AetherStaleWhileRevalidateTest {
+
+    private static final String SNAPSHOT_DIR = "/repository/org/ops4j/pax/web/pax-web-api/1-SNAPSHOT/";
+
+    private static Server server;
+    private static int port;
+
+    private static volatile int buildNumber;
+    private static final Map<String, AtomicInteger> HITS = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                try {
+                    int nr = buildNumber;
+                    if (request.getRequestURI().equals(SNAPSHOT_DIR + "maven-metadata.xml")) {
+                        String ts = "20161017.10101" + nr;
+                        StringWriter sw = new StringWriter();
+                        sw.append("<metadata>\n");
+                        sw.append("  <groupId>org.ops4j.pax.web</groupId>\n");
+                        sw.append("  <artifactId>pax-web-api</artifactId>\n");
+                        sw.append("  <version>1-SNAPSHOT</version>\n");
+                        sw.append("  <versioning>\n");
+                        sw.append("    <snapshot>\n");
+                        sw.append("      <timestamp>" + ts + "</timestamp>\n");
+                        sw.append("      <buildNumber>" + nr + "</buildNumber>\n");
+                        sw.append("    </snapshot>\n");
+                        sw.append("    <lastUpdated>" + ts.replace(".", "") + "</lastUpdated>\n");
+                        sw.append("    <snapshotVersions>\n");
+                        sw.append("      <snapshotVersion>\n");
+                        sw.append("        <extension>jar</extension>\n");
+                        sw.append("        <value>1-" + ts + "-" + nr + "</value>\n");
+                        sw.append("        <updated>" + ts.replace(".", "") + "</updated>\n");
+                        sw.append("      </snapshotVersion>\n");
+                        sw.append("    </snapshotVersions>\n");
+                        sw.append("  </versioning>\n");
+                        sw.append("</metadata>\n");
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(sw.toString().getBytes("UTF-8"));
+                    } else if (request.getRequestURI().equals(jar(nr))) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(Integer.toString(nr).getBytes("UTF-8"));
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    HITS.putIfAbsent(request.getRequestURI(), new AtomicInteger());
+                    HITS.get(request.getRequestURI()).incrementAndGet();
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Before
+    public void init() {
+        HITS.clear();
+        buildNumber = 1;
+    }
+
+    @Test
+    public void staleSnapshotReturnedAndUpdatedInBackground() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration());
+
+        File f1 = resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1-SNAPSHOT");
+        buildNumber = 2;
+        File f2 = resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1-SNAPSHOT");
+        // stale version is returned at once, newer one is downloaded in background
+        assertThat(f2, equalTo(f1));
+        assertTrue(awaitRevalidation(resolver, 10000L));
+
+        File f3 = resolver.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1-SNAPSHOT");
+        assertTrue(awaitRevalidation(resolver, 10000L));
+        resolver.close();
+
+        assertThat(f3, equalTo(f1));
+        assertThat(new String(Files.readAllBytes(f3.toPath()), "UTF-8"), equalTo("2"));
+        assertThat(HITS.get(jar(1)).get(), equalTo(1));
+        assertThat(HITS.get(jar(2)).get(), equalTo(1));
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private static String jar(int buildNumber) {
+        return SNAPSHOT_DIR + "pax-web-api-1-20161017.10101" + buildNumber + "-" + buildNumber + ".jar";
+    }
+
+    /**
+     * Waits until background revalidations of the resolver finish
+     */
+    private boolean awaitRevalidation(AetherBasedResolver resolver, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (resolver.getRevalidating() > 0) {
+            if (System.currentTimeMillis() > end) {
+                return false;
+            }
+            Thread.sleep(10L);
+        }
+        return true;
+    }
+
+    private MavenConfigurationImpl configuration() {
+        Properties properties = new Properties();
+        properties.setProperty("pid.staleWhileRevalidate", "true");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.globalUpdatePolicy", "always");
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "1000");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo@snapshots");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.Handler;
+import org.ops4j.pax.url.mvn.ServiceConstants;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.pax.url.reference.ReferenceInputStream;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for header fields and reference mode of <code>mvn:</code> connection
+ */
+public class ConnectionHeadersTest {
+
+    private static final String JAR = "/repository/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.jar";
+    // SHA-1 of "hello"
+    private static final String SHA1 = "aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d";
+
+    private static Server server;
+    private static int port;
+    private static final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                requests.incrementAndGet();
+                try {
+                    if (request.getRequestURI().equals(JAR)) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write("hello".getBytes("UTF-8"));
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Test
+    public void lazyResolutionAndHeaders() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration("target/" + UUID.randomUUID().toString()));
+        try {
+            int initial = requests.get();
+            Connection connection = new Connection(new URL(null, "mvn:org.ops4j.pax.web/pax-web-api/1", new Handler()), resolver);
+            assertThat(requests.get(), equalTo(initial));
+
+            assertThat(connection.getContentLengthLong(), equalTo(5L));
+            assertTrue(requests.get() > initial);
+            assertTrue(connection.getLastModified() > 0L);
+            assertTrue(connection.getHeaderField("Last-Modified").endsWith(" GMT"));
+            assertThat(connection.getHeaderField(ServiceConstants.HEADER_CHECKSUM_SHA1), equalTo(SHA1));
+            assertThat(connection.getHeaderField(ServiceConstants.HEADER_REPOSITORY), equalTo("single-repo"));
+            assertThat(connection.getHeaderFields().size(), equalTo(4));
+            assertThat(connection.getHeaderFieldKey(0), equalTo("content-length"));
+
+            int before = requests.get();
+            try (InputStream is = connection.getInputStream()) {
+                assertThat(is.read(), equalTo((int) 'h'));
+            }
+            assertThat(requests.get(), equalTo(before));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void referenceMode() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(configuration("target/" + UUID.randomUUID().toString()));
+        try {
+            Connection connection = new Connection(new URL(null, "mvn:org.ops4j.pax.web/pax-web-api/1#reference", new Handler()), resolver);
+            InputStream is = connection.getInputStream();
+            assertThat(is, instanceOf(ReferenceInputStream.class));
+            URL reference = ((ReferenceInputStream) is).getReference();
+            assertThat(reference.getProtocol(), equalTo("file"));
+            assertTrue(reference.getPath().endsWith("/org/ops4j/pax/web/pax-web-api/1/pax-web-api-1.jar"));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private MavenConfigurationImpl configuration(String localRepository) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", localRepository);
+        properties.setProperty("pid.timeout", "5000");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        mavenConfiguration.setSettings(settings);
+        return mavenConfiguration;
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LocalRepositoryMaintenanceTest {
+
+    private File repository;
+
+    @Before
+    public void init() {
+        repository = new File("target/" + UUID.randomUUID().toString());
+    }
+
+    @Test
+    public void leastRecentlyUsedArtifactsRemoved() throws IOException {
+        long now = System.currentTimeMillis();
+        File lib1 = artifact("org/example/lib/1/lib-1.jar", 1000, now - 40000L);
+        File lib2 = artifact("org/example/lib/2/lib-2.jar", 1000, now - 30000L);
+        File pinned = artifact("org/example/pinned/1/pinned-1.jar", 1000, now - 50000L);
+        File used = artifact("org/example/used/1/used-1.jar", 1000, now - 50000L);
+        File snapshot1 = artifact("org/example/snap/1-SNAPSHOT/snap-1-20181010.101010-1.jar", 100, now - 10000L);
+        File snapshot2 = artifact("org/example/snap/1-SNAPSHOT/snap-1-20181011.101010-2.jar", 100, now - 10000L);
+
+        LocalRepositoryMaintenance maintenance = new LocalRepositoryMaintenance(repository, 3000L,
+                Collections.singletonList("org.example:pinned"));
+        maintenance.accessed(used);
+        final List<File> removed = new ArrayList<File>();
+        maintenance.setListener(new LocalRepositoryMaintenance.Listener() {
+            @Override
+            public void removed(File directory) {
+                removed.add(directory);
+            }
+        });
+
+        assertThat(maintenance.run(), equalTo(2100L));
+        assertThat(removed, equalTo(Arrays.asList(lib1.getParentFile().getAbsoluteFile(),
+                lib2.getParentFile().getAbsoluteFile())));
+
+        assertFalse(lib1.exists());
+        assertFalse(lib1.getParentFile().exists());
+        assertFalse(lib2.exists());
+        assertFalse(lockFile("org.example:lib:1").exists());
+        assertFalse(lockFile("org.example:lib:2").exists());
+        assertTrue(pinned.isFile());
+        assertTrue(used.isFile());
+        assertFalse(snapshot1.exists());
+        assertTrue(snapshot2.isFile());
+    }
+
+    @Test
+    public void onlyStaleSnapshotsRemovedWithoutSizeLimit() throws IOException {
+        long now = System.currentTimeMillis();
+        File lib1 = artifact("org/example/lib/1/lib-1.jar", 1000, now - 40000L);
+        File snapshot1 = artifact("org/example/snap/1-SNAPSHOT/snap-1-20181010.101010-9.jar", 100, now);
+        File snapshot2 = artifact("org/example/snap/1-SNAPSHOT/snap-1-20181010.101010-10.jar", 100, now);
+        File snapshot2pom = artifact("org/example/snap/1-SNAPSHOT/snap-1-20181010.101010-10.pom", 10, now);
+
+        LocalRepositoryMaintenance maintenance = new LocalRepositoryMaintenance(repository, 0L,
+                Collections.<String>emptyList());
+        // SNAPSHOT being used doesn't prevent removing its older builds
+        maintenance.accessed(snapshot2);
+
+        assertThat(maintenance.run(), equalTo(100L));
+
+        assertTrue(lib1.isFile());
+        assertFalse(snapshot1.exists());
+        assertTrue(snapshot2.isFile());
+        assertTrue(snapshot2pom.isFile());
+    }
+
+    @Test
+    public void usedArtifactsRemovedWhenOverLimit() throws IOException {
+        long now = System.currentTimeMillis();
+        File lib1 = artifact("org/example/lib/1/lib-1.jar", 1000, now - 40000L);
+        File lib2 = artifact("org/example/lib/2/lib-2.jar", 1000, now - 30000L);
+        File lib3 = artifact("org/example/lib/3/lib-3.jar", 1000, now - 20000L);
+
+        LocalRepositoryMaintenance maintenance = new LocalRepositoryMaintenance(repository, 1500L,
+                Collections.<String>emptyList());
+        maintenance.accessed(lib1);
+        maintenance.accessed(lib2);
+
+        assertThat(maintenance.run(), equalTo(2000L));
+        assertFalse(lib3.exists());
+        assertTrue(lib1.isFile() != lib2.isFile());
+    }
+
+    @Test
+    public void staleSnapshotsOfResolvedArtifactNotRemoved() throws Exception {
+        long now = System.currentTimeMillis();
+        File snapshot1 = artifact("org/example/snap/1-SNAPSHOT/snap-1-20181010.101010-1.jar", 100, now);
+        File snapshot2 = artifact("org/example/snap/1-SNAPSHOT/snap-1-20181011.101010-2.jar", 100, now);
+
+        // the SNAPSHOT is being resolved by another thread
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread resolution = new Thread() {
+            @Override
+            public void run() {
+                Closeable lock = NamedLockSyncContextFactory.tryLock(repository, "org.example:snap:1-SNAPSHOT");
+                locked.countDown();
+                try {
+                    done.await();
+                    lock.close();
+                } catch (Exception ignored) {
+                }
+            }
+        };
+        resolution.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        LocalRepositoryMaintenance maintenance = new LocalRepositoryMaintenance(repository, 0L,
+                Collections.<String>emptyList());
+        try {
+            assertThat(maintenance.run(), equalTo(0L));
+            assertTrue(snapshot1.isFile());
+        } finally {
+            done.countDown();
+            resolution.join(5000L);
+        }
+
+        assertThat(maintenance.run(), equalTo(100L));
+        assertFalse(snapshot1.exists());
+        assertTrue(snapshot2.isFile());
+    }
+
+    @Test
+    public void persistedAccessTimesUsedAfterRestart() throws IOException {
+        long now = System.currentTimeMillis();
+        File lib1 = artifact("org/example/lib/1/lib-1.jar", 1000, now - 40000L);
+        File lib2 = artifact("org/example/lib/2/lib-2.jar", 1000, now - 30000L);
+        for (File lib : Arrays.asList(lib1, lib2)) {
+            // existing access files and directories not modified recently, so they're not scanned again
+            File accessFile = new File(lib.getParentFile(), LocalRepositoryMaintenance.ACCESS_FILE);
+            assertTrue(accessFile.createNewFile());
+            assertTrue(accessFile.setLastModified(now - 50000L));
+            assertTrue(lib.getParentFile().setLastModified(now - 50000L));
+        }
+
+        LocalRepositoryMaintenance maintenance = new LocalRepositoryMaintenance(repository, 2500L,
+                Collections.<String>emptyList());
+        assertThat(maintenance.run(), equalTo(0L));
+
+        // lib1 used by another (or previous) process, lib3 downloaded after the first run
+        new LocalRepositoryMaintenance(repository, 2500L, Collections.<String>emptyList()).accessed(lib1);
+        File lib3 = artifact("org/example/lib/3/lib-3.jar", 1000, now - 20000L);
+
+        assertThat(maintenance.run(), equalTo(1000L));
+        assertTrue(lib1.isFile());
+        assertFalse(lib2.getParentFile().exists());
+        assertTrue(lib3.isFile());
+    }
+
+    @Test
+    public void directoriesInUseNotRemoved() throws Exception {
+        long now = System.currentTimeMillis();
+        File lib1 = artifact("org/example/lib/1/lib-1.jar", 1000, now - 40000L);
+        File part = artifact("org/example/lib/1/lib-1-sources.jar.part", 100, now);
+        File lib2 = artifact("org/example/lib/2/lib-2.jar", 1000, now - 30000L);
+        File lib3 = artifact("org/example/lib/3/lib-3.jar", 1000, now - 20000L);
+
+        // lib2 is being resolved by another thread
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread resolution = new Thread() {
+            @Override
+            public void run() {
+                Closeable lock = NamedLockSyncContextFactory.tryLock(repository, "org.example:lib:2");
+                locked.countDown();
+                try {
+                    done.await();
+                    lock.close();
+                } catch (Exception ignored) {
+                }
+            }
+        };
+        resolution.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        LocalRepositoryMaintenance maintenance = new LocalRepositoryMaintenance(repository, 2000L,
+                Collections.<String>emptyList());
+        try {
+            assertThat(maintenance.run(), equalTo(1000L));
+        } finally {
+            done.countDown();
+            resolution.join(5000L);
+        }
+
+        assertTrue(lib1.isFile());
+        assertTrue(part.isFile());
+        assertTrue(lib2.isFile());
+        assertFalse(lib3.exists());
+        assertTrue(lockFile("org.example:lib:2").isFile());
+        assertFalse(lockFile("org.example:lib:3").exists());
+        assertThat(cachedLocks(), equalTo(0));
+    }
+
+    private File lockFile(String name) {
+        return new File(new File(repository, NamedLockSyncContextFactory.LOCKS_DIRECTORY),
+                NamedLockSyncContextFactory.fileName(name));
+    }
+
+    /**
+     * Returns number of in-memory locks for files in test repository
+     * @return
+     */
+    private int cachedLocks() throws Exception {
+        Field f = NamedLockSyncContextFactory.class.getDeclaredField("locks");
+        f.setAccessible(true);
+        int count = 0;
+        for (Object file : ((Map<?, ?>) f.get(null)).keySet()) {
+            if (((File) file).getPath().startsWith(repository.getAbsolutePath())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private File artifact(String path, int size, long lastModified) throws IOException {
+        File file = new File(repository, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), new byte[size]);
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+}
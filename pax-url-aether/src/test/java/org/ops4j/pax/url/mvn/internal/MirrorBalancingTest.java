@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Mirror;
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for distributing downloads between mirrors of the same repositories
+ */
+public class MirrorBalancingTest {
+
+    private static Server server;
+    private static int port;
+
+    private static volatile boolean mirrorBFails = false;
+    private static Map<String, AtomicInteger> HITS = new ConcurrentHashMap<String, AtomicInteger>();
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                String host = request.getServerName();
+                String uri = request.getRequestURI();
+                try {
+                    if (uri.endsWith(".jar")) {
+                        HITS.putIfAbsent(host, new AtomicInteger());
+                        HITS.get(host).incrementAndGet();
+                    }
+                    if (mirrorBFails && "mirror-b".equals(host)) {
+                        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    } else if (uri.startsWith("/repository/org/ops4j/pax/web/") && uri.endsWith(".jar")) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write(uri.getBytes("UTF-8"));
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Before
+    public void init() {
+        HITS.clear();
+        mirrorBFails = false;
+    }
+
+    @Test
+    public void singleMirrorWithoutBalancing() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration(null));
+        for (int i = 1; i <= 4; i++) {
+            resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1." + i);
+        }
+        resolver.close();
+
+        assertThat(HITS.keySet(), equalTo(Collections.singleton("mirror-a")));
+    }
+
+    @Test
+    public void roundRobin() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration("roundRobin"));
+        for (int i = 1; i <= 4; i++) {
+            File file = resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1." + i);
+            assertTrue(file.isFile());
+        }
+        resolver.close();
+
+        assertTrue(HITS.get("mirror-a").get() > 0);
+        assertTrue(HITS.get("mirror-b").get() > 0);
+    }
+
+    @Test
+    public void failingMirrorIsQuarantined() throws Exception {
+        mirrorBFails = true;
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration("latency"));
+        for (int i = 1; i <= 6; i++) {
+            resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1." + i);
+        }
+        int mirrorBHits = HITS.containsKey("mirror-b") ? HITS.get("mirror-b").get() : 0;
+        for (int i = 7; i <= 10; i++) {
+            resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1." + i);
+        }
+        resolver.close();
+
+        assertTrue(mirrorBHits <= 1);
+        assertThat(HITS.containsKey("mirror-b") ? HITS.get("mirror-b").get() : 0, equalTo(mirrorBHits));
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    private MavenConfigurationImpl mavenConfiguration(String balancing) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "1000");
+        properties.setProperty("pid.repositories", "http://everfree-forest/repository@id=single-repo");
+        properties.setProperty("pid.connection.retryCount", "0");
+        if (balancing != null) {
+            properties.setProperty("pid.mirrorBalancing", balancing);
+            properties.setProperty("pid.mirrorBalancing.failureThreshold", "1");
+        }
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        mavenConfiguration.setSettings(settings());
+        return mavenConfiguration;
+    }
+
+    private Settings settings() {
+        Settings settings = new Settings();
+        Proxy proxy = new Proxy();
+        proxy.setId("proxy");
+        proxy.setHost("localhost");
+        proxy.setPort(port);
+        proxy.setProtocol("http");
+        settings.setProxies(Collections.singletonList(proxy));
+        for (String id : new String[] { "mirror-a", "mirror-b" }) {
+            Mirror mirror = new Mirror();
+            mirror.setId(id);
+            mirror.setUrl("http://" + id + "/repository");
+            mirror.setMirrorOf("*");
+            settings.addMirror(mirror);
+        }
+
+        return settings;
+    }
+
+}
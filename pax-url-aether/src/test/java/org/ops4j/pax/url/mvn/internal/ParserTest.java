@@ -296,4 +296,33 @@ public class ParserTest
         );
     }
 
+    @Test
+    public void trailingAndMissingSegments()
+        throws MalformedURLException
+    {
+        Parser parser = new Parser( "group/artifact//war/" );
+        assertEquals( "Version", "LATEST", parser.getVersion() );
+        assertEquals( "Type", "war", parser.getType() );
+        assertNull( "Classifier", parser.getClassifier() );
+        parser = new Parser( "group/artifact/1.0/xml/features/ignored" );
+        assertEquals( "Classifier", "features", parser.getClassifier() );
+    }
+
+    @Test( expected = MalformedURLException.class )
+    public void urlWithTrailingSeparatorOnly()
+        throws MalformedURLException
+    {
+        new Parser( "group/" );
+    }
+
+    @Test
+    public void parsedUrlsAreReused()
+        throws MalformedURLException
+    {
+        Parser parser = Parser.parse( "http://repository@id=repo!group/artifact/version" );
+        assertSame( "Cached parser", parser, Parser.parse( "http://repository@id=repo!group/artifact/version" ) );
+        assertEquals( "Repository", "repo", parser.getRepositoryURL().getId() );
+        assertNotSame( "Different url", parser, Parser.parse( "group/artifact/version" ) );
+    }
+
 }
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for sharing artifacts between local repositories of peers
+ */
+public class PeerRepositoryTest {
+
+    private static final String DIR = "org/ops4j/pax/web/pax-web-api/";
+
+    private static Server server;
+    private static int port;
+    private static Map<String, AtomicInteger> HITS = new ConcurrentHashMap<String, AtomicInteger>();
+
+    private File peerRepository;
+    private PeerRepositoryServer peer;
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                String uri = request.getRequestURI();
+                HITS.putIfAbsent(uri, new AtomicInteger());
+                HITS.get(uri).incrementAndGet();
+                if (uri.startsWith("/repository/" + DIR) && uri.endsWith(".jar")) {
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    response.getOutputStream().write("upstream".getBytes("UTF-8"));
+                } else {
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                }
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        port = server.getConnectors()[0].getLocalPort();
+    }
+
+    @Before
+    public void startPeer() throws Exception {
+        HITS.clear();
+        peerRepository = new File("target/" + UUID.randomUUID().toString());
+        write(DIR + "1.0/pax-web-api-1.0.jar", "peer");
+        write(DIR + "1.0/pax-web-api-1.0.jar.sha1", Checksums.sha1(new File(peerRepository, DIR + "1.0/pax-web-api-1.0.jar")));
+        write(DIR + "1.0/_remote.repositories", "pax-web-api-1.0.jar>central=");
+        write(DIR + "1.1/pax-web-api-1.1.jar", "installed");
+        write(DIR + "2.0/pax-web-api-2.0.jar", "corrupted");
+        write(DIR + "2.0/pax-web-api-2.0.jar.sha1", "0123456789012345678901234567890123456789");
+        peer = PeerRepositoryServer.acquire("localhost", 0, peerRepository);
+    }
+
+    @After
+    public void stopPeer() {
+        peer.close();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void artifactFromPeer() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        File file = resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1.0");
+        resolver.close();
+
+        assertThat(new String(Files.readAllBytes(file.toPath()), "UTF-8"), equalTo("peer"));
+        assertThat(HITS.get("/repository/" + DIR + "1.0/pax-web-api-1.0.jar"), nullValue());
+    }
+
+    @Test
+    public void corruptedArtifactFromPeerIsRejected() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        File file = resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/2.0");
+        resolver.close();
+
+        assertThat(new String(Files.readAllBytes(file.toPath()), "UTF-8"), equalTo("upstream"));
+    }
+
+    @Test
+    public void artifactMissingInPeer() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        File file = resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/3.0");
+        resolver.close();
+
+        assertThat(new String(Files.readAllBytes(file.toPath()), "UTF-8"), equalTo("upstream"));
+        assertThat(HITS.get("/repository/" + DIR + "3.0/pax-web-api-3.0.jar").get(), equalTo(1));
+    }
+
+    @Test
+    public void onlyArtifactsAreServed() throws Exception {
+        assertThat(peer.find("/" + DIR + "1.0/pax-web-api-1.0.jar"), notNullValue());
+        assertThat(peer.find("/" + DIR + "1.0/_remote.repositories"), nullValue());
+        assertThat(peer.find("/" + DIR + "1.0/../1.0/pax-web-api-1.0.jar"), notNullValue());
+        assertThat(peer.find("/../" + peerRepository.getName() + "/" + DIR + "1.0/pax-web-api-1.0.jar"), notNullValue());
+        assertThat(peer.find("/../../pom.xml"), nullValue());
+        assertThat(peer.find("/" + DIR + "1.0"), nullValue());
+    }
+
+    @Test
+    public void onlyVerifiedArtifactsAreServed() throws Exception {
+        assertThat(peer.find("/" + DIR + "1.0/pax-web-api-1.0.jar.sha1"), notNullValue());
+        assertThat(peer.find("/" + DIR + "1.0/pax-web-api-1.0.jar.md5"), nullValue());
+        assertThat(peer.find("/" + DIR + "1.1/pax-web-api-1.1.jar"), nullValue());
+        assertThat(peer.find("/" + DIR + "1.1/pax-web-api-1.1.jar.sha1"), nullValue());
+        assertThat(peer.find("/" + DIR + "2.0/pax-web-api-2.0.jar"), nullValue());
+        assertThat(peer.find("/" + DIR + "2.0/pax-web-api-2.0.jar.sha1"), nullValue());
+    }
+
+    @Test
+    public void installedArtifactIsNotTakenFromPeer() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        File file = resolver.resolve("mvn:org.ops4j.pax.web/pax-web-api/1.1");
+        resolver.close();
+
+        assertThat(new String(Files.readAllBytes(file.toPath()), "UTF-8"), equalTo("upstream"));
+        assertThat(HITS.get("/repository/" + DIR + "1.1/pax-web-api-1.1.jar").get(), equalTo(1));
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(peerRepository, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+    }
+
+    private MavenConfigurationImpl mavenConfiguration() {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "1000");
+        properties.setProperty("pid.repositories", "http://localhost:" + port + "/repository@id=upstream");
+        // checksums of artifacts from peers are verified anyway
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.peers", "http://localhost:" + peer.getPort() + "/");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        mavenConfiguration.setSettings(new Settings());
+        return mavenConfiguration;
+    }
+
+}
@@ -54,6 +54,8 @@ public class RegistrationTest {
         Capture<Dictionary<String, Object>> registrationProperties = new Capture<>();
         expect(context.registerService(same("org.ops4j.pax.url.mvn.MavenResolver"),
                 anyObject(), capture(registrationProperties))).andReturn(null);
+        expect(context.registerService(same("org.ops4j.pax.url.mvn.MavenResolver2"),
+                anyObject(), anyObject(Dictionary.class))).andReturn(null);
 
         replay(context);
 
@@ -77,6 +79,8 @@ public class RegistrationTest {
         Capture<Dictionary<String, Object>> registrationProperties = new Capture<>();
         expect(context.registerService(same("org.ops4j.pax.url.mvn.MavenResolver"),
                 anyObject(), capture(registrationProperties))).andReturn(null);
+        expect(context.registerService(same("org.ops4j.pax.url.mvn.MavenResolver2"),
+                anyObject(), anyObject(Dictionary.class))).andReturn(null);
 
         replay(context);
 
@@ -115,6 +119,8 @@ public class RegistrationTest {
                 anyObject(), anyObject(Dictionary.class))).andReturn(null);
         expect(context.registerService(same("org.ops4j.pax.url.mvn.MavenResolver"),
                 capture(mavenResolver), anyObject(Dictionary.class))).andReturn(null).anyTimes();
+        expect(context.registerService(same("org.ops4j.pax.url.mvn.MavenResolver2"),
+                capture(mavenResolver), anyObject(Dictionary.class))).andReturn(null).anyTimes();
 
         replay(context);
 
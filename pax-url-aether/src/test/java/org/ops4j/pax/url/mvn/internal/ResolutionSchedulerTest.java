@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.CancellationToken;
+import org.ops4j.pax.url.mvn.MavenResolver2.Priority;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResolutionSchedulerTest {
+
+    private static final List<String> NONE = Collections.emptyList();
+
+    @Test
+    public void priorityFromPatterns() {
+        ResolutionScheduler scheduler = new ResolutionScheduler(4, 2,
+                Collections.singletonList("org.apache.karaf"),
+                Arrays.asList("*:*:*:sources", "org.example:docs"));
+
+        assertThat(scheduler.priority(new DefaultArtifact("org.apache.karaf:karaf:4.2.0"), null),
+                equalTo(Priority.CRITICAL));
+        assertThat(scheduler.priority(new DefaultArtifact("org.example:lib:jar:sources:1.0"), null),
+                equalTo(Priority.BACKGROUND));
+        assertThat(scheduler.priority(new DefaultArtifact("org.example:docs:1.0"), null),
+                equalTo(Priority.BACKGROUND));
+        assertThat(scheduler.priority(new DefaultArtifact("org.example:lib:1.0"), null),
+                equalTo(Priority.NORMAL));
+        assertThat(scheduler.priority(new DefaultArtifact("org.example:docs:1.0"), Priority.CRITICAL),
+                equalTo(Priority.CRITICAL));
+    }
+
+    @Test
+    public void waitingResolutionsAdmittedByPriority() throws Exception {
+        ResolutionScheduler scheduler = new ResolutionScheduler(1, 1, NONE, NONE);
+        ResolutionScheduler.Permit running = scheduler.acquire(Priority.NORMAL, null);
+        assertFalse(running.hasWaited());
+
+        List<Priority> admitted = new CopyOnWriteArrayList<Priority>();
+        Thread background = start(scheduler, Priority.BACKGROUND, admitted);
+        Thread normal = start(scheduler, Priority.NORMAL, admitted);
+        Thread critical = start(scheduler, Priority.CRITICAL, admitted);
+        running.release();
+        background.join(5000L);
+        normal.join(5000L);
+        critical.join(5000L);
+
+        assertThat(admitted, equalTo(Arrays.asList(Priority.CRITICAL, Priority.NORMAL, Priority.BACKGROUND)));
+    }
+
+    @Test
+    public void backgroundResolutionsLeavePermitsForOthers() throws Exception {
+        ResolutionScheduler scheduler = new ResolutionScheduler(3, 1, NONE, NONE);
+        ResolutionScheduler.Permit background = scheduler.acquire(Priority.BACKGROUND, null);
+
+        List<Priority> admitted = new CopyOnWriteArrayList<Priority>();
+        Thread waiting = start(scheduler, Priority.BACKGROUND, admitted);
+        ResolutionScheduler.Permit normal = scheduler.acquire(Priority.NORMAL, null);
+        assertFalse(normal.hasWaited());
+        assertTrue(admitted.isEmpty());
+
+        background.release();
+        waiting.join(5000L);
+        assertThat(admitted, equalTo(Collections.singletonList(Priority.BACKGROUND)));
+        normal.release();
+    }
+
+    @Test
+    public void resolutionsWithManyTransfersHoldManyPermits() throws Exception {
+        ResolutionScheduler scheduler = new ResolutionScheduler(3, 1, NONE, NONE);
+        ResolutionScheduler.Permit background = scheduler.acquire(Priority.BACKGROUND, null, 10);
+        assertThat(background.getCount(), equalTo(1));
+        background.release();
+        ResolutionScheduler.Permit closure = scheduler.acquire(Priority.NORMAL, null, 10);
+        assertThat(closure.getCount(), equalTo(3));
+
+        List<Priority> admitted = new CopyOnWriteArrayList<Priority>();
+        Thread waiting = start(scheduler, Priority.CRITICAL, admitted);
+        assertTrue(admitted.isEmpty());
+        closure.release();
+        waiting.join(5000L);
+        assertThat(admitted, equalTo(Collections.singletonList(Priority.CRITICAL)));
+
+        ResolutionScheduler unlimited = new ResolutionScheduler(0, 0, NONE, NONE);
+        assertThat(unlimited.acquire(Priority.NORMAL, null, 8).getCount(), equalTo(8));
+    }
+
+    @Test
+    public void cancelledResolutionStopsWaiting() throws Exception {
+        ResolutionScheduler scheduler = new ResolutionScheduler(1, 1, NONE, NONE);
+        ResolutionScheduler.Permit running = scheduler.acquire(Priority.NORMAL, null);
+        final CancellationToken token = new CancellationToken();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException ignored) {
+                }
+                token.cancel();
+            }
+        }.start();
+        try {
+            scheduler.acquire(Priority.CRITICAL, token);
+            fail("Should be cancelled");
+        } catch (InterruptedIOException expected) {
+        }
+        assertThat(scheduler.getWaiting(), equalTo(0));
+        running.release();
+        assertFalse(scheduler.acquire(Priority.NORMAL, null).hasWaited());
+    }
+
+    /**
+     * Starts a thread acquiring (and releasing) a permit and waits until it's queued
+     */
+    private Thread start(final ResolutionScheduler scheduler, final Priority priority, final List<Priority> admitted)
+            throws InterruptedException {
+        int waiting = scheduler.getWaiting();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    ResolutionScheduler.Permit permit = scheduler.acquire(priority, null);
+                    admitted.add(priority);
+                    permit.release();
+                } catch (InterruptedIOException ignored) {
+                }
+            }
+        };
+        thread.start();
+        while (scheduler.getWaiting() == waiting) {
+            Thread.sleep(10L);
+        }
+        return thread;
+    }
+
+}
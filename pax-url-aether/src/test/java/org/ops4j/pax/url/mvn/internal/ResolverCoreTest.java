@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.util.Properties;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for sharing heavyweight components between resolvers
+ */
+public class ResolverCoreTest {
+
+    @Test
+    public void resolversWithEqualNetworkConfigurationShareCore() throws Exception {
+        int cores = ResolverCore.getCoreCount();
+        AetherBasedResolver r1 = new AetherBasedResolver(configuration("1234", "http://repo1/repository@id=repo1"));
+        AetherBasedResolver r2 = new AetherBasedResolver(configuration("1234", "http://repo2/repository@id=repo2"));
+        AetherBasedResolver r3 = new AetherBasedResolver(configuration("4321", "http://repo1/repository@id=repo1"));
+
+        assertThat(r2.getRepositorySystem(), sameInstance(r1.getRepositorySystem()));
+        assertThat(r3.getRepositorySystem(), not(sameInstance(r1.getRepositorySystem())));
+        assertThat(ResolverCore.getCoreCount(), equalTo(cores + 2));
+        // resolvers remain independent views
+        assertThat(r1.getRepositories().get(0).getId(), equalTo("repo1"));
+        assertThat(r2.getRepositories().get(0).getId(), equalTo("repo2"));
+
+        r1.close();
+        r1.close();
+        assertThat(ResolverCore.getCoreCount(), equalTo(cores + 2));
+        r2.close();
+        r3.close();
+        assertThat(ResolverCore.getCoreCount(), equalTo(cores));
+    }
+
+    @Test
+    public void coreIsRecreatedAfterRelease() throws Exception {
+        AetherBasedResolver r1 = new AetherBasedResolver(configuration("2345", "http://repo1/repository@id=repo1"));
+        r1.close();
+        AetherBasedResolver r2 = new AetherBasedResolver(configuration("2345", "http://repo1/repository@id=repo1"));
+
+        assertThat(r2.getRepositorySystem(), not(sameInstance(r1.getRepositorySystem())));
+        r2.close();
+    }
+
+    private MavenConfigurationImpl configuration(String timeout, String repositories) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", timeout);
+        properties.setProperty("pid.repositories", repositories);
+        return new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+    }
+
+}
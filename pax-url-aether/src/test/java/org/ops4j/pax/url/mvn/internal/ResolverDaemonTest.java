@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.maven.settings.Settings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.mvn.MavenResolvers;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for delegating resolution to host-local daemon
+ */
+public class ResolverDaemonTest {
+
+    private static final String JAR = "org/ops4j/pax/web/pax-web-api/1.0/pax-web-api-1.0.jar";
+
+    private File repository;
+    private MavenConfigurationImpl daemonConfig;
+    private AetherBasedResolver daemonResolver;
+    private ResolverDaemon daemon;
+
+    @Before
+    public void startDaemon() throws Exception {
+        repository = new File("target/" + UUID.randomUUID().toString());
+        File jar = new File(repository, JAR);
+        jar.getParentFile().mkdirs();
+        Files.write(jar.toPath(), "content".getBytes("UTF-8"));
+        daemonConfig = mavenConfiguration(true);
+        daemonResolver = new AetherBasedResolver(daemonConfig);
+        daemon = ResolverDaemon.acquire(0, daemonConfig.getLocalRepository().getFile(), daemonResolver);
+    }
+
+    @After
+    public void stopDaemon() throws Exception {
+        daemon.close();
+        daemonResolver.close();
+    }
+
+    @Test
+    public void resolutionDelegatedToDaemon() throws Exception {
+        // the client has no repositories, so only the daemon can resolve
+        MavenConfigurationImpl config = mavenConfiguration(false, daemonConfig.getLocalRepository().getFile());
+        DaemonClientResolver client = new DaemonClientResolver(daemon.getPort(), config, null);
+        File file = client.resolve("mvn:org.ops4j.pax.web/pax-web-api/1.0");
+        File same = client.resolve("org.ops4j.pax.web", "pax-web-api", "", "jar", "1.0");
+        client.close();
+
+        assertThat(file.getCanonicalFile(), equalTo(new File(daemonConfig.getLocalRepository().getFile(), JAR).getCanonicalFile()));
+        assertThat(same, equalTo(file));
+    }
+
+    @Test
+    public void daemonNotUsedWithOtherLocalRepository() throws Exception {
+        MavenConfigurationImpl config = mavenConfiguration(true);
+        DaemonClientResolver client = new DaemonClientResolver(daemon.getPort(), config, null);
+        File file = client.resolve("mvn:org.ops4j.pax.web/pax-web-api/1.0");
+        client.close();
+
+        assertThat(file.getCanonicalFile(), equalTo(new File(config.getLocalRepository().getFile(), JAR).getCanonicalFile()));
+    }
+
+    @Test
+    public void unauthorizedRequestsRejected() throws Exception {
+        String query = "/resolve?url=" + URLEncoder.encode("mvn:org.ops4j.pax.web/pax-web-api/1.0", "UTF-8");
+        File secretFile = ResolverDaemon.secretFile(daemonConfig.getLocalRepository().getFile(), daemon.getPort());
+        String secret = new String(Files.readAllBytes(secretFile.toPath()), "UTF-8");
+
+        assertThat(status(query, "127.0.0.1", null), equalTo(403));
+        assertThat(status(query, "127.0.0.1", "wrong"), equalTo(403));
+        assertThat(status(query, "attacker.example.com", secret), equalTo(403));
+        assertThat(status(query, "127.0.0.1", secret), equalTo(200));
+        if (secretFile.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(secretFile.toPath())),
+                    equalTo("rw-------"));
+        }
+
+        daemon.close();
+        assertFalse(secretFile.exists());
+        daemon = ResolverDaemon.acquire(0, daemonConfig.getLocalRepository().getFile(), daemonResolver);
+    }
+
+    @Test
+    public void failureReportedByDaemon() throws Exception {
+        DaemonClientResolver client = new DaemonClientResolver(daemon.getPort(),
+                mavenConfiguration(false, daemonConfig.getLocalRepository().getFile()), null);
+        try {
+            client.resolve("mvn:org.ops4j.pax.web/pax-web-spi/1.0");
+            fail("Should not resolve");
+        } catch (IOException e) {
+            assertThat(e, instanceOf(DaemonClientResolver.DaemonResolutionException.class));
+            assertThat(client.isRetryableException(e), equalTo(MavenResolver.RetryChance.NEVER));
+        }
+        client.close();
+    }
+
+    @Test
+    public void fallbackWhenDaemonIsNotRunning() throws Exception {
+        int port = daemon.getPort();
+        daemon.close();
+        MavenConfigurationImpl config = mavenConfiguration(true);
+        DaemonClientResolver client = new DaemonClientResolver(port, config, null);
+        File file = client.resolve("mvn:org.ops4j.pax.web/pax-web-api/1.0");
+        client.close();
+
+        assertThat(file.getCanonicalFile(), equalTo(new File(config.getLocalRepository().getFile(), JAR).getCanonicalFile()));
+        daemon = ResolverDaemon.acquire(0, daemonConfig.getLocalRepository().getFile(), daemonResolver);
+    }
+
+    @Test
+    public void clientCreatedForDaemonPort() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Hashtable<String, String> properties = new Hashtable<String, String>();
+        properties.put("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.put("pid.repositories", repository.toURI().toString() + "@id=files");
+        properties.put("pid.daemon.port", Integer.toString(port));
+        MavenResolver client = MavenResolvers.createMavenResolver(properties, "pid");
+        properties.put("pid.daemon", "true");
+        MavenResolver server = MavenResolvers.createMavenResolver(properties, "pid");
+
+        assertThat(client, instanceOf(DaemonClientResolver.class));
+        assertThat(server, instanceOf(AetherBasedResolver.class));
+        assertTrue(client.resolve("mvn:org.ops4j.pax.web/pax-web-api/1.0").isFile());
+        assertThat(((DaemonClientResolver) client).isRetryableException(new IOException()),
+                equalTo(MavenResolver.RetryChance.UNKNOWN));
+        client.close();
+        server.close();
+    }
+
+    private int status(String query, String host, String secret) throws IOException {
+        // HttpURLConnection doesn't allow changing Host header
+        try (Socket socket = new Socket("127.0.0.1", daemon.getPort())) {
+            StringBuilder request = new StringBuilder("GET ").append(query).append(" HTTP/1.0\r\n")
+                    .append("Host: ").append(host).append(':').append(daemon.getPort()).append("\r\n");
+            if (secret != null) {
+                request.append(ResolverDaemon.SECRET).append(": ").append(secret).append("\r\n");
+            }
+            socket.getOutputStream().write(request.append("\r\n").toString().getBytes("UTF-8"));
+            String statusLine = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")).readLine();
+            return Integer.parseInt(statusLine.split(" ")[1]);
+        }
+    }
+
+    private MavenConfigurationImpl mavenConfiguration(boolean withRepository) {
+        return mavenConfiguration(withRepository, new File("target/" + UUID.randomUUID().toString()));
+    }
+
+    private MavenConfigurationImpl mavenConfiguration(boolean withRepository, File localRepository) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", localRepository.getPath());
+        properties.setProperty("pid.repositories", withRepository ? repository.toURI().toString() + "@id=files" : "");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        mavenConfiguration.setSettings(new Settings());
+        return mavenConfiguration;
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.internal;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.UUID;
+
+import jdk.jfr.Recording;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferListener;
+import org.eclipse.aether.transfer.TransferResource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ResolverMetricsTest {
+
+    private Recording recording;
+    private AetherBasedResolver resolver;
+
+    @Before
+    public void init() {
+        recording = new Recording();
+        recording.enable("org.ops4j.pax.url.Operation").withThreshold(Duration.ZERO);
+        recording.start();
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        resolver = new AetherBasedResolver(new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid"));
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        recording.stop();
+        recording.close();
+        resolver.close();
+    }
+
+    @Test
+    public void corruptedTransfersAreNotTracedAnymore() throws Exception {
+        ResolverMetrics metrics = (ResolverMetrics) resolver.getMetrics();
+        TransferListener listener = metrics.getTransferListener();
+
+        TransferEvent event = event(0);
+        listener.transferInitiated(event);
+        assertThat(metrics.getTracedTransfers(), equalTo(1));
+        listener.transferCorrupted(event);
+        assertThat(metrics.getTracedTransfers(), equalTo(0));
+    }
+
+    @Test
+    public void numberOfTracedTransfersIsLimited() throws Exception {
+        ResolverMetrics metrics = (ResolverMetrics) resolver.getMetrics();
+        TransferListener listener = metrics.getTransferListener();
+
+        // transfers which never end (e.g., cancelled before start)
+        for (int i = 0; i < ResolverMetrics.MAX_TRACED_TRANSFERS + 10; i++) {
+            listener.transferInitiated(event(i));
+        }
+        assertThat(metrics.getTracedTransfers(), equalTo(ResolverMetrics.MAX_TRACED_TRANSFERS));
+    }
+
+    private TransferEvent event(int n) {
+        TransferResource resource = new TransferResource("central", "http://localhost/repository/",
+                "org/example/lib/" + n + "/lib-" + n + ".jar", new File("lib-" + n + ".jar"), null);
+        return new TransferEvent.Builder(new DefaultRepositorySystemSession(), resource)
+                .setType(TransferEvent.EventType.INITIATED)
+                .build();
+    }
+
+}
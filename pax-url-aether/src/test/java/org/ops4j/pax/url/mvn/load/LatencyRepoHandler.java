@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Maven repository that serves generated artifacts (any <code>.jar</code> or <code>.pom</code> path) with
+ * configurable latency, bandwidth, error rate and 404 patterns - a stand-in for a slow or unreliable remote
+ * repository in load tests.
+ */
+public class LatencyRepoHandler extends AbstractHandler {
+
+    private long latency = 0L;
+    private long bandwidth = 0L;
+    private double errorRate = 0.0d;
+    private Pattern notFound = null;
+    private int size = 1024;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private Server server;
+
+    /**
+     * Delay (in milliseconds) before each response
+     * @param latency
+     * @return
+     */
+    public LatencyRepoHandler latency(long latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Maximal number of bytes per second sent in single response, <code>0</code> means unlimited
+     * @param bandwidth
+     * @return
+     */
+    public LatencyRepoHandler bandwidth(long bandwidth) {
+        this.bandwidth = bandwidth;
+        return this;
+    }
+
+    /**
+     * Fraction (0..1) of requests for artifacts answered with <code>503 Service Unavailable</code>
+     * @param errorRate
+     * @return
+     */
+    public LatencyRepoHandler errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Paths matching this pattern are answered with <code>404 Not Found</code>
+     * @param notFound
+     * @return
+     */
+    public LatencyRepoHandler notFound(String notFound) {
+        this.notFound = Pattern.compile(notFound);
+        return this;
+    }
+
+    /**
+     * Size of generated artifacts
+     * @param size
+     * @return
+     */
+    public LatencyRepoHandler size(int size) {
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * Starts Jetty server with this handler on random port
+     * @param threads
+     * @return port of the server
+     * @throws Exception
+     */
+    public int start(int threads) throws Exception {
+        server = new Server(0);
+        QueuedThreadPool pool = new QueuedThreadPool(threads);
+        pool.setMinThreads(Math.min(threads, 8));
+        server.setThreadPool(pool);
+        server.setHandler(this);
+        server.start();
+        return server.getConnectors()[0].getLocalPort();
+    }
+
+    /**
+     * Stops the server started with {@link #start(int)}
+     * @throws Exception
+     */
+    public void shutdown() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request,
+                       HttpServletResponse response) throws IOException, ServletException {
+        requests.incrementAndGet();
+        try {
+            String uri = request.getRequestURI();
+            pause(latency);
+            boolean artifact = uri.endsWith(".jar") || uri.endsWith(".pom");
+            if (!artifact || (notFound != null && notFound.matcher(uri).find())) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            if (errorRate > 0.0d && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                return;
+            }
+            byte[] content = content(uri);
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentLength(content.length);
+            if ("HEAD".equals(request.getMethod())) {
+                return;
+            }
+            OutputStream os = response.getOutputStream();
+            int chunk = bandwidth > 0L ? (int) Math.max(1L, Math.min(8192L, bandwidth / 10L)) : content.length;
+            for (int offset = 0; offset < content.length; offset += chunk) {
+                int length = Math.min(chunk, content.length - offset);
+                os.write(content, offset, length);
+                if (bandwidth > 0L) {
+                    os.flush();
+                    pause(length * 1000L / bandwidth);
+                }
+            }
+        } finally {
+            baseRequest.setHandled(true);
+        }
+    }
+
+    private byte[] content(String uri) {
+        if (uri.endsWith(".pom")) {
+            return "<project><modelVersion>4.0.0</modelVersion></project>".getBytes();
+        }
+        byte[] content = new byte[size];
+        int seed = uri.hashCode();
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (seed + i);
+        }
+        return content;
+    }
+
+    private static void pause(long millis) throws IOException {
+        if (millis <= 0L) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+}
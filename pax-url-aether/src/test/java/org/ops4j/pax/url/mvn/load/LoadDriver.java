@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.load;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ops4j.pax.url.mvn.MavenResolver;
+
+/**
+ * Runs many concurrent resolutions through single {@link MavenResolver} and reports throughput and latency
+ * percentiles.
+ */
+public class LoadDriver {
+
+    private final MavenResolver resolver;
+    private final int concurrency;
+
+    public LoadDriver(MavenResolver resolver, int concurrency) {
+        this.resolver = resolver;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Resolves <code>resolutions</code> URIs, taken in round-robin fashion from <code>uris</code>
+     * @param uris
+     * @param resolutions
+     * @return
+     * @throws InterruptedException
+     */
+    public Report run(final List<String> uris, int resolutions) throws InterruptedException {
+        final long[] latencies = new long[resolutions];
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(resolutions);
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            for (int i = 0; i < resolutions; i++) {
+                final int n = i;
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            long t0 = System.nanoTime();
+                            try {
+                                resolver.resolve(uris.get(n % uris.size()));
+                            } catch (Exception e) {
+                                failures.incrementAndGet();
+                            }
+                            latencies[n] = System.nanoTime() - t0;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            long t0 = System.nanoTime();
+            start.countDown();
+            done.await();
+            return new Report(latencies, failures.get(), System.nanoTime() - t0);
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Result of single load run
+     */
+    public static class Report {
+
+        private final long[] latencies;
+        private final int failures;
+        private final long elapsed;
+
+        Report(long[] latencies, int failures, long elapsed) {
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.failures = failures;
+            this.elapsed = elapsed;
+        }
+
+        public int getResolutions() {
+            return latencies.length;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return resolutions per second
+         */
+        public double getThroughput() {
+            return latencies.length * 1e9d / Math.max(1L, elapsed);
+        }
+
+        /**
+         * @param percentile e.g., <code>0.99</code>
+         * @return latency in milliseconds
+         */
+        public double getPercentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0.0d;
+            }
+            int index = (int) Math.ceil(percentile * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / 1e6d;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d resolutions (%d failed) in %.0f ms: %.1f/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    getResolutions(), failures, elapsed / 1e6d, getThroughput(),
+                    getPercentile(0.5d), getPercentile(0.99d), getPercentile(1.0d));
+        }
+    }
+
+}
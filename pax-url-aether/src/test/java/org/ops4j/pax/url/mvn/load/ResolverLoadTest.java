@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.mvn.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.maven.settings.Settings;
+import org.junit.After;
+import org.junit.Test;
+import org.ops4j.pax.url.mvn.internal.AetherBasedResolver;
+import org.ops4j.pax.url.mvn.internal.config.MavenConfigurationImpl;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Concurrent resolutions against {@link LatencyRepoHandler local repository with injected latency}. Default
+ * sizes keep the test short - for real load runs use e.g.:<pre>
+ * mvn test -Dtest=ResolverLoadTest -Dload.resolutions=10000 -Dload.concurrency=200 -Dload.latency=50
+ * </pre></p>
+ */
+public class ResolverLoadTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResolverLoadTest.class);
+
+    private static final int RESOLUTIONS = Integer.getInteger("load.resolutions", 400);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 32);
+    private static final int ARTIFACTS = Integer.getInteger("load.artifacts", 100);
+    private static final long LATENCY = Long.getLong("load.latency", 5L);
+
+    private LatencyRepoHandler repository;
+    private AetherBasedResolver resolver;
+
+    @After
+    public void cleanup() throws Exception {
+        if (resolver != null) {
+            resolver.close();
+        }
+        if (repository != null) {
+            repository.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentResolutions() throws Exception {
+        repository = new LatencyRepoHandler().latency(LATENCY).size(16 * 1024);
+        resolver = new AetherBasedResolver(configuration(repository.start(CONCURRENCY * 2)));
+
+        List<String> uris = new ArrayList<>();
+        for (int i = 0; i < ARTIFACTS; i++) {
+            uris.add("mvn:org.ops4j.pax.url.load/artifact-" + i + "/1.0");
+        }
+        LoadDriver.Report report = new LoadDriver(resolver, CONCURRENCY).run(uris, RESOLUTIONS);
+        LOG.info("Load: " + report);
+
+        assertThat(report.getFailures(), equalTo(0));
+        assertThat(report.getResolutions(), equalTo(RESOLUTIONS));
+        assertTrue(report.getPercentile(0.99d) >= report.getPercentile(0.5d));
+    }
+
+    @Test
+    public void concurrentResolutionsFromUnreliableRepository() throws Exception {
+        repository = new LatencyRepoHandler().latency(LATENCY).bandwidth(256 * 1024).size(16 * 1024)
+                .errorRate(0.05d).notFound("/missing-");
+        resolver = new AetherBasedResolver(configuration(repository.start(CONCURRENCY * 2)));
+
+        List<String> uris = new ArrayList<>();
+        for (int i = 0; i < ARTIFACTS; i++) {
+            uris.add("mvn:org.ops4j.pax.url.load/artifact-" + i + "/1.0");
+            uris.add("mvn:org.ops4j.pax.url.load/missing-" + i + "/1.0");
+        }
+        LoadDriver.Report report = new LoadDriver(resolver, CONCURRENCY).run(uris, RESOLUTIONS);
+        LOG.info("Load (unreliable): " + report + ", " + repository.getErrors() + " injected errors");
+
+        // every second URI is missing
+        assertTrue(report.getFailures() >= RESOLUTIONS / 2);
+        assertThat(report.getResolutions(), equalTo(RESOLUTIONS));
+    }
+
+    private MavenConfigurationImpl configuration(int port) {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "10000");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.repositories", "http://localhost:" + port + "/repository@id=load");
+        properties.setProperty("pid.connection.retryCount", "0");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        mavenConfiguration.setSettings(new Settings());
+        return mavenConfiguration;
+    }
+
+}
@@ -86,7 +86,7 @@ class Connection
 
         final URL manifest = getManifest( assembly );
 
-        final VirtualJar virtualJar = new VirtualJar( manifest, assembly );
+        final VirtualJar virtualJar = new VirtualJar( url, manifest, assembly );
         return virtualJar.inputStream();
     }
 
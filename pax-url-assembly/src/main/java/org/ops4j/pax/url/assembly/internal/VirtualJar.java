@@ -27,6 +27,7 @@ import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import org.ops4j.io.StreamUtils;
 import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.url.commons.jfr.UrlTrace;
 
 /**
  * Resources to jar adapter.
@@ -37,13 +38,16 @@ import org.ops4j.lang.NullArgumentException;
 class VirtualJar
 {
 
+    private final URL m_url;
     private final Iterable<Resource> m_resources;
     private final URL m_manifest;
 
-    VirtualJar( final URL manifest,
+    VirtualJar( final URL url,
+                final URL manifest,
                 final Iterable<Resource> resources )
     {
         NullArgumentException.validateNotNull( resources, "Resources" );
+        m_url = url;
         m_resources = resources;
         m_manifest = manifest;
     }
@@ -59,15 +63,16 @@ class VirtualJar
             public void run()
             {
                 JarOutputStream jos = null;
+                final UrlTrace trace = UrlTrace.begin( "assembly", "jar", m_url );
                 try
                 {
                     if( m_manifest == null )
                     {
-                        jos = new JarOutputStream( pos );
+                        jos = new JarOutputStream( trace.count( pos ) );
                     }
                     else
                     {
-                        jos = new JarOutputStream( pos, new Manifest( m_manifest.openStream() ) );
+                        jos = new JarOutputStream( trace.count( pos ), new Manifest( m_manifest.openStream() ) );
                     }
                     for( Resource resource : m_resources )
                     {
@@ -96,6 +101,7 @@ class VirtualJar
                     {
                         //  ignore
                     }
+                    trace.end();
                 }
             }
         }.start();
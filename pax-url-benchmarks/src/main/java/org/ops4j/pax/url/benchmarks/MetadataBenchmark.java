@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.url.mvn.MavenResolver;
+
+/**
+ * Resolution and merging of <code>maven-metadata.xml</code> from two remote repositories and local repository.
+ * Remote metadata is fetched once (daily update policy), so the benchmark measures reading and merging.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+
+    private Repositories repositories;
+    private MavenResolver resolver;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repositories = new Repositories(1);
+        resolver = repositories.resolver();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        resolver.close();
+        repositories.delete();
+    }
+
+    @Benchmark
+    public boolean resolveMetadata() throws IOException {
+        File merged = resolver.resolveMetadata(Repositories.GROUP_ID, "metadata", "maven-metadata.xml", null);
+        // merged metadata is written to temporary file
+        return merged.delete();
+    }
+
+}
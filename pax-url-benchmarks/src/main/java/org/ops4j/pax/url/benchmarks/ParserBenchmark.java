@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.benchmarks;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.url.mvn.internal.Parser;
+import org.ops4j.pax.url.mvn.internal.config.MavenRepositoryURL;
+
+/**
+ * Parsing of <code>mvn:</code> URIs and repository specifications - done for every resolution and for every
+ * configured repository.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    private String simple = "org.ops4j.pax.web/pax-web-api/7.2.5";
+    private String classified = "org.apache.karaf.features/standard/4.2.2/xml/features";
+    private String withRepository = "http://repo1.maven.org/maven2@id=central!org.ops4j.pax.web/pax-web-api/7.2.5";
+    private String repository = "http://repo1.maven.org/maven2@id=central@snapshots@noreleases@update=daily@checksum=warn";
+
+    @Benchmark
+    public Parser parseSimple() throws MalformedURLException {
+        return new Parser(simple);
+    }
+
+    @Benchmark
+    public Parser parseSimpleCached() throws MalformedURLException {
+        return Parser.parse(simple);
+    }
+
+    @Benchmark
+    public Parser parseWithClassifier() throws MalformedURLException {
+        return new Parser(classified);
+    }
+
+    @Benchmark
+    public Parser parseWithRepository() throws MalformedURLException {
+        return new Parser(withRepository);
+    }
+
+    @Benchmark
+    public MavenRepositoryURL parseRepositoryURL() throws MalformedURLException {
+        return new MavenRepositoryURL(repository);
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.ops4j.pax.url.mvn.MavenResolver;
+import org.ops4j.pax.url.mvn.MavenResolvers;
+import org.ops4j.pax.url.mvn.ServiceConstants;
+
+/**
+ * File system fixture for resolver benchmarks. Creates (in temporary directory) a local repository, a number
+ * of default repositories and two remote <code>file:</code> repositories, so benchmarks don't depend on network
+ * or on <code>~/.m2</code>.
+ * <ul>
+ *     <li><code>default-N</code> contains <code>bench:artifact:1.0</code> only in the last repository</li>
+ *     <li><code>default-1</code> contains <code>bench:range</code> in versions 1.0, 1.1, 1.2 and 2.0 (no metadata)</li>
+ *     <li><code>remote-1</code> contains <code>bench:remote:1.0</code></li>
+ *     <li><code>remote-1</code> and <code>remote-2</code> contain different <code>bench:metadata</code> metadata</li>
+ * </ul>
+ */
+class Repositories {
+
+    static final String GROUP_ID = "bench";
+
+    private final File root;
+    private final int defaultRepositories;
+
+    Repositories(int defaultRepositories) throws IOException {
+        this.root = Files.createTempDirectory("pax-url-benchmarks").toFile();
+        this.defaultRepositories = defaultRepositories;
+
+        for (int i = 1; i <= defaultRepositories; i++) {
+            new File(root, "default-" + i).mkdirs();
+        }
+        artifact(new File(root, "default-" + defaultRepositories), "artifact", "1.0");
+        for (String version : new String[] { "1.0", "1.1", "1.2", "2.0" }) {
+            artifact(new File(root, "default-1"), "range", version);
+        }
+        artifact(new File(root, "remote-1"), "remote", "1.0");
+        metadata(new File(root, "remote-1"), "metadata", "1.0", "1.1");
+        metadata(new File(root, "remote-2"), "metadata", "1.1", "2.0");
+        write(new File(root, "settings.xml"), "<settings />");
+    }
+
+    /**
+     * Creates resolver using this fixture and given additional properties (without PID prefix)
+     * @param properties
+     * @return
+     */
+    MavenResolver resolver(String... properties) {
+        String pid = ServiceConstants.PID;
+        Dictionary<String, String> config = new Hashtable<>();
+        config.put(pid + "." + ServiceConstants.PROPERTY_LOCAL_REPOSITORY, new File(root, "local").getAbsolutePath());
+        config.put(pid + "." + ServiceConstants.PROPERTY_SETTINGS_FILE, new File(root, "settings.xml").getAbsolutePath());
+        config.put(pid + "." + ServiceConstants.PROPERTY_USE_FALLBACK_REPOSITORIES, "false");
+        config.put(pid + "." + ServiceConstants.PROPERTY_GLOBAL_CHECKSUM_POLICY, "ignore");
+        StringBuilder defaults = new StringBuilder();
+        for (int i = 1; i <= defaultRepositories; i++) {
+            if (i > 1) {
+                defaults.append(",");
+            }
+            defaults.append(repository("default-" + i));
+        }
+        config.put(pid + "." + ServiceConstants.PROPERTY_DEFAULT_REPOSITORIES, defaults.toString());
+        config.put(pid + "." + ServiceConstants.PROPERTY_REPOSITORIES,
+                repository("remote-1") + "," + repository("remote-2"));
+        for (int i = 0; i + 1 < properties.length; i += 2) {
+            config.put(pid + "." + properties[i], properties[i + 1]);
+        }
+        return MavenResolvers.createMavenResolver(config, pid);
+    }
+
+    /**
+     * Removes the fixture
+     * @throws IOException
+     */
+    void delete() throws IOException {
+        Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private String repository(String name) {
+        return new File(root, name).toURI().toString() + "@id=" + name;
+    }
+
+    private static void artifact(File repository, String artifactId, String version) throws IOException {
+        File dir = new File(repository, GROUP_ID + "/" + artifactId + "/" + version);
+        dir.mkdirs();
+        write(new File(dir, artifactId + "-" + version + ".pom"),
+                "<project><modelVersion>4.0.0</modelVersion><groupId>" + GROUP_ID + "</groupId><artifactId>"
+                        + artifactId + "</artifactId><version>" + version + "</version></project>");
+        write(new File(dir, artifactId + "-" + version + ".jar"), artifactId + ":" + version);
+    }
+
+    private static void metadata(File repository, String artifactId, String... versions) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<metadata><groupId>").append(GROUP_ID).append("</groupId><artifactId>").append(artifactId)
+                .append("</artifactId><versioning><latest>").append(versions[versions.length - 1])
+                .append("</latest><release>").append(versions[versions.length - 1]).append("</release><versions>");
+        for (String version : versions) {
+            sb.append("<version>").append(version).append("</version>");
+        }
+        sb.append("</versions><lastUpdated>20181201120000</lastUpdated></versioning></metadata>");
+        File dir = new File(repository, GROUP_ID + "/" + artifactId);
+        dir.mkdirs();
+        write(new File(dir, "maven-metadata.xml"), sb.toString());
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.url.mvn.MavenResolver;
+
+/**
+ * Resolution of artifacts that are already available locally - the common case when a container starts
+ * with pre-populated (default) repositories. Default repositories are checked in order, so the artifact is
+ * put into the last one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResolverBenchmark {
+
+    @Param({ "1", "4", "8" })
+    public int defaultRepositories;
+
+    private Repositories repositories;
+    private MavenResolver resolver;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repositories = new Repositories(defaultRepositories);
+        resolver = repositories.resolver();
+        // download to local repository, so the benchmark measures local hit
+        resolver.resolve(Repositories.GROUP_ID, "remote", "", "jar", "1.0");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        resolver.close();
+        repositories.delete();
+    }
+
+    @Benchmark
+    public File resolveFromDefaultRepository() throws IOException {
+        return resolver.resolve(Repositories.GROUP_ID, "artifact", "", "jar", "1.0");
+    }
+
+    @Benchmark
+    public File resolveFromLocalRepository() throws IOException {
+        return resolver.resolve(Repositories.GROUP_ID, "remote", "", "jar", "1.0");
+    }
+
+    @Benchmark
+    public File resolveVersionRange() throws IOException {
+        return resolver.resolve(Repositories.GROUP_ID, "range", "", "jar", "[1.0,2.0)");
+    }
+
+    @Benchmark
+    public File resolveUrl() throws IOException {
+        return resolver.resolve("mvn:" + Repositories.GROUP_ID + "/artifact/1.0");
+    }
+
+}
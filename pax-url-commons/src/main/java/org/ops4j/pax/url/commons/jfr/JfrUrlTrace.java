@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.commons.jfr;
+
+import jdk.jfr.EventType;
+
+/**
+ * {@link UrlTrace} backed by {@link UrlEvent}. Loaded only if JFR API is available.
+ */
+class JfrUrlTrace extends UrlTrace
+{
+
+    private static EventType eventType;
+
+    private final UrlEvent event;
+
+    private JfrUrlTrace( UrlEvent event )
+    {
+        this.event = event;
+    }
+
+    static boolean init()
+    {
+        eventType = EventType.getEventType( UrlEvent.class );
+        return true;
+    }
+
+    static boolean enabled()
+    {
+        return eventType.isEnabled();
+    }
+
+    static UrlTrace start( String protocol, String operation, String url )
+    {
+        if( !eventType.isEnabled() )
+        {
+            return null;
+        }
+        UrlEvent event = new UrlEvent();
+        event.protocol = protocol;
+        event.operation = operation;
+        event.url = url;
+        event.begin();
+        return new JfrUrlTrace( event );
+    }
+
+    @Override
+    public synchronized UrlTrace bytes( long bytes )
+    {
+        event.bytes += bytes;
+        return this;
+    }
+
+    @Override
+    public synchronized void end()
+    {
+        event.commit();
+    }
+
+}
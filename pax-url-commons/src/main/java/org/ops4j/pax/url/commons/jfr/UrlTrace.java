@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.ops4j.pax.url.commons.jfr;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+/**
+ * <p>Trace of single operation of URL handler (resolution, transfer, bnd processing, jar generation), emitted
+ * as Java Flight Recorder event (<code>org.ops4j.pax.url.Operation</code>) with URL, byte count and duration.</p>
+ * <p>When JFR is not available (or the event is not enabled in any recording) {@link #begin(String, String, String)}
+ * returns shared no-op trace, so tracing costs nothing when recording is off:<pre>
+ * UrlTrace trace = UrlTrace.begin("wrap", "bnd", url);
+ * try {
+ *     ...
+ *     trace.bytes(count);
+ * } finally {
+ *     trace.end();
+ * }
+ * </pre></p>
+ */
+public abstract class UrlTrace
+{
+
+    private static final UrlTrace NOOP = new UrlTrace()
+    {
+        @Override
+        public UrlTrace bytes( long bytes )
+        {
+            return this;
+        }
+
+        @Override
+        public void end()
+        {
+        }
+    };
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    /**
+     * Starts tracing an operation
+     *
+     * @param protocol  protocol of URL handler (<code>mvn</code>, <code>wrap</code>, ...)
+     * @param operation traced operation
+     * @param url       URL (or other identification) of processed resource
+     *
+     * @return trace that should be {@link #end() ended}
+     */
+    public static UrlTrace begin( String protocol, String operation, String url )
+    {
+        if( !AVAILABLE )
+        {
+            return NOOP;
+        }
+        UrlTrace trace = JfrUrlTrace.start( protocol, operation, url );
+        return trace == null ? NOOP : trace;
+    }
+
+    /**
+     * Starts tracing an operation on given URL. The URL is converted to string only when recording is on.
+     *
+     * @param protocol  protocol of URL handler
+     * @param operation traced operation
+     * @param url       processed URL
+     *
+     * @return trace that should be {@link #end() ended}
+     */
+    public static UrlTrace begin( String protocol, String operation, URL url )
+    {
+        if( !isEnabled() )
+        {
+            return NOOP;
+        }
+        return begin( protocol, operation, url == null ? null : url.toExternalForm() );
+    }
+
+    /**
+     * Checks whether traces are recorded. May be used to avoid preparing arguments of
+     * {@link #begin(String, String, String)} when recording is off.
+     *
+     * @return <code>true</code> if JFR is available and the event is enabled in any recording
+     */
+    public static boolean isEnabled()
+    {
+        return AVAILABLE && JfrUrlTrace.enabled();
+    }
+
+    /**
+     * Adds number of processed bytes
+     *
+     * @param bytes
+     *
+     * @return this trace
+     */
+    public abstract UrlTrace bytes( long bytes );
+
+    /**
+     * Ends the operation and emits the event
+     */
+    public abstract void end();
+
+    /**
+     * Returns stream that counts bytes read from <code>in</code> as {@link #bytes(long) processed bytes}
+     *
+     * @param in
+     *
+     * @return
+     */
+    public InputStream count( final InputStream in )
+    {
+        if( this == NOOP )
+        {
+            return in;
+        }
+        return new FilterInputStream( in )
+        {
+            @Override
+            public int read()
+                throws IOException
+            {
+                int b = super.read();
+                if( b >= 0 )
+                {
+                    bytes( 1 );
+                }
+                return b;
+            }
+
+            @Override
+            public int read( byte[] b, int off, int len )
+                throws IOException
+            {
+                int read = super.read( b, off, len );
+                if( read > 0 )
+                {
+                    bytes( read );
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Returns stream that counts bytes written to <code>out</code> as {@link #bytes(long) processed bytes}
+     *
+     * @param out
+     *
+     * @return
+     */
+    public OutputStream count( final OutputStream out )
+    {
+        if( this == NOOP )
+        {
+            return out;
+        }
+        return new FilterOutputStream( out )
+        {
+            @Override
+            public void write( int b )
+                throws IOException
+            {
+                out.write( b );
+                bytes( 1 );
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len )
+                throws IOException
+            {
+                out.write( b, off, len );
+                bytes( len );
+            }
+        };
+    }
+
+    private static boolean isAvailable()
+    {
+        try
+        {
+            Class.forName( "jdk.jfr.Event", false, UrlTrace.class.getClassLoader() );
+            return JfrUrlTrace.init();
+        }
+        catch( Throwable t )
+        {
+            // Java 7/8 without JFR API or jdk.jfr package not available in OSGi
+            return false;
+        }
+    }
+
+}
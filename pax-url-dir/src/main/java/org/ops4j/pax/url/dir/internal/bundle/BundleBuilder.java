@@ -27,6 +27,7 @@ import java.util.jar.JarOutputStream;
 import org.osgi.framework.Constants;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.swissbox.bnd.BndUtils;
+import org.ops4j.pax.url.commons.jfr.UrlTrace;
 import org.ops4j.pax.url.dir.internal.ResourceLocator;
 
 /**
@@ -71,6 +72,7 @@ public class BundleBuilder
         try
         {
             // 1. create a basic jar with all classes in it..
+            final String location = m_resourceLocator.toString();
             final PipedOutputStream pout = new PipedOutputStream();
             PipedInputStream fis = new PipedInputStream( pout );
             new Thread()
@@ -79,9 +81,10 @@ public class BundleBuilder
                 public void run()
                 {
                     JarOutputStream jos;
+                    final UrlTrace trace = UrlTrace.begin( "dir", "jar", location );
                     try
                     {
-                        jos = new DuplicateAwareJarOutputStream( pout );
+                        jos = new DuplicateAwareJarOutputStream( trace.count( pout ) );
                         m_resourceLocator.write( jos );
                         jos.close();
                     }
@@ -92,6 +95,7 @@ public class BundleBuilder
                     }
                     finally
                     {
+                        trace.end();
                         try
                         {
                             pout.close();
@@ -109,10 +113,18 @@ public class BundleBuilder
             {
                 m_refs.setProperty( Constants.BUNDLE_SYMBOLICNAME, "BuiltByDirUrlHandler" );
             }
-            InputStream result = BndUtils.createBundle( fis, m_refs, m_resourceLocator.toString() );
-            fis.close();
-            pout.close();
-            return result;
+            final UrlTrace trace = UrlTrace.begin( "dir", "bnd", location );
+            try
+            {
+                InputStream result = BndUtils.createBundle( fis, m_refs, location );
+                fis.close();
+                pout.close();
+                return result;
+            }
+            finally
+            {
+                trace.end();
+            }
         }
         catch( IOException e )
         {
@@ -43,6 +43,7 @@ import org.ops4j.lang.PreConditionException;
 import org.ops4j.net.URLUtils;
 import org.ops4j.pax.swissbox.bnd.BndUtils;
 import org.ops4j.pax.swissbox.bnd.OverwriteMode;
+import org.ops4j.pax.url.commons.jfr.UrlTrace;
 import org.ops4j.pax.url.war.ServiceConstants;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -140,10 +141,18 @@ abstract class AbstractConnection
         
         generateImportPackageFromWebXML( instructions );
 
-        return createBundle(
-                    URLUtils.prepareInputStream(new URL(warUri), !m_configuration.getCertificateCheck()),
-                    instructions,
-                    warUri );
+        final UrlTrace trace = UrlTrace.begin( "war", "bnd", url );
+        try
+        {
+            return createBundle(
+                        trace.count( URLUtils.prepareInputStream(new URL(warUri), !m_configuration.getCertificateCheck()) ),
+                        instructions,
+                        warUri );
+        }
+        finally
+        {
+            trace.end();
+        }
     }
 
 	/**
@@ -27,6 +27,7 @@ import java.util.Properties;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.net.URLUtils;
 import org.ops4j.pax.swissbox.bnd.BndUtils;
+import org.ops4j.pax.url.commons.jfr.UrlTrace;
 
 /**
  * Url connection for wrap protocol handler.
@@ -80,15 +81,25 @@ public class Connection
         throws IOException
     {
         connect();
-        return BndUtils.createBundle(
-            URLUtils.prepareInputStream(
-                m_parser.getWrappedJarURL(),
-                !m_configuration.getCertificateCheck()
-            ),
-            m_parser.getWrappingProperties(),
-            url.toExternalForm(),
-            m_parser.getOverwriteMode()
-        );
+        final UrlTrace trace = UrlTrace.begin( "wrap", "bnd", url );
+        try
+        {
+            return BndUtils.createBundle(
+                trace.count(
+                    URLUtils.prepareInputStream(
+                        m_parser.getWrappedJarURL(),
+                        !m_configuration.getCertificateCheck()
+                    )
+                ),
+                m_parser.getWrappingProperties(),
+                url.toExternalForm(),
+                m_parser.getOverwriteMode()
+            );
+        }
+        finally
+        {
+            trace.end();
+        }
     }
 
     /**